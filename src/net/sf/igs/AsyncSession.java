@@ -0,0 +1,91 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.ggf.drmaa.DrmaaException;
+import org.ggf.drmaa.JobInfo;
+import org.ggf.drmaa.JobTemplate;
+import org.ggf.drmaa.Session;
+
+/**
+ * An extension of the DRMAA {@link Session} whose operations don't block the
+ * calling thread. Each method checks its arguments and the state of the session
+ * right away, throwing the same exceptions as its {@link Session} counterpart,
+ * and then returns a {@link CompletableFuture} for the result. Failures that
+ * happen later complete the future exceptionally, with a {@link DrmaaException}
+ * where the synchronous method would have thrown one.
+ *
+ * <p>The futures are completed from the exit of the Condor tools and from the
+ * job log monitor, so any number of operations can be in flight without a
+ * thread waiting on each of them.</p>
+ *
+ * @see SessionImpl
+ */
+public interface AsyncSession extends Session {
+
+	/**
+	 * Submit a job without waiting for the submission to finish.
+	 *
+	 * @param jt the job template of the job to run
+	 * @return a {@link CompletableFuture} for the job ID
+	 * @throws DrmaaException if the template or session state is invalid
+	 * @see Session#runJob(JobTemplate)
+	 */
+	CompletableFuture<String> runJobAsync(JobTemplate jt) throws DrmaaException;
+
+	/**
+	 * Submit a set of parametric jobs without waiting for the submission to finish.
+	 *
+	 * @param jt the job template of the jobs to run
+	 * @param start the starting value for the loop index
+	 * @param end the terminating value for the loop index
+	 * @param incr the value by which to increment the loop index each iteration
+	 * @return a {@link CompletableFuture} for the job IDs
+	 * @throws DrmaaException if the template or session state is invalid
+	 * @see Session#runBulkJobs(JobTemplate, int, int, int)
+	 */
+	CompletableFuture<List<String>> runBulkJobsAsync(JobTemplate jt, int start, int end, int incr)
+			throws DrmaaException;
+
+	/**
+	 * Hold, release, suspend, resume, or kill a job without waiting for Condor
+	 * to carry out the action.
+	 *
+	 * @param jobId the ID of the job, or {@link Session#JOB_IDS_SESSION_ALL}
+	 * @param action the control action to perform
+	 * @return a {@link CompletableFuture} that completes once the action has been taken
+	 * @throws DrmaaException if the job ID or session state is invalid
+	 * @see Session#control(String, int)
+	 */
+	CompletableFuture<Void> controlAsync(String jobId, int action) throws DrmaaException;
+
+	/**
+	 * Get a future for the end of a job. The job is reaped once the future
+	 * completes, as with {@link Session#wait(String, long)}. There is no
+	 * timeout; use {@link CompletableFuture#orTimeout(long, java.util.concurrent.TimeUnit)}
+	 * or similar if one is needed.
+	 *
+	 * @param jobId the ID of the job, or {@link Session#JOB_IDS_SESSION_ANY}
+	 * @return a {@link CompletableFuture} for the job's {@link JobInfo}
+	 * @throws DrmaaException if the job ID or session state is invalid
+	 * @see Session#wait(String, long)
+	 */
+	CompletableFuture<JobInfo> waitAsync(String jobId) throws DrmaaException;
+}
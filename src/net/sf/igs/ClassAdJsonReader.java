@@ -0,0 +1,558 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the ClassAds that condor_q and condor_history print with the -json
+ * option, as they stream in, without building a tree of the whole output.
+ * Only the attributes the reader was created with are kept, in a flat
+ * {@link Record} of primitive values that is reused from one ClassAd to the
+ * next, so the memory used stays the same however many jobs there are.
+ * Everything else, including nested lists and ClassAds, is skipped over
+ * without being decoded.
+ *
+ * <p>Each ClassAd is a JSON object; the output is either an array of them or
+ * just the objects one after the other. Attribute names are matched without
+ * regard to case, as in ClassAds.</p>
+ *
+ * <p>A reader may be used for one stream at a time.</p>
+ *
+ * @see CondorExec#readJobStatus(InputStream, JobStatusMap)
+ */
+public class ClassAdJsonReader {
+
+	/**
+	 * Is handed each ClassAd as it is read.
+	 */
+	public interface Handler {
+		/**
+		 * Called with the projected attributes of a ClassAd. The record is only
+		 * valid during the call.
+		 *
+		 * @param record the {@link Record}
+		 */
+		void classAd(Record record);
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+	private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+	private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+	private final String[] attributes;
+	private final byte[][] names;
+	private final Record record;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+	private InputStream input = null;
+	// Holds an attribute name, or the bytes of a string value, as it is read.
+	private byte[] token = new byte[64];
+	private int tokenLength = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param attributes the names of the attributes to keep
+	 */
+	public ClassAdJsonReader(String... attributes) {
+		this.attributes = attributes.clone();
+		this.names = new byte[attributes.length][];
+		for (int index = 0; index < attributes.length; index++) {
+			names[index] = attributes[index].toLowerCase().getBytes(StandardCharsets.US_ASCII);
+		}
+		this.record = new Record(attributes.length);
+	}
+
+	/**
+	 * The position of an attribute in the records.
+	 *
+	 * @param attribute the name of the attribute
+	 * @return an <code>int</code>, or -1 if the attribute isn't kept
+	 */
+	public int indexOf(String attribute) {
+		for (int index = 0; index < attributes.length; index++) {
+			if (attributes[index].equalsIgnoreCase(attribute)) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Read ClassAds until the end of the stream, handing each to the handler.
+	 *
+	 * @param input the {@link InputStream} to read, which isn't closed
+	 * @param handler the {@link Handler}
+	 * @throws IOException if the stream can't be read or isn't ClassAd JSON
+	 */
+	public void read(InputStream input, Handler handler) throws IOException {
+		this.input = input;
+		position = 0;
+		limit = 0;
+		try {
+			while (true) {
+				int c = nextNonSpace();
+				if (c == -1) {
+					return;
+				} else if (c == '{') {
+					readClassAd();
+					handler.classAd(record);
+				} else if (c != '[' && c != ']' && c != ',') {
+					throw unexpected(c);
+				}
+			}
+		} finally {
+			this.input = null;
+		}
+	}
+
+	/*
+	 * Read the attributes of a ClassAd, whose opening brace has been read, into
+	 * the record.
+	 */
+	private void readClassAd() throws IOException {
+		record.clear();
+		while (true) {
+			int c = nextNonSpace();
+			if (c == '}') {
+				return;
+			} else if (c == ',') {
+				continue;
+			} else if (c != '"') {
+				throw unexpected(c);
+			}
+			readString();
+			int index = matchName();
+			c = nextNonSpace();
+			if (c != ':') {
+				throw unexpected(c);
+			}
+			if (index < 0) {
+				skipValue(nextNonSpace());
+			} else {
+				readValue(index, nextNonSpace());
+			}
+		}
+	}
+
+	private void readValue(int index, int c) throws IOException {
+		if (c == '"') {
+			readString();
+			record.setString(index, new String(token, 0, tokenLength, StandardCharsets.UTF_8));
+		} else if (c == '-' || (c >= '0' && c <= '9')) {
+			readNumber(index, c);
+		} else if (c == 't' || c == 'f' || c == 'n') {
+			readLiteral(c);
+			if (c != 'n') {
+				record.setBoolean(index, c == 't');
+			}
+			// null leaves the attribute undefined.
+		} else {
+			// A list or a nested ClassAd, which a flat record can't hold.
+			skipValue(c);
+		}
+	}
+
+	/*
+	 * Read a number, as a long if it is an integer that fits in one and as a
+	 * double otherwise.
+	 */
+	private void readNumber(int index, int first) throws IOException {
+		tokenLength = 0;
+		append(first);
+		boolean integral = true;
+		while (true) {
+			int c = peek();
+			if ((c >= '0' && c <= '9') || c == '-' || c == '+') {
+				append(next());
+			} else if (c == '.' || c == 'e' || c == 'E') {
+				integral = false;
+				append(next());
+			} else {
+				break;
+			}
+		}
+		try {
+			if (integral && tokenLength < 19) {
+				// The common case, which needs no string.
+				record.setLong(index, parseLong());
+			} else if (integral) {
+				record.setLong(index, Long.parseLong(new String(token, 0, tokenLength, StandardCharsets.US_ASCII)));
+			} else {
+				record.setDouble(index, Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.US_ASCII)));
+			}
+		} catch (NumberFormatException nfe) {
+			throw new IOException("Invalid number in ClassAd JSON: " +
+					new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+		}
+	}
+
+	/*
+	 * Parse the digits in the token, which are too few to overflow.
+	 */
+	private long parseLong() {
+		boolean negative = token[0] == '-';
+		long value = 0;
+		for (int index = negative ? 1 : 0; index < tokenLength; index++) {
+			int digit = token[index] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException();
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/*
+	 * Read true, false, or null, whose first letter has been read.
+	 */
+	private void readLiteral(int first) throws IOException {
+		tokenLength = 0;
+		append(first);
+		while (peek() >= 'a' && peek() <= 'z') {
+			append(next());
+		}
+		byte[] expected = (first == 't') ? TRUE : (first == 'f') ? FALSE : NULL;
+		if (! Arrays.equals(token, 0, tokenLength, expected, 0, expected.length)) {
+			throw new IOException("Unexpected " + new String(token, 0, tokenLength, StandardCharsets.US_ASCII) +
+					" in ClassAd JSON.");
+		}
+	}
+
+	/*
+	 * Read a string, whose opening quote has been read, into the token as UTF-8.
+	 */
+	private void readString() throws IOException {
+		tokenLength = 0;
+		while (true) {
+			int c = next();
+			if (c == '"') {
+				return;
+			} else if (c == -1) {
+				throw unexpected(c);
+			} else if (c != '\\') {
+				append(c);
+				continue;
+			}
+			c = next();
+			switch (c) {
+			case 'b': append('\b'); break;
+			case 'f': append('\f'); break;
+			case 'n': append('\n'); break;
+			case 'r': append('\r'); break;
+			case 't': append('\t'); break;
+			case 'u': appendCodePoint(readEscapedChar()); break;
+			case -1: throw unexpected(c);
+			default: append(c);
+			}
+		}
+	}
+
+	/*
+	 * Read the rest of a \\u escape, and of the low surrogate that follows it if
+	 * it is a high surrogate.
+	 */
+	private int readEscapedChar() throws IOException {
+		char high = (char) readHex();
+		if (! Character.isHighSurrogate(high) || peek() != '\\') {
+			return high;
+		}
+		next();
+		if (next() != 'u') {
+			throw new IOException("Invalid surrogate pair in ClassAd JSON.");
+		}
+		char low = (char) readHex();
+		return Character.isLowSurrogate(low) ? Character.toCodePoint(high, low) : low;
+	}
+
+	private int readHex() throws IOException {
+		int value = 0;
+		for (int count = 0; count < 4; count++) {
+			int digit = Character.digit(next(), 16);
+			if (digit < 0) {
+				throw new IOException("Invalid \\u escape in ClassAd JSON.");
+			}
+			value = (value << 4) | digit;
+		}
+		return value;
+	}
+
+	/*
+	 * Skip a value that starts with the given character, along with anything
+	 * nested in it.
+	 */
+	private void skipValue(int c) throws IOException {
+		int depth = 0;
+		while (true) {
+			if (c == '"') {
+				skipString();
+			} else if (c == '{' || c == '[') {
+				depth++;
+			} else if (c == '}' || c == ']') {
+				depth--;
+			} else if (c == -1) {
+				throw unexpected(c);
+			} else if (depth == 0) {
+				// A number or a literal: up to the next delimiter.
+				while (peek() != ',' && peek() != '}' && peek() != ']' && peek() != -1 && ! isSpace(peek())) {
+					next();
+				}
+			}
+			if (depth == 0) {
+				return;
+			}
+			c = next();
+		}
+	}
+
+	private void skipString() throws IOException {
+		while (true) {
+			int c = next();
+			if (c == '"') {
+				return;
+			} else if (c == '\\') {
+				next();
+			} else if (c == -1) {
+				throw unexpected(c);
+			}
+		}
+	}
+
+	/*
+	 * The index of the attribute named by the token, or -1.
+	 */
+	private int matchName() {
+		for (int index = 0; index < names.length; index++) {
+			byte[] name = names[index];
+			if (name.length != tokenLength) {
+				continue;
+			}
+			int at = 0;
+			while (at < tokenLength && toLower(token[at]) == name[at]) {
+				at++;
+			}
+			if (at == tokenLength) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	private static int toLower(byte b) {
+		return (b >= 'A' && b <= 'Z') ? b + ('a' - 'A') : b;
+	}
+
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	private void appendCodePoint(int codePoint) {
+		if (codePoint < 0x80) {
+			append(codePoint);
+		} else if (codePoint < 0x800) {
+			append(0xC0 | (codePoint >> 6));
+			append(0x80 | (codePoint & 0x3F));
+		} else if (codePoint < 0x10000) {
+			append(0xE0 | (codePoint >> 12));
+			append(0x80 | ((codePoint >> 6) & 0x3F));
+			append(0x80 | (codePoint & 0x3F));
+		} else {
+			append(0xF0 | (codePoint >> 18));
+			append(0x80 | ((codePoint >> 12) & 0x3F));
+			append(0x80 | ((codePoint >> 6) & 0x3F));
+			append(0x80 | (codePoint & 0x3F));
+		}
+	}
+
+	private void append(int b) {
+		if (tokenLength == token.length) {
+			token = Arrays.copyOf(token, token.length * 2);
+		}
+		token[tokenLength++] = (byte) b;
+	}
+
+	private int nextNonSpace() throws IOException {
+		int c;
+		do {
+			c = next();
+		} while (isSpace(c));
+		return c;
+	}
+
+	private int next() throws IOException {
+		if (position == limit && ! fill()) {
+			return -1;
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	private int peek() throws IOException {
+		if (position == limit && ! fill()) {
+			return -1;
+		}
+		return buffer[position] & 0xFF;
+	}
+
+	private boolean fill() throws IOException {
+		int read = input.read(buffer, 0, buffer.length);
+		if (read <= 0) {
+			return false;
+		}
+		position = 0;
+		limit = read;
+		return true;
+	}
+
+	private static IOException unexpected(int c) {
+		return new IOException((c == -1) ? "Unexpected end of ClassAd JSON." :
+				"Unexpected '" + (char) c + "' in ClassAd JSON.");
+	}
+
+	/**
+	 * The projected attributes of a ClassAd, by their position in the list the
+	 * reader was created with. Numbers and booleans are kept as primitives;
+	 * only string attributes make objects.
+	 */
+	public static class Record {
+		private static final byte UNDEFINED = 0;
+		private static final byte LONG = 1;
+		private static final byte DOUBLE = 2;
+		private static final byte BOOLEAN = 3;
+		private static final byte STRING = 4;
+
+		private final byte[] kinds;
+		private final long[] numbers;
+		private final String[] strings;
+
+		Record(int size) {
+			kinds = new byte[size];
+			numbers = new long[size];
+			strings = new String[size];
+		}
+
+		/**
+		 * Whether the ClassAd had a value for the attribute.
+		 *
+		 * @param index the position of the attribute
+		 * @return a <code>boolean</code>
+		 */
+		public boolean isDefined(int index) {
+			return kinds[index] != UNDEFINED;
+		}
+
+		/**
+		 * The value of a numeric or boolean attribute as a <code>long</code>.
+		 * Real numbers are truncated and booleans are 1 or 0.
+		 *
+		 * @param index the position of the attribute
+		 * @param missing what to return if the attribute isn't a number or boolean
+		 * @return a <code>long</code>
+		 */
+		public long getLong(int index, long missing) {
+			switch (kinds[index]) {
+			case LONG:
+			case BOOLEAN:
+				return numbers[index];
+			case DOUBLE:
+				return (long) Double.longBitsToDouble(numbers[index]);
+			default:
+				return missing;
+			}
+		}
+
+		/**
+		 * The value of a numeric or boolean attribute as an <code>int</code>.
+		 *
+		 * @param index the position of the attribute
+		 * @param missing what to return if the attribute isn't a number or boolean
+		 * @return an <code>int</code>
+		 * @see #getLong(int, long)
+		 */
+		public int getInt(int index, int missing) {
+			return (int) getLong(index, missing);
+		}
+
+		/**
+		 * The value of a numeric attribute as a <code>double</code>.
+		 *
+		 * @param index the position of the attribute
+		 * @param missing what to return if the attribute isn't a number
+		 * @return a <code>double</code>
+		 */
+		public double getDouble(int index, double missing) {
+			switch (kinds[index]) {
+			case LONG:
+				return numbers[index];
+			case DOUBLE:
+				return Double.longBitsToDouble(numbers[index]);
+			default:
+				return missing;
+			}
+		}
+
+		/**
+		 * The value of a boolean attribute.
+		 *
+		 * @param index the position of the attribute
+		 * @return true if the attribute is true, false otherwise
+		 */
+		public boolean getBoolean(int index) {
+			return kinds[index] == BOOLEAN && numbers[index] != 0;
+		}
+
+		/**
+		 * The value of a string attribute.
+		 *
+		 * @param index the position of the attribute
+		 * @return a <code>String</code>, or null if the attribute isn't a string
+		 */
+		public String getString(int index) {
+			return (kinds[index] == STRING) ? strings[index] : null;
+		}
+
+		void clear() {
+			Arrays.fill(kinds, UNDEFINED);
+			Arrays.fill(strings, null);
+		}
+
+		void setLong(int index, long value) {
+			kinds[index] = LONG;
+			numbers[index] = value;
+		}
+
+		void setDouble(int index, double value) {
+			kinds[index] = DOUBLE;
+			numbers[index] = Double.doubleToRawLongBits(value);
+		}
+
+		void setBoolean(int index, boolean value) {
+			kinds[index] = BOOLEAN;
+			numbers[index] = value ? 1 : 0;
+		}
+
+		void setString(int index, String value) {
+			kinds[index] = STRING;
+			strings[index] = value;
+		}
+	}
+}
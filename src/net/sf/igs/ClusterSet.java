@@ -0,0 +1,126 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.Arrays;
+
+/**
+ * A set of Condor cluster IDs, kept in an open-addressing table of
+ * <code>int</code>s rather than as boxed objects, so that a lookup for every
+ * event of a busy log allocates nothing. Cluster IDs are never negative, which
+ * leaves -1 to mark the empty slots.
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class ClusterSet {
+
+	private static final int EMPTY = -1;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] table = newTable(INITIAL_CAPACITY);
+	private int size = 0;
+
+	/**
+	 * Add a cluster ID to the set.
+	 *
+	 * @param cluster the cluster ID, which may not be negative
+	 * @return true if the set didn't already hold the cluster ID
+	 */
+	public boolean add(int cluster) {
+		if (cluster < 0) {
+			throw new IllegalArgumentException("Invalid cluster ID: " + cluster);
+		}
+		int slot = slotOf(table, cluster);
+		if (table[slot] == cluster) {
+			return false;
+		}
+		table[slot] = cluster;
+		size++;
+		// Keep the table at most half full, so that probes stay short.
+		if (size * 2 > table.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the set holds a cluster ID.
+	 *
+	 * @param cluster the cluster ID
+	 * @return a <code>boolean</code>
+	 */
+	public boolean contains(int cluster) {
+		return cluster >= 0 && table[slotOf(table, cluster)] == cluster;
+	}
+
+	/**
+	 * The number of cluster IDs in the set.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Whether the set is empty.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove every cluster ID from the set.
+	 */
+	public void clear() {
+		Arrays.fill(table, EMPTY);
+		size = 0;
+	}
+
+	/*
+	 * The slot that holds the cluster ID, or the empty slot where it would go.
+	 * The table always has empty slots, so the probe ends.
+	 */
+	private static int slotOf(int[] table, int cluster) {
+		int mask = table.length - 1;
+		// Consecutive cluster IDs are common, so spread them out.
+		int hash = cluster * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (table[slot] != EMPTY && table[slot] != cluster) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		int[] larger = newTable(table.length * 2);
+		for (int cluster : table) {
+			if (cluster != EMPTY) {
+				larger[slotOf(larger, cluster)] = cluster;
+			}
+		}
+		table = larger;
+	}
+
+	private static int[] newTable(int capacity) {
+		int[] table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+}
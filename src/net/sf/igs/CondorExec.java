@@ -2,13 +2,23 @@ package net.sf.igs;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.Writer;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
-import org.ggf.drmaa.InternalException;
+import org.ggf.drmaa.Session;
 
 /*
 This library is free software; you can redistribute it and/or
@@ -28,10 +38,28 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 /**
  * Class that contains methods for running basic Condor operations.
+ * 
+ * <p>Most operations also come in an asynchronous flavour, which returns as
+ * soon as the Condor tool has been started. The returned future is completed
+ * from {@link Process#onExit()}, so no thread is parked waiting for the tool
+ * to finish.</p>
  *
  */
 public class CondorExec {
 	
+	/**
+	 * The maximum number of bytes that the job IDs passed to a single Condor
+	 * invocation may take up. This stays well below the ARG_MAX of any reasonable
+	 * system, which also has to accommodate the environment.
+	 */
+	private static final int MAX_ARGUMENTS_LENGTH = 128 * 1024;
+	
+	/**
+	 * The job attributes asked for when querying job states, in the order
+	 * that {@link #readJobStatus(InputStream, JobStatusMap)} expects them.
+	 */
+	private static final String STATUS_ATTRIBUTES = "ClusterId,ProcId,JobStatus,HoldReasonCode,ExitBySignal";
+	
 	/**
 	 * Kill a Condor job.
 	 * 
@@ -40,24 +68,21 @@ public class CondorExec {
 	 * @see "The 'condor_rm' documentation or man page"
 	 */
 	public static void terminate(String jobID) throws CondorExecException {
-		String[] releaseCmd = new String[2];
-		releaseCmd[0] = "condor_rm";
-		releaseCmd[1] = jobID;
-
-		Process proc;
-		try {
-			proc = Runtime.getRuntime().exec(releaseCmd);
-			proc.waitFor();
-			// Check that the return value was 0.
-			int exitValue = proc.exitValue();
-			if (exitValue != 0) {
-				throw new CondorExecException();
-			}
-		} catch (IOException ioe) {
-			throw new CondorExecException("I/O problem occurred when running condor_rm.", ioe);
-		} catch (InterruptedException e) {
-			throw new CondorExecException("Interrupted", e);
-		}
+		terminate(Collections.singleton(jobID));
+	}
+	
+	/**
+	 * Kill a number of Condor jobs. The IDs may be those of individual jobs or
+	 * bare cluster IDs, which stand for all the jobs in the cluster. As few
+	 * processes as possible are launched to do the work.
+	 * 
+	 * @param jobIDs a {@link Collection} of Condor job IDs to terminate.
+	 * @throws CondorExecException
+	 * @see "The 'condor_rm' documentation or man page"
+	 */
+	public static void terminate(Collection<String> jobIDs) throws CondorExecException {
+		String program = "condor_rm";
+		runSimpleCondorBinary(program, jobIDs);
 	}
 	
 	/**
@@ -70,27 +95,159 @@ public class CondorExec {
 	 * @see #suspend(String)
 	 */
 	public static void release(String jobID) throws CondorExecException {
+		release(Collections.singleton(jobID));
+	}
+	
+	/**
+	 * Release a number of Condor jobs that have been held. The IDs may be those
+	 * of individual jobs or bare cluster IDs.
+	 * 
+	 * @param jobIDs a {@link Collection} of Condor job IDs to release.
+	 * @throws CondorExecException
+	 * @see "The 'condor_release' man page"
+	 * @see #suspend(Collection)
+	 */
+	public static void release(Collection<String> jobIDs) throws CondorExecException {
 		String program = "condor_release";
-		runSimpleCondorBinary(program, jobID);
+		runSimpleCondorBinary(program, jobIDs);
+	}
+	
+	/**
+	 * Kill a number of Condor jobs without waiting for condor_rm to finish.
+	 * 
+	 * @param jobIDs a {@link Collection} of Condor job IDs to terminate.
+	 * @return a {@link CompletableFuture} that completes when the jobs have been
+	 * removed, or completes exceptionally with a {@link CondorExecException}
+	 * @see #terminate(Collection)
+	 */
+	public static CompletableFuture<Void> terminateAsync(Collection<String> jobIDs) {
+		return runSimpleCondorBinaryAsync("condor_rm", jobIDs);
+	}
+	
+	/**
+	 * Release a number of held Condor jobs without waiting for condor_release
+	 * to finish.
+	 * 
+	 * @param jobIDs a {@link Collection} of Condor job IDs to release.
+	 * @return a {@link CompletableFuture} that completes when the jobs have been
+	 * released, or completes exceptionally with a {@link CondorExecException}
+	 * @see #release(Collection)
+	 */
+	public static CompletableFuture<Void> releaseAsync(Collection<String> jobIDs) {
+		return runSimpleCondorBinaryAsync("condor_release", jobIDs);
+	}
+	
+	/**
+	 * Suspend a number of Condor jobs without waiting for condor_hold to finish.
+	 * 
+	 * @param jobIDs a {@link Collection} of Condor job IDs to suspend.
+	 * @return a {@link CompletableFuture} that completes when the jobs have been
+	 * held, or completes exceptionally with a {@link CondorExecException}
+	 * @see #suspend(Collection)
+	 */
+	public static CompletableFuture<Void> suspendAsync(Collection<String> jobIDs) {
+		return runSimpleCondorBinaryAsync("condor_hold", jobIDs);
 	}
 	
-	private static void runSimpleCondorBinary(String program, String jobID) throws CondorExecException {
-		String[] command = new String[2];
+	/*
+	 * Run one of the Condor tools that take a list of job IDs. The IDs are passed
+	 * in as few invocations as the maximum argument length allows.
+	 */
+	private static void runSimpleCondorBinary(String program, Collection<String> jobIDs)
+			throws CondorExecException {
+		for (List<String> chunk : splitArguments(jobIDs)) {
+			runCondorBinary(program, chunk);
+		}
+	}
+	
+	/*
+	 * The asynchronous version of runSimpleCondorBinary(). The invocations run
+	 * side by side.
+	 */
+	private static CompletableFuture<Void> runSimpleCondorBinaryAsync(String program, Collection<String> jobIDs) {
+		List<List<String>> chunks = splitArguments(jobIDs);
+		CompletableFuture<?>[] runs = new CompletableFuture<?>[chunks.size()];
+		for (int index = 0; index < runs.length; index++) {
+			runs[index] = runCondorBinaryAsync(program, chunks.get(index));
+		}
+		return CompletableFuture.allOf(runs);
+	}
+	
+	/*
+	 * Split job IDs into groups that fit on a single command line.
+	 */
+	private static List<List<String>> splitArguments(Collection<String> jobIDs) {
+		List<List<String>> chunks = new ArrayList<List<String>>();
+		List<String> chunk = new ArrayList<String>();
+		int length = 0;
+		for (String jobID : jobIDs) {
+			// Account for the terminating NUL and the argv pointer as well.
+			int argumentLength = jobID.length() + 1 + 8;
+			if (chunk.size() > 0 && length + argumentLength > MAX_ARGUMENTS_LENGTH) {
+				chunks.add(chunk);
+				chunk = new ArrayList<String>();
+				length = 0;
+			}
+			chunk.add(jobID);
+			length += argumentLength;
+		}
+		if (chunk.size() > 0) {
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+	
+	private static String[] buildCommand(String program, List<String> jobIDs) {
+		String[] command = new String[jobIDs.size() + 1];
 		command[0] = program;
-		command[1] = jobID;
+		for (int index = 0; index < jobIDs.size(); index++) {
+			command[index + 1] = jobIDs.get(index);
+		}
+		return command;
+	}
+	
+	private static CompletableFuture<Void> runCondorBinaryAsync(final String program, List<String> jobIDs) {
+		Process process;
+		try {
+			// Nobody reads the output, so don't let it fill up a pipe.
+			process = new ProcessBuilder(buildCommand(program, jobIDs))
+					.redirectOutput(Redirect.DISCARD).redirectError(Redirect.DISCARD).start();
+			process.getOutputStream().close();
+		} catch (IOException ioe) {
+			CompletableFuture<Void> failed = new CompletableFuture<Void>();
+			failed.completeExceptionally(new CondorExecException("I/O problem occurred when running " + program + ".", ioe));
+			return failed;
+		}
+		return process.onExit().thenApply(new Function<Process, Void>() {
+			public Void apply(Process exited) {
+				int exitValue = exited.exitValue();
+				if (exitValue != 0) {
+					throw new CompletionException(
+							new CondorExecException("Program " + program + " exited with value " + exitValue));
+				}
+				return null;
+			}
+		});
+	}
+	
+	private static void runCondorBinary(String program, List<String> jobIDs) throws CondorExecException {
+		String[] command = buildCommand(program, jobIDs);
 		
 		Process releaseProc;
 		try {
-			releaseProc = Runtime.getRuntime().exec(command);
-			releaseProc.waitFor();
+			// Large batches print a line per job; discard it so the pipe can't fill up.
+			releaseProc = new ProcessBuilder(command)
+					.redirectOutput(Redirect.DISCARD).redirectError(Redirect.DISCARD).start();
+			releaseProc.getOutputStream().close();
 			// Check that the return value was 0.
-			int exitValue = releaseProc.exitValue();
+			int exitValue = releaseProc.waitFor();
 			if (exitValue != 0) {
 				throw new CondorExecException("Program " + program + " exited with value " + exitValue);
 			}
 		} catch (IOException ioe) {
-			throw new CondorExecException("I/O problem occurred when running condor_release.", ioe);
+			throw new CondorExecException("I/O problem occurred when running " + program + ".", ioe);
 		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			throw new CondorExecException("Interrupted", e);
 		}
 	}
@@ -105,56 +262,215 @@ public class CondorExec {
 	 * @see #release(String)
 	 */
 	public static void suspend(String jobID) throws CondorExecException {
+		suspend(Collections.singleton(jobID));
+	}
+	
+	/**
+	 * Suspend a number of running or waiting Condor jobs. The IDs may be those of
+	 * individual jobs or bare cluster IDs.
+	 * 
+	 * @param jobIDs a {@link Collection} of Condor job IDs to suspend.
+	 * @throws CondorExecException
+	 * @see "The 'condor_hold' man page"
+	 * @see #release(Collection)
+	 */
+	public static void suspend(Collection<String> jobIDs) throws CondorExecException {
 		String program = "condor_hold";
-		runSimpleCondorBinary(program, jobID);
+		runSimpleCondorBinary(program, jobIDs);
 	}
 	
 	/**
 	 * Submit a job to Condor using the specified submit file.
 	 * 
 	 * @param submitPath a <code>String</code> with the path to the submit file.
-	 * @return a <code>String</code> containing a Condor job ID.
+	 * @return a <code>String</code> containing the Condor job ID of the first job.
 	 * @throws CondorExecException
 	 * @see "The 'condor_submit' man page"
 	 */
-	public static String submit(String submitPath) throws CondorExecException {    	
-    	String jobID = null;
+	public static String submit(String submitPath) throws CondorExecException {
+		List<JobIdRange> ranges = submitForRanges(submitPath);
+		return ranges.get(0).getJobId(0);
+	}
+	
+	/**
+	 * Submit jobs to Condor using the specified submit file and return the
+	 * exact IDs of the jobs that were created, one range for each cluster.
+	 * 
+	 * @param submitPath a <code>String</code> with the path to the submit file.
+	 * @return a {@link List} of {@link JobIdRange} objects
+	 * @throws CondorExecException
+	 * @see "The 'condor_submit' man page"
+	 */
+	public static List<JobIdRange> submitForRanges(String submitPath) throws CondorExecException {
+    	try {
+        	File errors = createErrorFile();
+        	Process process = new ProcessBuilder("condor_submit", "-terse", submitPath)
+        			.redirectError(Redirect.to(errors)).start();
+        	// Nothing to say to condor_submit.
+        	process.getOutputStream().close();
+        	return readSubmitOutput(process, errors);
+		} catch (IOException e) {
+			e.printStackTrace();
+			// Wrap the exception that we got.
+			throw new CondorExecException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Submit jobs to Condor using the given submit description and return the
+	 * exact IDs of the jobs that were created, one range for each cluster. The
+	 * description is streamed to condor_submit through its standard input, so no
+	 * submit file is needed.
+	 * 
+	 * @param description a <code>String</code> with the contents of a submit file.
+	 * @return a {@link List} of {@link JobIdRange} objects
+	 * @throws CondorExecException
+	 * @see "The 'condor_submit' man page"
+	 */
+	public static List<JobIdRange> submitDescription(String description) throws CondorExecException {
+    	try {
+        	File errors = createErrorFile();
+        	Process process = new ProcessBuilder("condor_submit", "-terse", "-")
+        			.redirectError(Redirect.to(errors)).start();
+        	Writer writer = new OutputStreamWriter(process.getOutputStream());
+        	try {
+        		writer.write(description);
+        	} finally {
+        		// condor_submit reads until the end of its input, so always close it.
+        		writer.close();
+        	}
+        	return readSubmitOutput(process, errors);
+		} catch (IOException e) {
+			e.printStackTrace();
+			// Wrap the exception that we got.
+			throw new CondorExecException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Submit jobs to Condor using the given submit description without waiting
+	 * for condor_submit to finish. The description is streamed to condor_submit
+	 * through its standard input.
+	 * 
+	 * @param description a <code>String</code> with the contents of a submit file.
+	 * @return a {@link CompletableFuture} for the IDs of the jobs that were
+	 * created, one range for each cluster, which completes exceptionally with a
+	 * {@link CondorExecException} if the submission fails
+	 * @see #submitDescription(String)
+	 */
+	public static CompletableFuture<List<JobIdRange>> submitDescriptionAsync(String description) {
+		Process process;
+		final File errors;
+		try {
+			// condor_submit -terse only prints a line per cluster, which fits in the
+			// pipe, so its output can wait until it has exited. The errors go to a
+			// file, however many there are, and are reported if it fails.
+			errors = createErrorFile();
+			process = new ProcessBuilder("condor_submit", "-terse", "-")
+					.redirectError(Redirect.to(errors)).start();
+			Writer writer = new OutputStreamWriter(process.getOutputStream());
+			try {
+				writer.write(description);
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			CompletableFuture<List<JobIdRange>> failed = new CompletableFuture<List<JobIdRange>>();
+			failed.completeExceptionally(new CondorExecException(e.getMessage(), e));
+			return failed;
+		}
+		return process.onExit().thenApply(new Function<Process, List<JobIdRange>>() {
+			public List<JobIdRange> apply(Process exited) {
+				try {
+					return readSubmitOutput(exited, errors);
+				} catch (CondorExecException cee) {
+					throw new CompletionException(cee);
+				}
+			}
+		});
+	}
+	
+	/*
+	 * Read the output of a 'condor_submit -terse' process, wait for it to exit, and
+	 * return the job ID ranges it reported. The output is read before waiting so that
+	 * a chatty condor_submit can't block on a full pipe. What condor_submit said
+	 * in the file of errors is made part of the exception if it fails, and the
+	 * file is deleted.
+	 */
+	private static List<JobIdRange> readSubmitOutput(Process process, File errors) throws CondorExecException {
+		List<JobIdRange> ranges = new ArrayList<JobIdRange>(1);
     	
     	try {
-        	String[] command = {"condor_submit", submitPath};
-        	Process process = Runtime.getRuntime().exec(command);
+	    	Reader reader = new InputStreamReader(process.getInputStream());
+	    	BufferedReader bufReader = new BufferedReader(reader);
+	    	String line = null;
+	    	
+	    	// Read through the output. Each cluster gets a line of its own.
+	    	while ( (line = bufReader.readLine()) != null ) {
+	    		JobIdRange range = JobIdRange.parse(line);
+	    		if (range != null) {
+	    			ranges.add(range);
+	    		}
+	    	}
+	    	bufReader.close();
+	    	
 			process.waitFor();
 			int exitValue = process.exitValue();
 			
-			if (exitValue == 0) {
-				// The condor_submit command succeeded. It ran and exited 0...
-		    	Reader reader = new InputStreamReader(process.getInputStream());
-		    	BufferedReader bufReader = new BufferedReader(reader);
-		    	String line = null;
-		    	
-		    	// Read through the output
-		    	while ( (line = bufReader.readLine()) != null ) {
-		    		if (line.contains("submitted to cluster")) {
-		    			Pattern pattern = Pattern.compile("\\d+\\.$");
-		    			Matcher matcher = pattern.matcher(line);
-		    			if (matcher.find()) {
-		    				jobID = matcher.group();
-		    				jobID = jobID + "0";
-		    			}
-		    		}
-		    	}
-		    	bufReader.close();
-			} else {
+			if (exitValue != 0) {
 				// The condor_submit invocation failed.
-				throw new InternalException("condor_submit failed. Exit value: " + exitValue);
+				throw new CondorExecException("condor_submit failed. Exit value: " + exitValue + readErrors(errors));
+			} else if (ranges.isEmpty()) {
+				throw new CondorExecException("condor_submit did not report any job IDs." + readErrors(errors));
 			}
-		} catch (Exception e) {
+		} catch (InterruptedException e) {
+			process.destroy();
+			Thread.currentThread().interrupt();
+			throw new CondorExecException("Interrupted while waiting for condor_submit.", e);
+		} catch (IOException e) {
 			e.printStackTrace();
 			// Wrap the exception that we got.
 			throw new CondorExecException(e.getMessage(), e);
+		} finally {
+			errors.delete();
 		}
 
-		return jobID;
+		return ranges;
+	}
+	
+	/*
+	 * A temporary file for condor_submit to write its errors to.
+	 */
+	private static File createErrorFile() throws IOException {
+		File errors = File.createTempFile("condor_drmaa_submit", ".err");
+		errors.deleteOnExit();
+		return errors;
+	}
+	
+	/*
+	 * What a program wrote to its file of errors, as the end of a message, or
+	 * nothing if it wrote nothing.
+	 */
+	private static String readErrors(File errors) {
+		StringBuilder text = new StringBuilder();
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(errors));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					if (line.length() > 0) {
+						text.append(text.length() == 0 ? ": " : " ").append(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException ioe) {
+			// There is nothing more to say.
+		}
+		return text.toString();
 	}
 	
 	/**
@@ -173,4 +489,154 @@ public class CondorExec {
 			throw new IllegalArgumentException("Submit file doesn't exist or isn't a readable file.");
 		}
 	}
+	
+	/**
+	 * Given a {@link File} describing a Condor submit file, submit the jobs to
+	 * Condor for execution and return the exact IDs of the jobs that were created.
+	 * 
+	 * @param submitFile a {@link File}
+	 * @return a {@link List} of {@link JobIdRange} objects
+	 * @throws CondorExecException
+	 * @see "The 'condor_submit' man page"
+	 */
+	public static List<JobIdRange> submitForRanges(File submitFile) throws CondorExecException {
+		if (submitFile.exists() && submitFile.isFile() && submitFile.canRead()) {
+			return submitForRanges(submitFile.getAbsolutePath());
+		} else {
+			throw new IllegalArgumentException("Submit file doesn't exist or isn't a readable file.");
+		}
+	}
+	
+	/**
+	 * Look up a setting in the Condor configuration.
+	 * 
+	 * @param name a <code>String</code> with the name of the setting, such as "EVENT_LOG".
+	 * @return a <code>String</code> with the value, or null if the setting isn't defined.
+	 * @throws CondorExecException
+	 * @see "The 'condor_config_val' man page"
+	 */
+	public static String getConfigValue(String name) throws CondorExecException {
+		String value = null;
+		try {
+			// condor_config_val complains on its standard error, and exits with
+			// a non-zero value, about settings that aren't defined.
+			Process process = new ProcessBuilder("condor_config_val", name)
+					.redirectError(Redirect.DISCARD).start();
+			process.getOutputStream().close();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			try {
+				value = reader.readLine();
+				while (reader.readLine() != null) {
+					// Drain the rest, so condor_config_val can't block on the pipe.
+				}
+			} finally {
+				reader.close();
+			}
+			if (process.waitFor() != 0 || value == null || value.trim().length() == 0) {
+				return null;
+			}
+		} catch (IOException ioe) {
+			throw new CondorExecException("I/O problem occurred when running condor_config_val.", ioe);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CondorExecException("Interrupted", e);
+		}
+		return value.trim();
+	}
+	
+	/**
+	 * Ask the schedd for the states of the jobs of a number of clusters. A
+	 * single condor_q is run for all of them, unless there are so many that
+	 * they don't fit on one command line. Jobs that have left the queue aren't
+	 * in the result.
+	 * 
+	 * @param clusterIds a {@link Collection} of cluster IDs
+	 * @return a {@link JobStatusMap} of DRMAA states
+	 * @throws CondorExecException
+	 * @see "The 'condor_q' man page"
+	 * @see JobRegistry#queueState(int, int)
+	 */
+	public static JobStatusMap queryJobStatus(Collection<String> clusterIds) throws CondorExecException {
+		JobStatusMap statuses = new JobStatusMap(clusterIds.size());
+		runStatusQuery("condor_q", clusterIds, statuses);
+		return statuses;
+	}
+	
+	/**
+	 * Look up the final states of the jobs of a number of clusters in the
+	 * schedd's history, with as few runs of condor_history as the command
+	 * line allows. Only jobs that have left the queue are in the history.
+	 * 
+	 * @param clusterIds a {@link Collection} of cluster IDs
+	 * @param statuses the {@link JobStatusMap} to add the DRMAA states to
+	 * @throws CondorExecException
+	 * @see "The 'condor_history' man page"
+	 */
+	public static void queryJobHistory(Collection<String> clusterIds, JobStatusMap statuses)
+			throws CondorExecException {
+		runStatusQuery("condor_history", clusterIds, statuses);
+	}
+	
+	/*
+	 * Run condor_q or condor_history for the clusters, asking for only the
+	 * attributes that readJobStatus() needs, as JSON.
+	 */
+	private static void runStatusQuery(String program, Collection<String> clusterIds, JobStatusMap statuses)
+			throws CondorExecException {
+		for (List<String> chunk : splitArguments(clusterIds)) {
+			List<String> command = new ArrayList<String>(chunk.size() + 4);
+			Collections.addAll(command, program, "-json", "-attributes", STATUS_ATTRIBUTES);
+			command.addAll(chunk);
+			try {
+				Process process = new ProcessBuilder(command).redirectError(Redirect.DISCARD).start();
+				process.getOutputStream().close();
+				InputStream output = process.getInputStream();
+				try {
+					readJobStatus(output, statuses);
+				} finally {
+					output.close();
+				}
+				int exitValue = process.waitFor();
+				if (exitValue != 0) {
+					throw new CondorExecException("Program " + program + " exited with value " + exitValue);
+				}
+			} catch (IOException ioe) {
+				throw new CondorExecException("I/O problem occurred when running " + program + ".", ioe);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CondorExecException("Interrupted", e);
+			}
+		}
+	}
+	
+	/**
+	 * Read the ClassAds printed by 'condor_q -json' or 'condor_history -json'
+	 * into a map of DRMAA states. The output is read as it streams in, keeping
+	 * only the ClusterId, ProcId, JobStatus, HoldReasonCode, and ExitBySignal
+	 * attributes of each job, so reading a queue of any size takes the same
+	 * small amount of memory. ClassAds without a job ID and a status are
+	 * skipped. A job that completed because of a signal has failed.
+	 * 
+	 * @param input the {@link InputStream} to read
+	 * @param statuses the {@link JobStatusMap} to add the jobs to
+	 * @throws IOException if the output can't be read or isn't ClassAd JSON
+	 * @see ClassAdJsonReader
+	 */
+	public static void readJobStatus(InputStream input, final JobStatusMap statuses) throws IOException {
+		new ClassAdJsonReader(STATUS_ATTRIBUTES.split(",")).read(input, new ClassAdJsonReader.Handler() {
+			public void classAd(ClassAdJsonReader.Record record) {
+				int cluster = record.getInt(0, -1);
+				int proc = record.getInt(1, -1);
+				int jobStatus = record.getInt(2, -1);
+				if (cluster < 0 || proc < 0 || jobStatus < 0) {
+					return;
+				}
+				int state = JobRegistry.queueState(jobStatus, record.getInt(3, -1));
+				if (state == Session.DONE && record.getBoolean(4)) {
+					state = Session.FAILED;
+				}
+				statuses.put(cluster, proc, state);
+			}
+		});
+	}
 }
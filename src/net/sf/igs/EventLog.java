@@ -0,0 +1,439 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FilenameFilter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The schedd-wide event log, named by the EVENT_LOG setting of the Condor
+ * configuration, read on behalf of a single session. Every job in the pool
+ * writes its events to this one file, so the session's jobs need no logs of
+ * their own and following any number of them takes one open file. Only the
+ * events of the clusters that the session follows are handed on; the others
+ * are skipped after reading their header.
+ *
+ * <p>Reading starts at the end of the log, or where the last reader with the
+ * same offset file stopped, rather than at the start of what may be a very
+ * large file. When Condor rotates the log, the old one, which is found under
+ * its new name by its file key, is read to the end before reading carries on
+ * at the start of the new one, so that no events are lost. The same goes for
+ * a log that was rotated while no session was reading it; the jobs that are
+ * followed by the time of the first read get the rest of their events from
+ * the old log.</p>
+ *
+ * <p>A job's first events may be written, and read, before the session has
+ * learned the ID of its cluster from condor_submit. The offsets of the first
+ * events of the most recent unknown clusters are remembered, and once one of
+ * those clusters is followed its events are read again from there. A busy
+ * pool can push a cluster out of that record before it is followed, so a
+ * submission takes a {@link #checkpoint()} first and follows its clusters with
+ * {@link #addCluster(int, long)}; if the record has overflowed since the
+ * checkpoint, the log is read again from the checkpoint instead.</p>
+ *
+ * <p>The event log is off unless the {@link #CONDOR_JDRMAA_EVENT_LOG} system
+ * property is set to "true".</p>
+ *
+ * @see SharedJobLog
+ */
+public class EventLog extends SharedJobLog {
+
+	/**
+	 * This is the name of the system property that can be set to "true" to
+	 * follow the session's jobs through the schedd's event log.
+	 */
+	public static final String CONDOR_JDRMAA_EVENT_LOG = "condor.jdrmaa.log.event";
+
+	// The number of unknown clusters whose first event is remembered.
+	private static final int SKIPPED_CLUSTERS = 256;
+
+	private static File configuredLog = null;
+	private static boolean lookedUp = false;
+
+	private final File offsetFile;
+	private final ClusterSet clusters = new ClusterSet();
+	// A ring of the most recent unknown clusters and the offsets of their first events.
+	private final int[] skippedClusters = new int[SKIPPED_CLUSTERS];
+	private final long[] skippedOffsets = new long[SKIPPED_CLUSTERS];
+	private int nextSkipped = 0;
+	// The offset of the last first event that was pushed out of the ring, or -1.
+	private long lastEvicted = -1;
+	// Clusters whose skipped events have to be read again, and where to start.
+	private final ClusterSet catchUpClusters = new ClusterSet();
+	private long catchUpOffset = -1;
+	private Object fileKey = null;
+	private long savedPosition = -1;
+	// A log that was rotated away before this reader started, and where to carry on in it.
+	private File rotatedLog = null;
+	private long rotatedOffset = -1;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file the event log {@link File}
+	 * @param offsetFile the {@link File} in which to keep the offset that
+	 * reading has reached, or null to always start at the end of the log
+	 */
+	public EventLog(File file, File offsetFile) {
+		super(file);
+		this.offsetFile = offsetFile;
+		Arrays.fill(skippedClusters, -1);
+
+		fileKey = getFileKey(file);
+		long offset = file.length();
+		String[] saved = (offsetFile != null && offsetFile.exists()) ? readOffsetFile(offsetFile) : null;
+		if (saved != null) {
+			long savedOffset = Long.parseLong(saved[0]);
+			if (saved[1] != null && fileKey != null && ! saved[1].equals(fileKey.toString())) {
+				// The log has been rotated since. The rest of the old one is
+				// read first, and then all of the new one.
+				rotatedLog = findRotated(saved[1]);
+				rotatedOffset = savedOffset;
+				if (rotatedLog == null) {
+					warnLost(savedOffset);
+				}
+				offset = 0;
+			} else if (savedOffset <= file.length()) {
+				offset = savedOffset;
+			} else {
+				// The same file, but truncated.
+				warnLost(savedOffset);
+				offset = 0;
+			}
+		}
+		getTail().seek(offset);
+	}
+
+	/**
+	 * Determines whether the event log has been turned on with the
+	 * {@link #CONDOR_JDRMAA_EVENT_LOG} system property.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(CONDOR_JDRMAA_EVENT_LOG);
+	}
+
+	/**
+	 * The event log named by the Condor configuration. condor_config_val is
+	 * only asked once; the answer is kept for the life of the process.
+	 *
+	 * @return a {@link File}, or null if no event log is configured
+	 */
+	public static synchronized File findEventLog() {
+		if (! lookedUp) {
+			try {
+				String path = CondorExec.getConfigValue("EVENT_LOG");
+				if (path != null) {
+					configuredLog = new File(path);
+				}
+			} catch (CondorExecException cee) {
+				System.err.println(EventLog.class.getName() +
+						" warning: Unable to look up the event log: " + cee.getMessage());
+			}
+			lookedUp = true;
+		}
+		return configuredLog;
+	}
+
+	/**
+	 * Follow the jobs of a cluster from now on. If the log has already had
+	 * events for the cluster, they are handed on at the next {@link #read()}.
+	 *
+	 * @param cluster the cluster ID
+	 */
+	public void addCluster(int cluster) {
+		addCluster(cluster, -1);
+	}
+
+	/**
+	 * The offset that the log has reached, to be taken before a submission.
+	 * All the events of the clusters that the submission creates come after it.
+	 *
+	 * @return a <code>long</code>
+	 * @see #addCluster(int, long)
+	 */
+	public long checkpoint() {
+		return getFile().length();
+	}
+
+	/**
+	 * Follow the jobs of a cluster that was created after a checkpoint. If the
+	 * log has already had events for the cluster, they are handed on at the
+	 * next {@link #read()}, even if too many other clusters have come along
+	 * since for their first events to be remembered.
+	 *
+	 * @param cluster the cluster ID
+	 * @param checkpoint what {@link #checkpoint()} returned before the cluster
+	 * was submitted, or -1 if it isn't known
+	 */
+	public synchronized void addCluster(int cluster, long checkpoint) {
+		if (cluster < 0 || ! clusters.add(cluster)) {
+			return;
+		}
+		for (int index = 0; index < SKIPPED_CLUSTERS; index++) {
+			if (skippedClusters[index] == cluster) {
+				skippedClusters[index] = -1;
+				readAgain(cluster, skippedOffsets[index]);
+				return;
+			}
+		}
+		// The cluster's first event may have been pushed out of the ring if
+		// anything has been since the checkpoint.
+		if (checkpoint >= 0 && lastEvicted >= checkpoint && checkpoint < getTail().getPosition()) {
+			readAgain(cluster, checkpoint);
+		}
+	}
+
+	/**
+	 * Whether the jobs of a cluster are followed.
+	 *
+	 * @param cluster the cluster ID
+	 * @return a <code>boolean</code>
+	 */
+	public synchronized boolean isFollowed(int cluster) {
+		return clusters.contains(cluster);
+	}
+
+	/**
+	 * Read whatever has been appended to the log and return the IDs of the
+	 * followed jobs that had events in it. The offset that reading has
+	 * reached is saved afterwards.
+	 *
+	 * @return a {@link List} of job IDs
+	 * @throws IOException
+	 */
+	@Override
+	public synchronized List<String> read() throws IOException {
+		LogTail tail = getTail();
+		if (rotatedLog != null) {
+			drain(rotatedLog, rotatedOffset);
+			rotatedLog = null;
+		}
+		Object key = getFileKey(tail.getFile());
+		if (key != null && fileKey != null && ! key.equals(fileKey)) {
+			// Condor has rotated the log. Whatever was appended to the old one
+			// since the last read is read from wherever it was moved to, and
+			// the new one starts from scratch.
+			File rotated = findRotated(fileKey.toString());
+			if (rotated != null) {
+				drain(rotated, tail.getPosition());
+			} else {
+				warnLost(tail.getPosition());
+			}
+			tail.reset();
+			forgetSkipped();
+		}
+		if (key != null) {
+			fileKey = key;
+		}
+		catchUp(getFile(), tail.getPosition());
+		List<String> jobIds = super.read();
+		savePosition();
+		return jobIds;
+	}
+
+	@Override
+	void truncated() {
+		// The jobs' states carry over from the old log; only the offsets are stale.
+		warnLost(getTail().getPosition());
+		forgetSkipped();
+	}
+
+	@Override
+	boolean accepts(JobLogScanner scanner) {
+		int cluster = scanner.getCluster();
+		if (clusters.contains(cluster)) {
+			return true;
+		}
+		for (int index = 0; index < SKIPPED_CLUSTERS; index++) {
+			if (skippedClusters[index] == cluster) {
+				return false;
+			}
+		}
+		if (skippedClusters[nextSkipped] >= 0) {
+			lastEvicted = skippedOffsets[nextSkipped];
+		}
+		skippedClusters[nextSkipped] = cluster;
+		skippedOffsets[nextSkipped] = getTail().getEventOffset();
+		nextSkipped = (nextSkipped + 1) % SKIPPED_CLUSTERS;
+		return false;
+	}
+
+	@Override
+	void follow(String jobId) {
+		long key = Util.getJobKey(jobId);
+		if (key >= 0) {
+			addCluster(Util.getKeyCluster(key));
+		}
+	}
+
+	/*
+	 * Have the events of a cluster from the given offset on read again.
+	 */
+	private void readAgain(int cluster, long offset) {
+		catchUpClusters.add(cluster);
+		if (catchUpOffset < 0 || offset < catchUpOffset) {
+			catchUpOffset = offset;
+		}
+	}
+
+	/*
+	 * Hand on the events of newly followed clusters that were skipped before
+	 * the clusters were known. Only the part of the log up to the given end,
+	 * which has already been read, is looked at.
+	 */
+	private void catchUp(File log, final long end) throws IOException {
+		if (catchUpOffset < 0 || ! log.exists()) {
+			return;
+		}
+		final LogTail rereading = new LogTail(log);
+		rereading.seek(catchUpOffset);
+		rereading.read(new LogTail.Handler() {
+			public void event(JobLogScanner scanner) {
+				if (rereading.getEventOffset() < end && catchUpClusters.contains(scanner.getCluster())) {
+					dispatch(scanner);
+				}
+			}
+		});
+		catchUpClusters.clear();
+		catchUpOffset = -1;
+	}
+
+	/*
+	 * Hand on the events of the followed clusters from a log that has been
+	 * rotated away, from the given offset to its end. The skipped clusters are
+	 * caught up first, since their offsets are in that log.
+	 */
+	private void drain(File rotated, long offset) throws IOException {
+		catchUp(rotated, offset);
+		LogTail rest = new LogTail(rotated);
+		rest.seek(offset);
+		rest.read(new LogTail.Handler() {
+			public void event(JobLogScanner scanner) {
+				if (clusters.contains(scanner.getCluster())) {
+					dispatch(scanner);
+				}
+			}
+		});
+	}
+
+	/*
+	 * The file in the log's directory that the log with the given file key
+	 * has been rotated to, such as EVENT_LOG.old, or null if there is none.
+	 */
+	private File findRotated(String oldKey) {
+		File log = getFile().getAbsoluteFile();
+		final String prefix = log.getName() + ".";
+		File[] candidates = log.getParentFile().listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith(prefix);
+			}
+		});
+		if (candidates == null) {
+			return null;
+		}
+		for (File candidate : candidates) {
+			Object key = getFileKey(candidate);
+			if (key != null && key.toString().equals(oldKey)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	private void warnLost(long offset) {
+		System.err.println(EventLog.class.getName() + " warning: " + getFile() +
+				" was rotated or truncated and the old log can't be found; the events written to it after offset " +
+				offset + " are lost.");
+	}
+
+	private void forgetSkipped() {
+		Arrays.fill(skippedClusters, -1);
+		lastEvicted = -1;
+		catchUpClusters.clear();
+		catchUpOffset = -1;
+	}
+
+	private void savePosition() {
+		long position = getTail().getPosition();
+		if (offsetFile == null || position == savedPosition) {
+			return;
+		}
+		try {
+			FileWriter writer = new FileWriter(offsetFile);
+			try {
+				writer.write(Long.toString(position));
+				writer.write('\n');
+				if (fileKey != null) {
+					writer.write(fileKey.toString());
+					writer.write('\n');
+				}
+			} finally {
+				writer.close();
+			}
+			savedPosition = position;
+		} catch (IOException ioe) {
+			System.err.println(EventLog.class.getName() +
+					" warning: Unable to save the event log offset to " + offsetFile + ": " + ioe.getMessage());
+		}
+	}
+
+	/*
+	 * The offset saved in the file and the file key of the log it was saved
+	 * for, which may be null, or null if there is no valid offset.
+	 */
+	private static String[] readOffsetFile(File offsetFile) {
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(offsetFile));
+			try {
+				String line = reader.readLine();
+				if (line == null || Long.parseLong(line.trim()) < 0) {
+					return null;
+				}
+				return new String[] { line.trim(), reader.readLine() };
+			} finally {
+				reader.close();
+			}
+		} catch (IOException ioe) {
+			return null;
+		} catch (NumberFormatException nfe) {
+			return null;
+		}
+	}
+
+	/*
+	 * What identifies the file on disk, such as its inode, so that a rotated
+	 * log can be told from the one that was being read. Null if the file
+	 * doesn't exist or the filesystem has no such thing.
+	 */
+	private static Object getFileKey(File file) {
+		try {
+			return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+		} catch (IOException ioe) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How a session runs its blocking DRM work, such as parsing job logs and
+ * running condor_submit for batched jobs. The strategy is chosen with the
+ * {@link #CONDOR_JDRMAA_EXECUTOR} system property.
+ *
+ * <p>Virtual threads are looked up reflectively, so this library still builds
+ * and runs on Java releases that don't have them; there, the
+ * {@link #VIRTUAL} strategy falls back to {@link #PLATFORM}.</p>
+ */
+public enum ExecutorStrategy {
+
+	/**
+	 * A fixed pool of daemon platform threads. The size of the pool can be set
+	 * with the {@link #CONDOR_JDRMAA_EXECUTOR_THREADS} system property.
+	 */
+	PLATFORM,
+
+	/**
+	 * A new virtual thread for each task.
+	 */
+	VIRTUAL;
+
+	/**
+	 * This is the name of the system property that selects the strategy: "platform",
+	 * "virtual", or "auto", the default, which uses virtual threads if the Java
+	 * runtime has them.
+	 */
+	public static final String CONDOR_JDRMAA_EXECUTOR = "condor.jdrmaa.executor";
+
+	/**
+	 * This is the name of the system property that sets the number of threads
+	 * used by the {@link #PLATFORM} strategy.
+	 */
+	public static final String CONDOR_JDRMAA_EXECUTOR_THREADS = "condor.jdrmaa.executor.threads";
+
+	private static final Method newVirtualThreadPerTaskExecutor = findVirtualExecutorFactory();
+
+	/**
+	 * Determines whether the Java runtime supports virtual threads.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public static boolean isVirtualAvailable() {
+		return newVirtualThreadPerTaskExecutor != null;
+	}
+
+	/**
+	 * The strategy selected by the system properties.
+	 *
+	 * @return an {@link ExecutorStrategy}
+	 */
+	public static ExecutorStrategy fromSystemProperties() {
+		String value = System.getProperty(CONDOR_JDRMAA_EXECUTOR, "auto").trim();
+		if (value.equalsIgnoreCase("platform")) {
+			return PLATFORM;
+		} else if (value.equalsIgnoreCase("virtual")) {
+			if (! isVirtualAvailable()) {
+				System.err.println(ExecutorStrategy.class.getName() +
+						" warning: Virtual threads aren't available, using platform threads.");
+				return PLATFORM;
+			}
+			return VIRTUAL;
+		} else if (! value.equalsIgnoreCase("auto")) {
+			System.err.println(ExecutorStrategy.class.getName() +
+					" warning: Unknown executor strategy " + value + ", using the default.");
+		}
+		return isVirtualAvailable() ? VIRTUAL : PLATFORM;
+	}
+
+	/**
+	 * Create an executor following this strategy. Platform threads are daemons
+	 * whose names start with the given prefix.
+	 *
+	 * @param name a prefix for the names of the threads
+	 * @return an {@link ExecutorService}
+	 */
+	public ExecutorService newExecutor(final String name) {
+		if (this == VIRTUAL && isVirtualAvailable()) {
+			try {
+				return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+			} catch (Exception e) {
+				e.printStackTrace();
+				// Fall through to platform threads.
+			}
+		}
+		int threads = Integer.getInteger(CONDOR_JDRMAA_EXECUTOR_THREADS,
+				Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+		final AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private static Method findVirtualExecutorFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException nsme) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,441 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A single event read from a Condor job log, such as the job being submitted,
+ * starting to execute, being held or terminating.
+ *
+ * <p>Events that carry details beyond their first line are decoded into one of
+ * the nested subclasses, such as {@link Terminated} or {@link Held}. The lines
+ * of every event, after the first, are also available as they were logged
+ * through {@link #getBody()}.</p>
+ *
+ * @see JobEventType
+ * @see JobEventDecoder
+ * @see JobStateListener
+ */
+public class JobEvent {
+
+	private static final String[] NO_LINES = new String[0];
+
+	private final JobEventType type;
+	private final int cluster;
+	private final int proc;
+	private final int subproc;
+	private final Date time;
+	private final String description;
+	private final String[] body;
+
+	/**
+	 * Constructor for an event without a body.
+	 *
+	 * @param type the {@link JobEventType}
+	 * @param cluster the cluster of the job
+	 * @param proc the process of the job within the cluster
+	 * @param subproc the subprocess of the job, normally 0
+	 * @param time the time of the event, or null if it couldn't be read
+	 * @param description the text following the time on the first line of the event
+	 */
+	public JobEvent(JobEventType type, int cluster, int proc, int subproc, Date time, String description) {
+		this(type, cluster, proc, subproc, time, description, NO_LINES);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param type the {@link JobEventType}
+	 * @param cluster the cluster of the job
+	 * @param proc the process of the job within the cluster
+	 * @param subproc the subprocess of the job, normally 0
+	 * @param time the time of the event, or null if it couldn't be read
+	 * @param description the text following the time on the first line of the event
+	 * @param body the lines of the event after the first
+	 */
+	public JobEvent(JobEventType type, int cluster, int proc, int subproc, Date time, String description,
+			String[] body) {
+		this.type = type;
+		this.cluster = cluster;
+		this.proc = proc;
+		this.subproc = subproc;
+		this.time = time;
+		this.description = description;
+		this.body = body;
+	}
+
+	/**
+	 * Constructor for subclasses that add details to a decoded event.
+	 *
+	 * @param event the {@link JobEvent} with the header and body
+	 */
+	protected JobEvent(JobEvent event) {
+		this(event.type, event.cluster, event.proc, event.subproc, event.time, event.description, event.body);
+	}
+
+	/**
+	 * The type of the event.
+	 *
+	 * @return a {@link JobEventType}
+	 */
+	public JobEventType getType() {
+		return type;
+	}
+
+	/**
+	 * The cluster of the job.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getCluster() {
+		return cluster;
+	}
+
+	/**
+	 * The process of the job within its cluster.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getProc() {
+		return proc;
+	}
+
+	/**
+	 * The subprocess of the job, which is 0 unless the job is part of a parallel job.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getSubproc() {
+		return subproc;
+	}
+
+	/**
+	 * The ID of the job, in the "cluster.proc" form used by the session.
+	 *
+	 * @return a <code>String</code>
+	 */
+	public String getJobId() {
+		return cluster + "." + proc;
+	}
+
+	/**
+	 * The time of the event.
+	 *
+	 * @return a {@link Date}, or null if the time couldn't be read
+	 */
+	public Date getTime() {
+		return time;
+	}
+
+	/**
+	 * The text that follows the time on the first line of the event, such as
+	 * "Job executing on host: &lt;10.0.0.1:9618&gt;".
+	 *
+	 * @return a <code>String</code>
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * The lines of the event after the first, as they were logged.
+	 *
+	 * @return an unmodifiable {@link List} of <code>String</code>s
+	 */
+	public List<String> getBody() {
+		return Collections.unmodifiableList(Arrays.asList(body));
+	}
+
+	public String toString() {
+		return type + " " + getJobId() + " " + description;
+	}
+
+	/**
+	 * A job was submitted ({@link JobEventType#SUBMIT}).
+	 */
+	public static class Submit extends JobEvent {
+		private final String submitHost;
+
+		public Submit(JobEvent event, String submitHost) {
+			super(event);
+			this.submitHost = submitHost;
+		}
+
+		/**
+		 * The address of the schedd that the job was submitted to, such as
+		 * "&lt;10.0.0.1:9618&gt;".
+		 *
+		 * @return a <code>String</code>, or null if it wasn't logged
+		 */
+		public String getSubmitHost() {
+			return submitHost;
+		}
+	}
+
+	/**
+	 * A job started to run ({@link JobEventType#EXECUTE}).
+	 */
+	public static class Execute extends JobEvent {
+		private final String executeHost;
+
+		public Execute(JobEvent event, String executeHost) {
+			super(event);
+			this.executeHost = executeHost;
+		}
+
+		/**
+		 * The address of the machine that the job is running on.
+		 *
+		 * @return a <code>String</code>, or null if it wasn't logged
+		 */
+		public String getExecuteHost() {
+			return executeHost;
+		}
+	}
+
+	/**
+	 * The number of bytes a job moved while it ran, which is logged when it stops
+	 * running for good or for now.
+	 */
+	public static class Transfer extends JobEvent {
+		private final long runBytesSent;
+		private final long runBytesReceived;
+
+		public Transfer(JobEvent event, long runBytesSent, long runBytesReceived) {
+			super(event);
+			this.runBytesSent = runBytesSent;
+			this.runBytesReceived = runBytesReceived;
+		}
+
+		/**
+		 * The number of bytes sent by the job during its last run.
+		 *
+		 * @return a <code>long</code>, or -1 if it wasn't logged
+		 */
+		public long getRunBytesSent() {
+			return runBytesSent;
+		}
+
+		/**
+		 * The number of bytes received by the job during its last run.
+		 *
+		 * @return a <code>long</code>, or -1 if it wasn't logged
+		 */
+		public long getRunBytesReceived() {
+			return runBytesReceived;
+		}
+	}
+
+	/**
+	 * A job stopped running and went back to the queue ({@link JobEventType#JOB_EVICTED}).
+	 */
+	public static class Evicted extends Transfer {
+		private final boolean checkpointed;
+
+		public Evicted(JobEvent event, boolean checkpointed, long runBytesSent, long runBytesReceived) {
+			super(event, runBytesSent, runBytesReceived);
+			this.checkpointed = checkpointed;
+		}
+
+		/**
+		 * Whether the job was checkpointed before it was evicted.
+		 *
+		 * @return a <code>boolean</code>
+		 */
+		public boolean isCheckpointed() {
+			return checkpointed;
+		}
+	}
+
+	/**
+	 * A job, or a node of a parallel job, finished ({@link JobEventType#JOB_TERMINATED}
+	 * or {@link JobEventType#NODE_TERMINATED}).
+	 */
+	public static class Terminated extends Transfer {
+		private final boolean normal;
+		private final int returnValue;
+		private final int signal;
+		private final String coreFile;
+
+		public Terminated(JobEvent event, boolean normal, int returnValue, int signal, String coreFile,
+				long runBytesSent, long runBytesReceived) {
+			super(event, runBytesSent, runBytesReceived);
+			this.normal = normal;
+			this.returnValue = returnValue;
+			this.signal = signal;
+			this.coreFile = coreFile;
+		}
+
+		/**
+		 * Whether the job exited on its own, rather than being killed by a signal.
+		 *
+		 * @return a <code>boolean</code>
+		 */
+		public boolean isNormal() {
+			return normal;
+		}
+
+		/**
+		 * The exit code of a job that terminated normally.
+		 *
+		 * @return an <code>int</code>, or -1 if the job didn't terminate normally
+		 */
+		public int getReturnValue() {
+			return returnValue;
+		}
+
+		/**
+		 * The signal that killed a job that terminated abnormally.
+		 *
+		 * @return an <code>int</code>, or -1 if the job wasn't killed by a signal
+		 */
+		public int getSignal() {
+			return signal;
+		}
+
+		/**
+		 * The core file left by a job that was killed by a signal.
+		 *
+		 * @return a <code>String</code>, or null if there is none
+		 */
+		public String getCoreFile() {
+			return coreFile;
+		}
+	}
+
+	/**
+	 * A job was removed from the queue, or otherwise held, released or aborted,
+	 * for a reason ({@link JobEventType#JOB_ABORTED}, {@link JobEventType#JOB_RELEASED}).
+	 */
+	public static class Reasoned extends JobEvent {
+		private final String reason;
+
+		public Reasoned(JobEvent event, String reason) {
+			super(event);
+			this.reason = reason;
+		}
+
+		/**
+		 * The reason that was logged, such as "via condor_rm (by user drmaa)".
+		 *
+		 * @return a <code>String</code>, or null if none was logged
+		 */
+		public String getReason() {
+			return reason;
+		}
+	}
+
+	/**
+	 * A job was put on hold ({@link JobEventType#JOB_HELD}).
+	 */
+	public static class Held extends Reasoned {
+		private final int code;
+		private final int subcode;
+
+		public Held(JobEvent event, String reason, int code, int subcode) {
+			super(event, reason);
+			this.code = code;
+			this.subcode = subcode;
+		}
+
+		/**
+		 * The HoldReasonCode of the job.
+		 *
+		 * @return an <code>int</code>, or -1 if it wasn't logged
+		 */
+		public int getCode() {
+			return code;
+		}
+
+		/**
+		 * The HoldReasonSubCode of the job.
+		 *
+		 * @return an <code>int</code>, or -1 if it wasn't logged
+		 */
+		public int getSubcode() {
+			return subcode;
+		}
+	}
+
+	/**
+	 * The memory use of a job changed ({@link JobEventType#IMAGE_SIZE}).
+	 */
+	public static class ImageSize extends JobEvent {
+		private final long imageSize;
+		private final long memoryUsage;
+		private final long residentSetSize;
+
+		public ImageSize(JobEvent event, long imageSize, long memoryUsage, long residentSetSize) {
+			super(event);
+			this.imageSize = imageSize;
+			this.memoryUsage = memoryUsage;
+			this.residentSetSize = residentSetSize;
+		}
+
+		/**
+		 * The image size of the job in kilobytes.
+		 *
+		 * @return a <code>long</code>, or -1 if it wasn't logged
+		 */
+		public long getImageSize() {
+			return imageSize;
+		}
+
+		/**
+		 * The memory usage of the job in megabytes.
+		 *
+		 * @return a <code>long</code>, or -1 if it wasn't logged
+		 */
+		public long getMemoryUsage() {
+			return memoryUsage;
+		}
+
+		/**
+		 * The resident set size of the job in kilobytes.
+		 *
+		 * @return a <code>long</code>, or -1 if it wasn't logged
+		 */
+		public long getResidentSetSize() {
+			return residentSetSize;
+		}
+	}
+
+	/**
+	 * A job was suspended ({@link JobEventType#JOB_SUSPENDED}).
+	 */
+	public static class Suspended extends JobEvent {
+		private final int processes;
+
+		public Suspended(JobEvent event, int processes) {
+			super(event);
+			this.processes = processes;
+		}
+
+		/**
+		 * The number of processes of the job that were actually suspended.
+		 *
+		 * @return an <code>int</code>, or -1 if it wasn't logged
+		 */
+		public int getProcesses() {
+			return processes;
+		}
+	}
+}
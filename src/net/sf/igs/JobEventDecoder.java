@@ -0,0 +1,298 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.Date;
+
+/**
+ * Turns the lines of a single job log event, as found between two "..."
+ * separator lines, into a {@link JobEvent}. The header is read directly: the
+ * three digit event code, the "(cluster.proc.subproc)" job ID, the time and the
+ * description. The body is only looked at for the events that carry details,
+ * and then only line by line, without regular expressions, so that decoding an
+ * event costs about the same no matter what it is.
+ *
+ * <p>A decoder keeps no state between events, apart from the year that its
+ * {@link LogTimestampDecoder} assumes for the times, so one decoder is used
+ * for each log.</p>
+ *
+ * @see JobLogParser
+ */
+public class JobEventDecoder {
+
+	private static final String LABEL_SEPARATOR = "  -  ";
+
+	private final LogTimestampDecoder timeDecoder;
+
+	/**
+	 * Constructor for a decoder with a {@link LogTimestampDecoder} of its own.
+	 */
+	public JobEventDecoder() {
+		this(new LogTimestampDecoder());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param timeDecoder the {@link LogTimestampDecoder} for the times of the events
+	 */
+	public JobEventDecoder(LogTimestampDecoder timeDecoder) {
+		this.timeDecoder = timeDecoder;
+	}
+
+	/**
+	 * Decode an event.
+	 *
+	 * @param lines the lines of the event, without the "..." separator
+	 * @return a {@link JobEvent}, or null if the first line isn't an event header
+	 */
+	public JobEvent decode(String[] lines) {
+		if (lines.length == 0) {
+			return null;
+		}
+		JobEvent event = decodeHeader(lines);
+		if (event == null) {
+			return null;
+		}
+		switch (event.getType()) {
+		case SUBMIT:
+			return new JobEvent.Submit(event, textAfter(event.getDescription(), "from host: "));
+		case EXECUTE:
+			return new JobEvent.Execute(event, textAfter(event.getDescription(), "on host: "));
+		case JOB_EVICTED:
+			return decodeEvicted(event, lines);
+		case JOB_TERMINATED:
+		case NODE_TERMINATED:
+			return decodeTerminated(event, lines);
+		case JOB_ABORTED:
+		case JOB_RELEASED:
+			return new JobEvent.Reasoned(event, firstBodyLine(lines));
+		case JOB_HELD:
+			return decodeHeld(event, lines);
+		case IMAGE_SIZE:
+			return decodeImageSize(event, lines);
+		case JOB_SUSPENDED:
+			return decodeSuspended(event, lines);
+		default:
+			return event;
+		}
+	}
+
+	/*
+	 * Read the code, job ID, time and description from a line like
+	 * "005 (357.000.000) 08/24 18:17:59 Job terminated.". The time is either
+	 * "MM/dd HH:mm:ss" or an ISO 8601 date and time.
+	 */
+	private JobEvent decodeHeader(String[] lines) {
+		String line = lines[0];
+		int length = line.length();
+		if (length < 6 || line.charAt(3) != ' ' || line.charAt(4) != '(') {
+			return null;
+		}
+		int code = parseDigits(line, 0, 3);
+		if (code < 0) {
+			return null;
+		}
+		int clusterEnd = line.indexOf('.', 5);
+		int procEnd = (clusterEnd < 0) ? -1 : line.indexOf('.', clusterEnd + 1);
+		int idEnd = (procEnd < 0) ? -1 : line.indexOf(')', procEnd + 1);
+		if (idEnd < 0) {
+			return null;
+		}
+		int cluster = parseDigits(line, 5, clusterEnd);
+		int proc = parseDigits(line, clusterEnd + 1, procEnd);
+		int subproc = parseDigits(line, procEnd + 1, idEnd);
+		if (cluster < 0 || proc < 0 || subproc < 0) {
+			return null;
+		}
+
+		int timeStart = idEnd + 2;
+		int dateEnd = line.indexOf(' ', timeStart);
+		if (timeStart >= length || dateEnd < 0) {
+			return null;
+		}
+		int timeEnd = dateEnd;
+		if (line.lastIndexOf('T', dateEnd) < timeStart) {
+			// The date and time are separate words.
+			timeEnd = line.indexOf(' ', dateEnd + 1);
+			if (timeEnd < 0) {
+				timeEnd = length;
+			}
+		}
+		long millis = timeDecoder.parse(line.subSequence(timeStart, timeEnd));
+		Date time = (millis == LogTimestampDecoder.NO_TIME) ? null : new Date(millis);
+		String description = (timeEnd < length) ? line.substring(timeEnd + 1).trim() : "";
+
+		String[] body = new String[lines.length - 1];
+		System.arraycopy(lines, 1, body, 0, body.length);
+		return new JobEvent(JobEventType.forCode(code), cluster, proc, subproc, time, description, body);
+	}
+
+	private static JobEvent decodeEvicted(JobEvent event, String[] lines) {
+		boolean checkpointed = false;
+		long sent = -1;
+		long received = -1;
+		for (int index = 1; index < lines.length; index++) {
+			String line = lines[index].trim();
+			if (line.startsWith("(1) Job was checkpointed")) {
+				checkpointed = true;
+			} else if (hasLabel(line, "Run Bytes Sent By Job")) {
+				sent = parseLeadingNumber(line);
+			} else if (hasLabel(line, "Run Bytes Received By Job")) {
+				received = parseLeadingNumber(line);
+			}
+		}
+		return new JobEvent.Evicted(event, checkpointed, sent, received);
+	}
+
+	private static JobEvent decodeTerminated(JobEvent event, String[] lines) {
+		boolean normal = false;
+		int returnValue = -1;
+		int signal = -1;
+		String coreFile = null;
+		long sent = -1;
+		long received = -1;
+		for (int index = 1; index < lines.length; index++) {
+			String line = lines[index].trim();
+			if (line.startsWith("(1) Normal termination")) {
+				normal = true;
+				returnValue = (int) numberAfter(line, "return value ");
+			} else if (line.startsWith("(0) Abnormal termination")) {
+				signal = (int) numberAfter(line, "signal ");
+			} else if (line.startsWith("(1) Corefile in:")) {
+				coreFile = textAfter(line, "Corefile in:");
+			} else if (hasLabel(line, "Run Bytes Sent By Job")) {
+				sent = parseLeadingNumber(line);
+			} else if (hasLabel(line, "Run Bytes Received By Job")) {
+				received = parseLeadingNumber(line);
+			}
+		}
+		return new JobEvent.Terminated(event, normal, returnValue, signal, coreFile, sent, received);
+	}
+
+	private static JobEvent decodeHeld(JobEvent event, String[] lines) {
+		String reason = null;
+		int code = -1;
+		int subcode = -1;
+		for (int index = 1; index < lines.length; index++) {
+			String line = lines[index].trim();
+			if (line.startsWith("Code ")) {
+				code = (int) numberAfter(line, "Code ");
+				subcode = (int) numberAfter(line, "Subcode ");
+			} else if (reason == null && line.length() > 0) {
+				reason = line;
+			}
+		}
+		return new JobEvent.Held(event, reason, code, subcode);
+	}
+
+	private static JobEvent decodeImageSize(JobEvent event, String[] lines) {
+		long imageSize = numberAfter(event.getDescription(), "updated: ");
+		long memoryUsage = -1;
+		long residentSetSize = -1;
+		for (int index = 1; index < lines.length; index++) {
+			String line = lines[index].trim();
+			if (hasLabel(line, "MemoryUsage of job (MB)")) {
+				memoryUsage = parseLeadingNumber(line);
+			} else if (hasLabel(line, "ResidentSetSize of job (KB)")) {
+				residentSetSize = parseLeadingNumber(line);
+			}
+		}
+		return new JobEvent.ImageSize(event, imageSize, memoryUsage, residentSetSize);
+	}
+
+	private static JobEvent decodeSuspended(JobEvent event, String[] lines) {
+		int processes = -1;
+		for (int index = 1; index < lines.length && processes < 0; index++) {
+			processes = (int) numberAfter(lines[index], "suspended: ");
+		}
+		return new JobEvent.Suspended(event, processes);
+	}
+
+	/*
+	 * The first non-empty line after the header, trimmed, or null.
+	 */
+	private static String firstBodyLine(String[] lines) {
+		for (int index = 1; index < lines.length; index++) {
+			String line = lines[index].trim();
+			if (line.length() > 0) {
+				return line;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Whether a trimmed line is of the form "<number>  -  <label>".
+	 */
+	private static boolean hasLabel(String line, String label) {
+		int separator = line.indexOf(LABEL_SEPARATOR);
+		return separator > 0 && line.regionMatches(separator + LABEL_SEPARATOR.length(), label, 0, label.length());
+	}
+
+	/*
+	 * The trimmed text after the prefix, or null if the prefix isn't there.
+	 */
+	private static String textAfter(String line, String prefix) {
+		int index = line.indexOf(prefix);
+		return (index < 0) ? null : line.substring(index + prefix.length()).trim();
+	}
+
+	/*
+	 * The number right after the prefix, or -1 if there isn't one.
+	 */
+	private static long numberAfter(String line, String prefix) {
+		int index = line.indexOf(prefix);
+		return (index < 0) ? -1 : parseNumber(line, index + prefix.length());
+	}
+
+	private static long parseLeadingNumber(String line) {
+		return parseNumber(line, 0);
+	}
+
+	/*
+	 * Parse the digits starting at the given index, or return -1 if there are none.
+	 */
+	private static long parseNumber(String line, int start) {
+		long value = 0;
+		int index = start;
+		while (index < line.length() && line.charAt(index) >= '0' && line.charAt(index) <= '9') {
+			value = value * 10 + (line.charAt(index) - '0');
+			index++;
+		}
+		return (index == start) ? -1 : value;
+	}
+
+	/*
+	 * Parse the characters between start and end, which must all be digits, or
+	 * return -1.
+	 */
+	private static int parseDigits(String line, int start, int end) {
+		if (end <= start || end - start > 9) {
+			return -1;
+		}
+		int value = 0;
+		for (int index = start; index < end; index++) {
+			char c = line.charAt(index);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+}
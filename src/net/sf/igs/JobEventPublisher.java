@@ -0,0 +1,161 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+/**
+ * Publishes the events of a session's jobs as a reactive stream. Each subscriber
+ * has a buffer of its own, of a fixed size, and is only sent events as it
+ * requests them.
+ *
+ * <p>When a subscriber's buffer is full, the event is dropped for that
+ * subscriber rather than letting the buffer grow. Dropped events are counted,
+ * and reported the first time it happens. Events are published on the thread
+ * that reads the job logs, so by default it never waits for a subscriber. If
+ * the {@link #CONDOR_JDRMAA_EVENTS_TIMEOUT} is set, it waits up to that long for
+ * room first, which holds up the monitoring of every job while it does.</p>
+ *
+ * <p>The stream completes when the publisher is closed, which the session does
+ * when it is exited.</p>
+ *
+ * @see SessionImpl#getJobEventPublisher()
+ */
+public class JobEventPublisher implements Flow.Publisher<JobEvent>, JobStateListener {
+
+	/**
+	 * This is the name of the system property that sets the number of events
+	 * that are buffered for each subscriber.
+	 */
+	public static final String CONDOR_JDRMAA_EVENTS_BUFFER = "condor.jdrmaa.events.buffer";
+
+	/**
+	 * This is the name of the system property that sets how long, in milliseconds,
+	 * to wait for room in a full subscriber buffer before dropping an event. The
+	 * default is not to wait.
+	 */
+	public static final String CONDOR_JDRMAA_EVENTS_TIMEOUT = "condor.jdrmaa.events.timeout";
+
+	private static final long DEFAULT_TIMEOUT = 0;
+
+	private final SubmissionPublisher<JobEvent> publisher;
+	private final long timeout;
+	private final AtomicLong dropped = new AtomicLong();
+	private final BiPredicate<Flow.Subscriber<? super JobEvent>, JobEvent> onDrop =
+		new BiPredicate<Flow.Subscriber<? super JobEvent>, JobEvent>() {
+			public boolean test(Flow.Subscriber<? super JobEvent> subscriber, JobEvent event) {
+				if (dropped.getAndIncrement() == 0) {
+					System.err.println(JobEventPublisher.class.getName() +
+							" warning: A subscriber isn't keeping up, dropping " + event + ".");
+				}
+				// Don't try again.
+				return false;
+			}
+		};
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor the {@link Executor} that events are delivered on
+	 * @param bufferSize the maximum number of events buffered for each subscriber
+	 * @param timeout how long to wait, in milliseconds, for room in a full
+	 * buffer, or 0 not to wait
+	 */
+	public JobEventPublisher(Executor executor, int bufferSize, long timeout) {
+		if (bufferSize <= 0 || timeout < 0) {
+			throw new IllegalArgumentException("The buffer size must be positive and the timeout not negative.");
+		}
+		this.publisher = new SubmissionPublisher<JobEvent>(executor, bufferSize);
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Create a publisher configured from the system properties.
+	 *
+	 * @param executor the {@link Executor} that events are delivered on
+	 * @return a {@link JobEventPublisher}
+	 */
+	public static JobEventPublisher fromSystemProperties(Executor executor) {
+		int bufferSize = Integer.getInteger(CONDOR_JDRMAA_EVENTS_BUFFER, Flow.defaultBufferSize());
+		long timeout = Long.getLong(CONDOR_JDRMAA_EVENTS_TIMEOUT, DEFAULT_TIMEOUT);
+		return new JobEventPublisher(executor, bufferSize, timeout);
+	}
+
+	public void subscribe(Flow.Subscriber<? super JobEvent> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+
+	/**
+	 * Publish an event to every subscriber.
+	 *
+	 * @param event the {@link JobEvent}
+	 */
+	public void jobStateChanged(JobEvent event) {
+		if (publisher.isClosed() || ! publisher.hasSubscribers()) {
+			return;
+		}
+		try {
+			if (timeout == 0) {
+				publisher.offer(event, onDrop);
+			} else {
+				publisher.offer(event, timeout, TimeUnit.MILLISECONDS, onDrop);
+			}
+		} catch (IllegalStateException ise) {
+			// The publisher was closed while the event was on its way.
+		}
+	}
+
+	/**
+	 * The number of events that were dropped because a subscriber's buffer was full.
+	 *
+	 * @return a <code>long</code>
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Whether there are any subscribers, which is cheaper to find out than
+	 * {@link #getSubscriberCount()}.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public boolean hasSubscribers() {
+		return publisher.hasSubscribers();
+	}
+
+	/**
+	 * The number of current subscribers.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getSubscriberCount() {
+		return publisher.getNumberOfSubscribers();
+	}
+
+	/**
+	 * Complete the stream. Events that are already buffered are still delivered.
+	 */
+	public void close() {
+		publisher.close();
+	}
+}
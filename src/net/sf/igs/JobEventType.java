@@ -0,0 +1,123 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+/**
+ * The kinds of events that Condor writes to job logs. Each event starts with a
+ * three digit code, such as "000" for a submission or "005" for a termination,
+ * followed by the ID of the job and the time of the event.
+ *
+ * @see JobEvent
+ */
+public enum JobEventType {
+
+	SUBMIT(0),
+	EXECUTE(1),
+	EXECUTABLE_ERROR(2),
+	CHECKPOINTED(3),
+	JOB_EVICTED(4),
+	JOB_TERMINATED(5),
+	IMAGE_SIZE(6),
+	SHADOW_EXCEPTION(7),
+	GENERIC(8),
+	JOB_ABORTED(9),
+	JOB_SUSPENDED(10),
+	JOB_UNSUSPENDED(11),
+	JOB_HELD(12),
+	JOB_RELEASED(13),
+	NODE_EXECUTE(14),
+	NODE_TERMINATED(15),
+	POST_SCRIPT_TERMINATED(16),
+	GLOBUS_SUBMIT(17),
+	GLOBUS_SUBMIT_FAILED(18),
+	GLOBUS_RESOURCE_UP(19),
+	GLOBUS_RESOURCE_DOWN(20),
+	REMOTE_ERROR(21),
+	JOB_DISCONNECTED(22),
+	JOB_RECONNECTED(23),
+	JOB_RECONNECT_FAILED(24),
+	GRID_RESOURCE_UP(25),
+	GRID_RESOURCE_DOWN(26),
+	GRID_SUBMIT(27),
+	JOB_AD_INFORMATION(28),
+	JOB_STATUS_UNKNOWN(29),
+	JOB_STATUS_KNOWN(30),
+	JOB_STAGE_IN(31),
+	JOB_STAGE_OUT(32),
+	ATTRIBUTE_UPDATE(33),
+	PRESKIP(34),
+	CLUSTER_SUBMIT(35),
+	CLUSTER_REMOVE(36),
+	FACTORY_PAUSED(37),
+	FACTORY_RESUMED(38),
+	NONE(39),
+	FILE_TRANSFER(40),
+
+	/**
+	 * An event whose code this library doesn't know about.
+	 */
+	UNKNOWN(-1);
+
+	private static final JobEventType[] BY_CODE = new JobEventType[41];
+
+	static {
+		for (JobEventType type : values()) {
+			if (type.code >= 0) {
+				BY_CODE[type.code] = type;
+			}
+		}
+	}
+
+	private final int code;
+
+	private JobEventType(int code) {
+		this.code = code;
+	}
+
+	/**
+	 * The code that Condor uses for this kind of event, or -1 for
+	 * {@link #UNKNOWN}.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getCode() {
+		return code;
+	}
+
+	/**
+	 * Whether this event ends the job. Jobs that are aborted don't write a
+	 * termination event.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public boolean isTerminal() {
+		return this == JOB_TERMINATED || this == JOB_ABORTED;
+	}
+
+	/**
+	 * Look up the type of event with the given code.
+	 *
+	 * @param code the code at the start of the event
+	 * @return a {@link JobEventType}, {@link #UNKNOWN} if the code isn't known
+	 */
+	public static JobEventType forCode(int code) {
+		if (code < 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+			return UNKNOWN;
+		}
+		return BY_CODE[code];
+	}
+}
@@ -0,0 +1,152 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A contiguous range of Condor job IDs within a single cluster, such as the
+ * jobs created by one Queue directive. Only the cluster and the first and last
+ * process numbers are kept, however many jobs the range covers.
+ */
+public class JobIdRange {
+
+	// Matches the "357.0 - 357.9999" lines printed by 'condor_submit -terse'.
+	private static final Pattern tersePattern = Pattern.compile("^\\s*(\\d+)\\.(\\d+)\\s*-\\s*(\\d+)\\.(\\d+)\\s*$");
+
+	private final int cluster;
+	private final int firstProc;
+	private final int lastProc;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cluster the cluster ID
+	 * @param firstProc the process number of the first job in the range
+	 * @param lastProc the process number of the last job in the range
+	 */
+	public JobIdRange(int cluster, int firstProc, int lastProc) {
+		if (cluster < 0 || firstProc < 0 || lastProc < firstProc) {
+			throw new IllegalArgumentException("Invalid job ID range: " +
+					cluster + "." + firstProc + " - " + cluster + "." + lastProc);
+		}
+		this.cluster = cluster;
+		this.firstProc = firstProc;
+		this.lastProc = lastProc;
+	}
+
+	/**
+	 * Parse a line of 'condor_submit -terse' output, such as "357.0 - 357.9999".
+	 *
+	 * @param line a <code>String</code>
+	 * @return a {@link JobIdRange}, or null if the line doesn't describe a range
+	 */
+	public static JobIdRange parse(String line) {
+		JobIdRange range = null;
+		Matcher matcher = tersePattern.matcher(line);
+		if (matcher.matches() && matcher.group(1).equals(matcher.group(3))) {
+			range = new JobIdRange(Integer.parseInt(matcher.group(1)),
+					Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(4)));
+		}
+		return range;
+	}
+
+	/**
+	 * The cluster ID.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getCluster() {
+		return cluster;
+	}
+
+	/**
+	 * The process number of the first job in the range.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getFirstProc() {
+		return firstProc;
+	}
+
+	/**
+	 * The process number of the last job in the range.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getLastProc() {
+		return lastProc;
+	}
+
+	/**
+	 * The number of jobs in the range.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int size() {
+		return lastProc - firstProc + 1;
+	}
+
+	/**
+	 * The ID of a job in the range, such as "357.12".
+	 *
+	 * @param index the position of the job in the range, starting at 0
+	 * @return a <code>String</code>
+	 */
+	public String getJobId(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		return cluster + "." + (firstProc + index);
+	}
+
+	/**
+	 * Determines whether the range contains a job.
+	 *
+	 * @param cluster the cluster ID
+	 * @param proc the process number
+	 * @return a <code>boolean</code>
+	 */
+	public boolean contains(int cluster, int proc) {
+		return cluster == this.cluster && proc >= firstProc && proc <= lastProc;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (! (other instanceof JobIdRange)) {
+			return false;
+		}
+		JobIdRange range = (JobIdRange) other;
+		return cluster == range.cluster && firstProc == range.firstProc && lastProc == range.lastProc;
+	}
+
+	@Override
+	public int hashCode() {
+		return (cluster * 31 + firstProc) * 31 + lastProc;
+	}
+
+	/**
+	 * The range in the form printed by 'condor_submit -terse'.
+	 *
+	 * @return a <code>String</code>
+	 */
+	@Override
+	public String toString() {
+		return cluster + "." + firstProc + " - " + cluster + "." + lastProc;
+	}
+}
@@ -0,0 +1,154 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads and writes the files in which a session records the jobs it has
+ * submitted. Jobs are stored as ranges, one "cluster firstProc lastProc" line
+ * per range after a header line, so the size of a file depends on the number
+ * of submissions rather than the number of jobs. Files in the older format,
+ * with one job ID per line, can still be read.
+ */
+public class JobIdRangeFile {
+
+	/**
+	 * The first line of a file in the range format.
+	 */
+	public static final String HEADER = "# condor-jdrmaa job id ranges";
+
+	/**
+	 * Append jobs to a file. The header is written if the file is empty.
+	 *
+	 * @param file a {@link File}
+	 * @param jobIDs a {@link Collection} of job IDs
+	 * @throws IOException
+	 */
+	public static void append(File file, Collection<String> jobIDs) throws IOException {
+		appendRanges(file, toRanges(jobIDs));
+	}
+
+	/**
+	 * Append ranges of jobs to a file. The header is written if the file is empty.
+	 *
+	 * @param file a {@link File}
+	 * @param ranges a {@link List} of {@link JobIdRange} objects
+	 * @throws IOException
+	 */
+	public static void appendRanges(File file, List<JobIdRange> ranges) throws IOException {
+		boolean empty = ! file.exists() || file.length() == 0;
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file, true));
+		try {
+			if (empty) {
+				writer.write(HEADER);
+				writer.newLine();
+			}
+			for (JobIdRange range : ranges) {
+				writer.write(range.getCluster() + " " + range.getFirstProc() + " " + range.getLastProc());
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Read the ranges of jobs stored in a file. The jobs themselves aren't
+	 * expanded; wrap the result in a {@link JobIdRangeList} to get at them.
+	 *
+	 * @param file a {@link File}
+	 * @return a {@link List} of {@link JobIdRange} objects
+	 * @throws IOException
+	 */
+	public static List<JobIdRange> read(File file) throws IOException {
+		List<JobIdRange> ranges = new ArrayList<JobIdRange>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line = reader.readLine();
+			if (line == null) {
+				return ranges;
+			}
+			if (line.equals(HEADER)) {
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.trim().split("\\s+");
+					if (fields.length == 3) {
+						ranges.add(new JobIdRange(Integer.parseInt(fields[0]),
+								Integer.parseInt(fields[1]), Integer.parseInt(fields[2])));
+					}
+				}
+			} else {
+				// The old format, with one job ID per line.
+				List<String> jobIDs = new ArrayList<String>();
+				do {
+					jobIDs.add(line.trim());
+				} while ((line = reader.readLine()) != null);
+				ranges.addAll(toRanges(jobIDs));
+			}
+		} finally {
+			reader.close();
+		}
+		return ranges;
+	}
+
+	/**
+	 * Compress job IDs into ranges. Consecutive jobs of the same cluster share a
+	 * range; IDs that aren't of the form cluster.proc are dropped.
+	 *
+	 * @param jobIDs a {@link Collection} of job IDs
+	 * @return a {@link List} of {@link JobIdRange} objects
+	 */
+	public static List<JobIdRange> toRanges(Collection<String> jobIDs) {
+		if (jobIDs instanceof JobIdRangeList) {
+			return ((JobIdRangeList) jobIDs).getRanges();
+		}
+		List<JobIdRange> ranges = new ArrayList<JobIdRange>();
+		int cluster = -1;
+		int firstProc = -1;
+		int lastProc = -1;
+		for (String jobId : jobIDs) {
+			long key = Util.getJobKey(jobId);
+			if (key < 0) {
+				continue;
+			}
+			int jobCluster = Util.getKeyCluster(key);
+			int proc = Util.getKeyProc(key);
+			if (jobCluster == cluster && proc == lastProc + 1) {
+				lastProc = proc;
+			} else {
+				if (cluster >= 0) {
+					ranges.add(new JobIdRange(cluster, firstProc, lastProc));
+				}
+				cluster = jobCluster;
+				firstProc = proc;
+				lastProc = proc;
+			}
+		}
+		if (cluster >= 0) {
+			ranges.add(new JobIdRange(cluster, firstProc, lastProc));
+		}
+		return ranges;
+	}
+}
@@ -0,0 +1,138 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of Condor job IDs backed by {@link JobIdRange} objects. The
+ * ID strings are only built when they are asked for, and {@link #contains(Object)}
+ * and {@link #indexOf(Object)} work out the answer arithmetically, so the list
+ * takes the same small amount of memory whether it holds ten jobs or a million.
+ */
+public class JobIdRangeList extends AbstractList<String> implements RandomAccess {
+
+	private final JobIdRange[] ranges;
+	// offsets[i] is the list index of the first job of ranges[i]
+	private final int[] offsets;
+	private final int size;
+
+	/**
+	 * Constructor for a list holding the jobs of a single range.
+	 *
+	 * @param range a {@link JobIdRange}
+	 */
+	public JobIdRangeList(JobIdRange range) {
+		this(Collections.singletonList(range));
+	}
+
+	/**
+	 * Constructor for a list holding the jobs of several ranges, in order.
+	 *
+	 * @param ranges a {@link List} of {@link JobIdRange} objects
+	 */
+	public JobIdRangeList(List<JobIdRange> ranges) {
+		this.ranges = ranges.toArray(new JobIdRange[ranges.size()]);
+		this.offsets = new int[this.ranges.length];
+		long total = 0;
+		for (int index = 0; index < this.ranges.length; index++) {
+			offsets[index] = (int) total;
+			total += this.ranges[index].size();
+		}
+		if (total > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many jobs for a list: " + total);
+		}
+		this.size = (int) total;
+	}
+
+	/**
+	 * The ranges backing this list.
+	 *
+	 * @return a {@link List} of {@link JobIdRange} objects
+	 */
+	public List<JobIdRange> getRanges() {
+		List<JobIdRange> list = new ArrayList<JobIdRange>(ranges.length);
+		Collections.addAll(list, ranges);
+		return Collections.unmodifiableList(list);
+	}
+
+	@Override
+	public String get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		int rangeIndex = rangeOf(index);
+		return ranges[rangeIndex].getJobId(index - offsets[rangeIndex]);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return indexOf(object) >= 0;
+	}
+
+	@Override
+	public int indexOf(Object object) {
+		if (! (object instanceof String)) {
+			return -1;
+		}
+		long key = Util.getJobKey((String) object);
+		if (key < 0) {
+			return -1;
+		}
+		int cluster = Util.getKeyCluster(key);
+		int proc = Util.getKeyProc(key);
+		for (int rangeIndex = 0; rangeIndex < ranges.length; rangeIndex++) {
+			JobIdRange range = ranges[rangeIndex];
+			if (range.contains(cluster, proc)) {
+				return offsets[rangeIndex] + (proc - range.getFirstProc());
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object object) {
+		// Condor job IDs are unique, so there is only ever one occurrence.
+		return indexOf(object);
+	}
+
+	/*
+	 * Find the range that holds the job at the given list index.
+	 */
+	private int rangeOf(int index) {
+		int low = 0;
+		int high = offsets.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (offsets[middle] <= index) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+}
@@ -16,20 +16,12 @@ License along with this library; if not, write to the Free Software
 Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 */
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.ggf.drmaa.InvalidJobException;
 import org.ggf.drmaa.JobInfo;
@@ -44,11 +36,43 @@ public class JobLogParser {
 	private String jobId = null;
 	private File logFile;
 	private boolean parsed = false;
-	private Date submissionTime, startTime, endTime;
-	private Pattern pattern = Pattern.compile("\\d{2}/\\d{2} \\d{2}:\\d{2}:\\d{2}");
-	private int runBytesSent = 0;
+	// In milliseconds, or LogTimestampDecoder.NO_TIME if not known.
+	private long submissionTime = LogTimestampDecoder.NO_TIME;
+	private long startTime = LogTimestampDecoder.NO_TIME;
+	private long endTime = LogTimestampDecoder.NO_TIME;
+	private long runBytesSent = 0;
 	private int exitValue = -1;
 	private int signal = -1;
+	private int status = 0x00000000;
+	private JobStateListener listener = null;
+	private ScannedEventListener scannedListener = null;
+	// Events that start before this offset have already been reported.
+	private long reportedUntil = 0;
+	// The times read in place and those of decoded events share the year assumed for the log.
+	private final LogTimestampDecoder timeDecoder = new LogTimestampDecoder();
+	// Only made once there is a JobStateListener to decode events for.
+	private JobEventDecoder decoder = null;
+	private final LogTail.Handler handler = new LogTail.Handler() {
+		public void event(JobLogScanner scanner) {
+			process(scanner);
+		}
+	};
+	
+	// What the termination event is searched for.
+	private static final byte[] NORMAL_TERMINATION = JobLogScanner.bytes("(1) Normal termination");
+	private static final byte[] RETURN_VALUE = JobLogScanner.bytes("(return value ");
+	private static final byte[] SIGNAL = JobLogScanner.bytes("(signal ");
+	private static final byte[] CORE_FILE = JobLogScanner.bytes("(1) Corefile in:");
+	private static final byte[] RUN_BYTES_SENT = JobLogScanner.bytes("  -  Run Bytes Sent By Job");
+	// The names of the signals whose numbers are the same everywhere, by number.
+	private static final String[] SIGNAL_NAMES = {
+		null, "SIGHUP", "SIGINT", "SIGQUIT", "SIGILL", "SIGTRAP", "SIGABRT", null,
+		"SIGFPE", "SIGKILL", null, "SIGSEGV", null, "SIGPIPE", "SIGALRM", "SIGTERM"
+	};
+	
+	// Reads the log incrementally. There is none if the job's events come from
+	// a log that is shared with other jobs.
+	private final LogTail tail;
 	
 	/**
 	 * Constructor.
@@ -59,6 +83,7 @@ public class JobLogParser {
 	 */
 	public JobLogParser(File logFile) throws InvalidJobException, IOException {
 		this.logFile = logFile;
+		this.tail = new LogTail(logFile);
 	}
 	
 	/**
@@ -77,7 +102,58 @@ public class JobLogParser {
 		if (! (logFile.exists() && logFile.isFile() && logFile.canRead())) {
 			throw new IllegalArgumentException("Log file doesn't exist or isn't readable.");
 		}
+		this.jobId = jobId;
 		this.logFile = logFile;
+		this.tail = new LogTail(logFile);
+	}
+	
+	/*
+	 * Constructor for the state of one job in a log that is shared with other
+	 * jobs. The events are handed to the parser by the reader of the shared log.
+	 */
+	JobLogParser(String jobId, File sharedLog) {
+		this.jobId = jobId;
+		this.logFile = sharedLog;
+		this.tail = null;
+	}
+	
+	/**
+	 * Retrieve the log file that this parser reads.
+	 * 
+	 * @return a {@link File}
+	 */
+	public File getLogFile() {
+		return logFile;
+	}
+	
+	/**
+	 * Set the listener that is told about every event as it is parsed. Events
+	 * are reported once, unless the log is read again from the beginning after
+	 * a {@link #reset()}.
+	 * 
+	 * @param listener a {@link JobStateListener}, or null for none
+	 */
+	public synchronized void setJobStateListener(JobStateListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Set the listener that is told about every event as it is parsed, before
+	 * anything is decoded from it. It is told before the {@link JobStateListener}.
+	 * 
+	 * @param scannedListener a {@link ScannedEventListener}, or null for none
+	 */
+	public synchronized void setScannedEventListener(ScannedEventListener scannedListener) {
+		this.scannedListener = scannedListener;
+	}
+	
+	/*
+	 * Don't report the events that start before the given offset to the
+	 * listener, because they were reported when the log was read earlier.
+	 * They still count toward the job's state.
+	 */
+	synchronized void setReportedUntil(long offset) {
+		this.reportedUntil = offset;
 	}
 	
 	/**
@@ -89,7 +165,7 @@ public class JobLogParser {
 		if (! parsed) {
 			throw new IllegalStateException("File hasn't been parsed yet.");
 		}
-		return submissionTime;
+		return toDate(submissionTime);
 	}
 	
 	/**
@@ -101,7 +177,7 @@ public class JobLogParser {
 		if (! parsed) {
 			throw new IllegalStateException("File hasn't been parsed yet.");
 		}
-		return startTime;
+		return toDate(startTime);
 	}
 	
 	/**
@@ -113,103 +189,209 @@ public class JobLogParser {
 		if (! parsed) {
 			throw new IllegalStateException("File hasn't been parsed yet.");
 		}
-		return endTime;
+		return toDate(endTime);
 	}
 	
 	/**
 	 * Parses the job's log file and returns a {@link JobInfo} object that describes
 	 * the job and its status.
 	 * 
+	 * <p>The parser is incremental. It remembers the file position just after the
+	 * last complete event (the "..." separator line) and subsequent invocations only
+	 * read the bytes that have been appended since then, so repeated polling of a
+	 * growing log costs time proportional to the new data rather than to the size of
+	 * the whole file. An event that has only been partially written is left for the
+	 * next invocation. If the file shrinks (it was truncated or replaced), the parser
+	 * starts over from the beginning.</p>
+	 * 
 	 * @return a {@link JobInfo} object
 	 * @throws IOException 
 	 */
-	public JobInfo parse() throws IOException {
-		int status = 0x00000000;
-		
-		try {
-			BufferedReader buf = new BufferedReader(new FileReader(logFile));
-			String line;
-			while ((line = buf.readLine()) != null) {
-				if (line.contains("Job submitted from host") && (submissionTime == null)) {
-					// We check if submissionTime is null so that we don't overwrite
-					// a previously determined submission time, if multiple submission times
-					// are found in the log file.
-					submissionTime = parseDate(line);
-				} else if (line.contains("Job executing on host")) {
-					startTime = parseDate(line);
-				} else if (line.contains("Job terminated")) {
-					// If we have finished, but never started executing, then we never
-					// actually ran. Perhaps we were aborted or some such...
-					if (startTime == null) {
-						status += JobInfoImpl.NEVERRAN_BIT;
-					}
-					// Okay, we know the job is done. But was it successful?
-					status += JobInfoImpl.EXITED_BIT;
-					
-					endTime = parseDate(line);
-
-					while ((line = buf.readLine()) != null) {
-						if (line.contains("Normal termination")) {
-							Pattern rvPattern = Pattern.compile("return value (\\d+)");
-							Matcher rvMatcher = rvPattern.matcher(line);
-							if (rvMatcher.find()) {
-								exitValue = Integer.parseInt(rvMatcher.group(1));
-								// Set the status by performing the correct bit operations
-								status += (exitValue << JobInfoImpl.EXIT_STATUS_OFFSET);
-							}
-						} else if (line.contains("Abnormal termination")) {
-							Pattern signalPattern = Pattern.compile("signal \\d+");
-							Matcher sigMatcher = signalPattern.matcher(line);
-							if (sigMatcher.find()) {
-								signal = Integer.parseInt(sigMatcher.group(1));
-								status += JobInfoImpl.SIGNALED_BIT;
-							}
-							line = buf.readLine();
-							if (line.contains("Corefile in:")) {
-								status += JobInfoImpl.COREDUMP_BIT;
-							}
-						}
-					}
-				}
-			}
-			buf.close();
-		} catch (FileNotFoundException e) {
-			throw e;
-		} catch (IOException e) {
-			throw e;
+	public synchronized JobInfo parse() throws IOException {
+		if (tail == null) {
+			throw new IllegalStateException("The events of this job are read from a shared log.");
+		}
+		if (tail.isTruncated()) {
+			// The log isn't the same file anymore. Start over.
+			reset();
 		}
+		tail.read(handler);
 		
 		parsed = true;
-		
-		// Put together the JobInfoImpl that we will return.
+		return getJobInfo();
+	}
+	
+	/*
+	 * Put together a JobInfoImpl from what has been parsed so far.
+	 */
+	synchronized JobInfo getJobInfo() {
 		String[] resources = getResourceUsage();
-		// TODO: The signal is probably wrong here
-		JobInfoImpl info = new JobInfoImpl(jobId, status, resources, signal + "");
+		JobInfoImpl info = new JobInfoImpl(jobId, status, resources, (signal < 0) ? null : signalName(signal));
 		return info;
 	}
 	
+	/*
+	 * The symbolic name of a signal, as JobInfo.getTerminatingSignal() should
+	 * report it. The log only has the signal's number on the execute machine,
+	 * so only the numbers that all POSIX systems agree on are named.
+	 */
+	static String signalName(int signal) {
+		if (signal < 1 || signal >= SIGNAL_NAMES.length || SIGNAL_NAMES[signal] == null) {
+			return "unknown signal";
+		}
+		return SIGNAL_NAMES[signal];
+	}
+	
 	/**
-	 * Parse a Condor date string found in job log files into a {@link Date}
-	 * If the line provided does not contain a date, null is returned.
+	 * Discards everything learned from the log so far so that the next call to
+	 * {@link #parse()} reads the log from the beginning.
+	 */
+	public synchronized void reset() {
+		if (tail != null) {
+			tail.reset();
+		}
+		parsed = false;
+		submissionTime = LogTimestampDecoder.NO_TIME;
+		startTime = LogTimestampDecoder.NO_TIME;
+		endTime = LogTimestampDecoder.NO_TIME;
+		timeDecoder.reset();
+		runBytesSent = 0;
+		exitValue = -1;
+		signal = -1;
+		status = 0x00000000;
+	}
+	
+	/**
+	 * The offset in the log file just past the last complete event that has
+	 * been parsed.
+	 * 
+	 * @return a <code>long</code>
+	 */
+	public synchronized long getPosition() {
+		return (tail == null) ? 0 : tail.getPosition();
+	}
+	
+	/**
+	 * The number of bytes that were read from the log file by the most recent
+	 * invocation of {@link #parse()}.
 	 * 
-	 * @param condorLogLine a <code>String</code> containing a log file line
-	 * @return a {@link Date}
+	 * @return a <code>long</code>
+	 */
+	public synchronized long getLastReadBytes() {
+		return (tail == null) ? 0 : tail.getLastReadBytes();
+	}
+	
+	/*
+	 * Whether nothing has been appended to the log since it was last parsed.
+	 */
+	synchronized boolean isUnchanged() {
+		return tail == null || tail.isUnchanged();
+	}
+	
+	/*
+	 * Updates the parser's state with the event the scanner is on. Only the
+	 * events that the state depends on are looked at beyond their code, and
+	 * strings are only made for the JobStateListener, if there is one.
+	 */
+	synchronized void process(JobLogScanner scanner) {
+		parsed = true;
+		switch (JobEventType.forCode(scanner.getCode())) {
+		case SUBMIT:
+			// We check if submissionTime is unset so that we don't overwrite
+			// a previously determined submission time, if multiple submission times
+			// are found in the log file.
+			if (submissionTime == LogTimestampDecoder.NO_TIME) {
+				submissionTime = eventTime(scanner);
+			}
+			break;
+		case EXECUTE:
+			startTime = eventTime(scanner);
+			break;
+		case JOB_TERMINATED:
+			terminated(scanner);
+			break;
+		case JOB_ABORTED:
+			// The job was removed before it finished. It won't log anything else.
+			status = JobInfoImpl.NEVERRAN_BIT;
+			endTime = eventTime(scanner);
+			break;
+		default:
+			break;
+		}
+		
+		if (tail != null && tail.getEventOffset() < reportedUntil) {
+			return;
+		}
+		if (scannedListener != null) {
+			scannedListener.eventScanned(scanner);
+		}
+		if (listener != null) {
+			if (decoder == null) {
+				decoder = new JobEventDecoder(timeDecoder);
+			}
+			JobEvent event = decoder.decode(scanner.getLines());
+			if (event != null) {
+				listener.jobStateChanged(event);
+			}
+		}
+	}
+	
+	/*
+	 * Updates the parser's state with the termination of the job.
 	 */
-	private Date parseDate(String condorLogLine) {
-		Date date = null;
-		Matcher matcher = pattern.matcher(condorLogLine);
-		if (matcher.find()) {
-			String dateSpec = matcher.group();
-			int year = Calendar.getInstance().get(Calendar.YEAR);
-            String dateSpecWithYear = year + "/" + dateSpec; 
-			SimpleDateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-			try {
-				date = sdf.parse(dateSpecWithYear);
-			} catch (ParseException e) {
-				e.printStackTrace();
+	private void terminated(JobLogScanner scanner) {
+		status = 0x00000000;
+		// If we have finished, but never started executing, then we never
+		// actually ran. Perhaps we were aborted or some such...
+		if (startTime == LogTimestampDecoder.NO_TIME) {
+			status += JobInfoImpl.NEVERRAN_BIT;
+		}
+		// Okay, we know the job is done. But was it successful?
+		status += JobInfoImpl.EXITED_BIT;
+		endTime = eventTime(scanner);
+		
+		long returnValue = scanner.numberAfter(RETURN_VALUE);
+		long signalNumber = scanner.numberAfter(SIGNAL);
+		if (scanner.bodyContains(NORMAL_TERMINATION) && returnValue >= 0) {
+			exitValue = (int) returnValue;
+			// Set the status by performing the correct bit operations
+			status += ((exitValue & 0xFF) << JobInfoImpl.EXIT_STATUS_OFFSET);
+		} else if (signalNumber >= 0) {
+			signal = (int) signalNumber;
+			status += JobInfoImpl.SIGNALED_BIT;
+			if (scanner.bodyContains(CORE_FILE)) {
+				status += JobInfoImpl.COREDUMP_BIT;
 			}
 		}
-		return date;
+		long sent = scanner.numberBefore(RUN_BYTES_SENT);
+		if (sent >= 0) {
+			runBytesSent = sent;
+		}
+	}
+	
+	/*
+	 * The time of the event the scanner is on, or NO_TIME if it couldn't be read.
+	 */
+	private long eventTime(JobLogScanner scanner) {
+		if (scanner.getMonth() < 0) {
+			return LogTimestampDecoder.NO_TIME;
+		}
+		long millis;
+		if (scanner.getYear() < 0) {
+			millis = timeDecoder.toMillis(scanner.getMonth(), scanner.getDay(),
+					scanner.getHour(), scanner.getMinute(), scanner.getSecond());
+		} else {
+			millis = timeDecoder.toMillis(scanner.getYear(), scanner.getMonth(), scanner.getDay(),
+					scanner.getHour(), scanner.getMinute(), scanner.getSecond());
+		}
+		return millis;
+	}
+	
+	/*
+	 * The time as a Date, or null if it isn't known.
+	 */
+	private static Date toDate(long millis) {
+		return (millis == LogTimestampDecoder.NO_TIME) ? null : new Date(millis);
 	}
 	
 	/**
@@ -225,16 +407,19 @@ public class JobLogParser {
 		}
 		// The KV suffix is for Key/Value
 		ArrayList<String> resources = new ArrayList<String>();
-		if (submissionTime != null) {
-			String submissionKV = "submission_time=" + submissionTime;
+		Date submission = toDate(submissionTime);
+		Date start = toDate(startTime);
+		Date end = toDate(endTime);
+		if (submission != null) {
+			String submissionKV = "submission_time=" + submission;
 			resources.add(submissionKV);
 		}
-		if (submissionTime != null && startTime != null) {
-			String startTimeKV = "start_time=" + startTime;
+		if (submission != null && start != null) {
+			String startTimeKV = "start_time=" + start;
 			resources.add(startTimeKV);
 		}
-		if (submissionTime != null && startTime != null && endTime != null) {
-			String endTimeKV = "end_time=" + endTime;
+		if (submission != null && start != null && end != null) {
+			String endTimeKV = "end_time=" + end;
 			resources.add(endTimeKV);
 		}
 		
@@ -0,0 +1,451 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Finds the events in a {@link ByteBuffer} holding part of a Condor job log and
+ * reads their headers where they are, without turning the bytes into strings.
+ * The event code, job ID and the fields of the time are available as numbers
+ * as soon as an event has been found, and the body can be searched for numbers
+ * by label. Strings are only made when {@link #getDescription()} or
+ * {@link #getLines()} is called, so scanning a log that is only being watched
+ * for a few kinds of events allocates next to nothing.
+ *
+ * <p>A scanner is reused from one buffer to the next with {@link #reset(ByteBuffer)}
+ * and is not thread safe.</p>
+ *
+ * @see JobLogParser
+ */
+public class JobLogScanner {
+
+	private static final Charset LOG_CHARSET = Charset.forName("ISO-8859-1");
+
+	private ByteBuffer buffer;
+	private int start;
+	private int cursor;
+
+	// The current event: from eventStart up to the separator line at eventEnd.
+	private int eventStart;
+	private int eventEnd;
+	private int headerEnd;
+	private int descriptionStart;
+
+	private int code;
+	private int cluster;
+	private int proc;
+	private int subproc;
+	private int year;
+	private int month;
+	private int day;
+	private int hour;
+	private int minute;
+	private int second;
+
+	/**
+	 * Start scanning the bytes between the buffer's position and its limit.
+	 *
+	 * @param buffer a {@link ByteBuffer}
+	 */
+	public void reset(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.start = buffer.position();
+		this.cursor = start;
+		this.eventStart = start;
+		this.eventEnd = start;
+	}
+
+	/**
+	 * Move on to the next complete event, that is, one that is followed by a
+	 * "..." separator line.
+	 *
+	 * @return false if there are no more complete events in the buffer
+	 */
+	public boolean next() {
+		int limit = buffer.limit();
+		int lineStart = cursor;
+		for (int index = cursor; index < limit; index++) {
+			if (buffer.get(index) != '\n') {
+				continue;
+			}
+			if (isSeparator(lineStart, index)) {
+				eventStart = cursor;
+				eventEnd = lineStart;
+				cursor = index + 1;
+				parseHeader();
+				return true;
+			}
+			lineStart = index + 1;
+		}
+		return false;
+	}
+
+	/**
+	 * The number of bytes, from the position the buffer had when the scanner was
+	 * reset, taken up by the events that have been scanned.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getConsumed() {
+		return cursor - start;
+	}
+
+	/**
+	 * Whether the current event starts with a proper header. If not, the other
+	 * fields of the event are meaningless.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public boolean isValid() {
+		return code >= 0;
+	}
+
+	/**
+	 * The code of the current event.
+	 *
+	 * @return an <code>int</code>, or -1 if the event has no proper header
+	 */
+	public int getCode() {
+		return code;
+	}
+
+	/**
+	 * The cluster of the current event's job.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getCluster() {
+		return cluster;
+	}
+
+	/**
+	 * The process of the current event's job.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getProc() {
+		return proc;
+	}
+
+	/**
+	 * The subprocess of the current event's job.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getSubproc() {
+		return subproc;
+	}
+
+	/**
+	 * The year of the current event, which is only logged with ISO 8601 times.
+	 *
+	 * @return an <code>int</code>, or -1 if the year wasn't logged
+	 */
+	public int getYear() {
+		return year;
+	}
+
+	/**
+	 * The month of the current event, from 1 to 12.
+	 *
+	 * @return an <code>int</code>, or -1 if the time couldn't be read
+	 */
+	public int getMonth() {
+		return month;
+	}
+
+	/**
+	 * The day of the month of the current event.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getDay() {
+		return day;
+	}
+
+	/**
+	 * The hour of the current event.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getHour() {
+		return hour;
+	}
+
+	/**
+	 * The minute of the current event.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getMinute() {
+		return minute;
+	}
+
+	/**
+	 * The second of the current event.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getSecond() {
+		return second;
+	}
+
+	/**
+	 * Whether the body of the current event, the lines after the header, contains
+	 * the given ASCII text.
+	 *
+	 * @param text a <code>byte</code> array
+	 * @return a <code>boolean</code>
+	 */
+	public boolean bodyContains(byte[] text) {
+		return indexOf(text, headerEnd, eventEnd) >= 0;
+	}
+
+	/**
+	 * Whether the current event has anything but blank lines after its header.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public boolean hasBody() {
+		for (int index = headerEnd; index < eventEnd; index++) {
+			byte b = buffer.get(index);
+			if (b != '\n' && b != '\r' && b != ' ' && b != '\t') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The number that follows the given ASCII text in the current event.
+	 *
+	 * @param text a <code>byte</code> array
+	 * @return a <code>long</code>, or -1 if the text isn't followed by a number
+	 */
+	public long numberAfter(byte[] text) {
+		int index = indexOf(text, eventStart, eventEnd);
+		return (index < 0) ? -1 : parseNumber(index + text.length, eventEnd);
+	}
+
+	/**
+	 * The number at the start of the line in the current event that contains
+	 * the given ASCII text, as in "1024  -  Run Bytes Sent By Job".
+	 *
+	 * @param text a <code>byte</code> array
+	 * @return a <code>long</code>, or -1 if there is no such line or number
+	 */
+	public long numberBefore(byte[] text) {
+		int index = indexOf(text, headerEnd, eventEnd);
+		if (index < 0) {
+			return -1;
+		}
+		while (index > headerEnd && buffer.get(index - 1) != '\n') {
+			index--;
+		}
+		while (index < eventEnd && (buffer.get(index) == ' ' || buffer.get(index) == '\t')) {
+			index++;
+		}
+		return parseNumber(index, eventEnd);
+	}
+
+	/**
+	 * The text that follows the time on the first line of the current event.
+	 *
+	 * @return a <code>String</code>
+	 */
+	public String getDescription() {
+		if (! isValid()) {
+			return "";
+		}
+		return decode(descriptionStart, trimLineEnd(descriptionStart, headerEnd)).trim();
+	}
+
+	/**
+	 * The lines of the current event, without the separator.
+	 *
+	 * @return an array of <code>String</code>s
+	 */
+	public String[] getLines() {
+		return decode(eventStart, eventEnd).split("\r?\n");
+	}
+
+	/*
+	 * Read the code, job ID and time from a header like
+	 * "005 (357.000.000) 08/24 18:17:59 Job terminated." or
+	 * "005 (357.000.000) 2024-08-24 18:17:59 Job terminated.".
+	 */
+	private void parseHeader() {
+		code = -1;
+		year = -1;
+		month = -1;
+		headerEnd = eventStart;
+		while (headerEnd < eventEnd && buffer.get(headerEnd) != '\n') {
+			headerEnd++;
+		}
+		int end = headerEnd;
+		int index = eventStart;
+		if (index + 5 > end || buffer.get(index + 3) != ' ' || buffer.get(index + 4) != '(') {
+			return;
+		}
+		int eventCode = parseFixed(index, 3);
+		if (eventCode < 0) {
+			return;
+		}
+		index += 5;
+		int clusterEnd = skipDigits(index, end);
+		int procEnd = skipDigits(clusterEnd + 1, end);
+		int subprocEnd = skipDigits(procEnd + 1, end);
+		if (clusterEnd == index || clusterEnd >= end || buffer.get(clusterEnd) != '.'
+				|| procEnd == clusterEnd + 1 || procEnd >= end || buffer.get(procEnd) != '.'
+				|| subprocEnd == procEnd + 1 || subprocEnd >= end || buffer.get(subprocEnd) != ')') {
+			return;
+		}
+		cluster = (int) parseNumber(index, clusterEnd);
+		proc = (int) parseNumber(clusterEnd + 1, procEnd);
+		subproc = (int) parseNumber(procEnd + 1, subprocEnd);
+		code = eventCode;
+
+		index = subprocEnd + 2;
+		descriptionStart = parseTime(index, end);
+	}
+
+	/*
+	 * Read the time starting at the index and return the index just past it.
+	 * If the time can't be read, the month is left at -1.
+	 */
+	private int parseTime(int index, int end) {
+		if (index + 14 <= end && buffer.get(index + 2) == '/') {
+			// MM/dd HH:mm:ss
+			month = parseFixed(index, 2);
+			day = parseFixed(index + 3, 2);
+			index += 6;
+		} else if (index + 19 <= end && buffer.get(index + 4) == '-') {
+			// yyyy-MM-dd HH:mm:ss or yyyy-MM-ddTHH:mm:ss
+			year = parseFixed(index, 4);
+			month = parseFixed(index + 5, 2);
+			day = parseFixed(index + 8, 2);
+			index += 11;
+		} else {
+			return Math.min(index, end);
+		}
+		hour = parseFixed(index, 2);
+		minute = parseFixed(index + 3, 2);
+		second = parseFixed(index + 6, 2);
+		if (month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0) {
+			month = -1;
+		}
+		index += 8;
+		// Skip fractions of a second or a zone, if any.
+		while (index < end && buffer.get(index) != ' ') {
+			index++;
+		}
+		return Math.min(index + 1, end);
+	}
+
+	/*
+	 * Checks whether the line between lineStart (inclusive) and end (exclusive)
+	 * is the "..." line that Condor writes after every event.
+	 */
+	private boolean isSeparator(int lineStart, int end) {
+		end = trimLineEnd(lineStart, end);
+		return (end - lineStart == 3) && buffer.get(lineStart) == '.'
+			&& buffer.get(lineStart + 1) == '.' && buffer.get(lineStart + 2) == '.';
+	}
+
+	private int trimLineEnd(int lineStart, int end) {
+		if (end > lineStart && buffer.get(end - 1) == '\r') {
+			end--;
+		}
+		return end;
+	}
+
+	private int indexOf(byte[] text, int from, int to) {
+		int last = to - text.length;
+		outer:
+		for (int index = from; index <= last; index++) {
+			for (int offset = 0; offset < text.length; offset++) {
+				if (buffer.get(index + offset) != text[offset]) {
+					continue outer;
+				}
+			}
+			return index;
+		}
+		return -1;
+	}
+
+	private int skipDigits(int index, int end) {
+		while (index < end && isDigit(buffer.get(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	/*
+	 * Parse exactly length digits, or return -1.
+	 */
+	private int parseFixed(int index, int length) {
+		int value = 0;
+		for (int offset = 0; offset < length; offset++) {
+			byte b = buffer.get(index + offset);
+			if (! isDigit(b)) {
+				return -1;
+			}
+			value = value * 10 + (b - '0');
+		}
+		return value;
+	}
+
+	/*
+	 * Parse the digits starting at the index, or return -1 if there are none.
+	 */
+	private long parseNumber(int index, int end) {
+		int digitsEnd = skipDigits(index, Math.min(end, index + 18));
+		if (digitsEnd == index) {
+			return -1;
+		}
+		long value = 0;
+		for (int digit = index; digit < digitsEnd; digit++) {
+			value = value * 10 + (buffer.get(digit) - '0');
+		}
+		return value;
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private String decode(int from, int to) {
+		byte[] bytes = new byte[to - from];
+		for (int index = 0; index < bytes.length; index++) {
+			bytes[index] = buffer.get(from + index);
+		}
+		return new String(bytes, LOG_CHARSET);
+	}
+
+	/**
+	 * Convert ASCII text to the bytes that the search methods take. This is
+	 * meant to be done once, for constants.
+	 *
+	 * @param text a <code>String</code>
+	 * @return a <code>byte</code> array
+	 */
+	public static byte[] bytes(String text) {
+		return text.getBytes(LOG_CHARSET);
+	}
+}
@@ -0,0 +1,587 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.ggf.drmaa.DrmaaException;
+import org.ggf.drmaa.InvalidJobException;
+import org.ggf.drmaa.JobInfo;
+
+/**
+ * Watches the logs of Condor jobs on behalf of a session. A single thread polls
+ * the log of every tracked job once per period, no matter how many threads are
+ * waiting on the job, and completes a per-job future once the job has finished.
+ * Any number of waiters can block on the same future.
+ *
+ * <p>When a {@link LogWatcher} is attached, changes to a log are reported through
+ * {@link #logChanged(String)} as they happen and the periodic poll only acts as a
+ * fallback. Polling a log that hasn't grown costs no more than a stat.</p>
+ *
+ * <p>If the monitor is given an {@link Executor}, the logs are parsed there
+ * rather than on the monitoring thread, so that many logs can be read at once.</p>
+ *
+ * <p>Each log is read incrementally: a poll only reads what has been appended
+ * since the last one. The parser that is kept for each job holds no read
+ * buffer between polls, so a tracked job costs little more than its state.
+ * Logs that don't exist yet are picked up once they appear.</p>
+ *
+ * <p>Every event found in a tracked log is passed to the registered
+ * {@link ScannedEventListener}s as it is parsed, and then to the registered
+ * {@link JobStateListener}s. Events are only decoded into {@link JobEvent}s
+ * if there is a JobStateListener for them, not counting a
+ * {@link JobEventPublisher} that has no subscribers.</p>
+ *
+ * <p>If the session's jobs write to a {@link SharedJobLog}, that log is read
+ * once per poll for all of them, and only the jobs that had events are looked
+ * at. Jobs that have a log of their own, such as jobs from other sessions,
+ * are still followed through it. The schedd's {@link EventLog} is used the
+ * same way.</p>
+ *
+ * @see JobLogParser
+ * @see LogWatcher
+ */
+public class JobMonitor {
+
+	private final Map<String, TrackedJob> jobs = new ConcurrentHashMap<String, TrackedJob>();
+	private final long period;
+	private final Executor executor;
+	private final SharedJobLog sharedLog;
+	// Set while a read of the shared log is waiting for the executor.
+	private final AtomicBoolean sharedReadScheduled = new AtomicBoolean();
+	private ScheduledExecutorService scheduler = null;
+	private final List<JobStateListener> listeners = new CopyOnWriteArrayList<JobStateListener>();
+	// Copied on write, like the listeners, but kept in an array so that handing
+	// an event to them allocates nothing.
+	private volatile ScannedEventListener[] scannedListeners = new ScannedEventListener[0];
+	private final ScannedEventListener scannedDispatcher = new ScannedEventListener() {
+		public void eventScanned(JobLogScanner scanner) {
+			for (ScannedEventListener listener : scannedListeners) {
+				try {
+					listener.eventScanned(scanner);
+				} catch (RuntimeException re) {
+					re.printStackTrace();
+				}
+			}
+		}
+	};
+	private final JobStateListener dispatcher = new JobStateListener() {
+		public void jobStateChanged(JobEvent event) {
+			for (JobStateListener listener : listeners) {
+				try {
+					listener.jobStateChanged(event);
+				} catch (RuntimeException re) {
+					// A faulty listener mustn't stop the others, or the parsing.
+					re.printStackTrace();
+				}
+			}
+		}
+	};
+
+	/**
+	 * Constructor for a monitor that parses the logs on its own thread.
+	 *
+	 * @param period the polling period in milliseconds
+	 */
+	public JobMonitor(long period) {
+		this(period, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param period the polling period in milliseconds
+	 * @param executor the {@link Executor} to parse the logs on, or null to use
+	 * the monitoring thread
+	 */
+	public JobMonitor(long period, Executor executor) {
+		this(period, executor, null);
+	}
+
+	/**
+	 * Constructor for a monitor whose jobs write to a shared log.
+	 *
+	 * @param period the polling period in milliseconds
+	 * @param executor the {@link Executor} to parse the logs on, or null to use
+	 * the monitoring thread
+	 * @param sharedLog the {@link SharedJobLog}, or null if every job has a log of its own
+	 */
+	public JobMonitor(long period, Executor executor, SharedJobLog sharedLog) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("The polling period must be positive.");
+		}
+		this.period = period;
+		this.executor = executor;
+		this.sharedLog = sharedLog;
+		if (sharedLog != null) {
+			sharedLog.setScannedEventListener(scannedDispatcher);
+		}
+	}
+
+	/**
+	 * Start the monitoring thread. Calling this method on a monitor that has
+	 * already been started has no effect.
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "condor-jdrmaa-monitor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				tick();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop the monitoring thread. Any waiters that are still blocked on jobs
+	 * that have not finished are released with an exception.
+	 */
+	public synchronized void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		for (TrackedJob job : jobs.values()) {
+			job.completion.completeExceptionally(
+					new IllegalStateException("Job monitoring has been shut down."));
+		}
+		jobs.clear();
+	}
+
+	/**
+	 * Register a listener for the events of the tracked jobs.
+	 *
+	 * @param listener a {@link JobStateListener}
+	 */
+	public void addJobStateListener(JobStateListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener that was registered with {@link #addJobStateListener(JobStateListener)}.
+	 *
+	 * @param listener a {@link JobStateListener}
+	 */
+	public void removeJobStateListener(JobStateListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Register a listener for the events of the tracked jobs that is told about
+	 * them before anything is decoded from them.
+	 *
+	 * @param listener a {@link ScannedEventListener}
+	 */
+	public synchronized void addScannedEventListener(ScannedEventListener listener) {
+		ScannedEventListener[] added = Arrays.copyOf(scannedListeners, scannedListeners.length + 1);
+		added[scannedListeners.length] = listener;
+		scannedListeners = added;
+	}
+
+	/**
+	 * Remove a listener that was registered with {@link #addScannedEventListener(ScannedEventListener)}.
+	 *
+	 * @param listener a {@link ScannedEventListener}
+	 */
+	public synchronized void removeScannedEventListener(ScannedEventListener listener) {
+		List<ScannedEventListener> remaining = new ArrayList<ScannedEventListener>(Arrays.asList(scannedListeners));
+		if (remaining.remove(listener)) {
+			scannedListeners = remaining.toArray(new ScannedEventListener[remaining.size()]);
+		}
+	}
+
+	/**
+	 * Start tracking a job, if it isn't tracked already, and return the future
+	 * that will be completed with the job's {@link JobInfo} when the job finishes.
+	 * The job's log is parsed right away, so the future of a job that has already
+	 * finished is complete by the time this method returns.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 * @return a {@link CompletableFuture}
+	 * @throws InvalidJobException if the job has no log to monitor
+	 */
+	public CompletableFuture<JobInfo> track(String jobId) throws InvalidJobException {
+		return track(jobId, true);
+	}
+
+	/**
+	 * Start tracking a job, if it isn't tracked already, and return the future
+	 * that will be completed with the job's {@link JobInfo} when the job finishes.
+	 * If <code>parseNow</code> is false, the log is left alone until the next poll
+	 * or change notification, which makes it cheap to track the jobs of a large
+	 * submission as soon as they are created. Such a job may not have a log yet.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 * @param parseNow whether to parse the job's log right away, as somebody is
+	 * about to wait on the job
+	 * @return a {@link CompletableFuture}
+	 * @throws InvalidJobException if the job ID isn't valid, or if <code>parseNow</code>
+	 * is true and the job isn't tracked yet and has no log to monitor
+	 */
+	public CompletableFuture<JobInfo> track(String jobId, boolean parseNow) throws InvalidJobException {
+		TrackedJob job = jobs.get(jobId);
+		if (job == null) {
+			if (! Util.validJobId(jobId)) {
+				throw new InvalidJobException("Invalid job id: " + jobId);
+			}
+			File log = new File(Util.getLogFromId(jobId));
+			boolean shared = sharedLog != null && ! log.exists();
+			if (shared) {
+				sharedLog.follow(jobId);
+			} else if (parseNow && ! log.isFile()) {
+				throw new InvalidJobException("Unable to monitor job " + jobId +
+						": Log file doesn't exist or isn't readable.");
+			}
+			TrackedJob created = new TrackedJob(jobId, shared ? null : log);
+			job = jobs.putIfAbsent(jobId, created);
+			if (job == null) {
+				job = created;
+			}
+		}
+		if (parseNow) {
+			// Cheap if the log hasn't changed since it was last parsed.
+			job.update();
+		} else if (job.isShared()) {
+			// The shared log may have been read before the job was tracked.
+			job.checkSharedLog();
+		}
+		return job.completion;
+	}
+
+	/**
+	 * Track a number of jobs at once and return a single future that is completed
+	 * when all of them have finished, or exceptionally as soon as monitoring any
+	 * of them fails. Every log is parsed right away.
+	 *
+	 * @param jobIds a {@link Collection} of Condor job IDs
+	 * @return a {@link CompletableFuture}
+	 * @throws InvalidJobException if one of the jobs has no log to monitor
+	 */
+	public CompletableFuture<Void> trackAll(Collection<String> jobIds) throws InvalidJobException {
+		final CompletableFuture<Void> all = new CompletableFuture<Void>();
+		// One extra count so that the future can't complete until every job is tracked.
+		final AtomicInteger remaining = new AtomicInteger(jobIds.size() + 1);
+		BiConsumer<JobInfo, Throwable> countdown = new BiConsumer<JobInfo, Throwable>() {
+			public void accept(JobInfo info, Throwable failure) {
+				if (failure != null) {
+					all.completeExceptionally(failure);
+				} else if (remaining.decrementAndGet() == 0) {
+					all.complete(null);
+				}
+			}
+		};
+		for (String jobId : jobIds) {
+			track(jobId).whenComplete(countdown);
+		}
+		countdown.accept(null, null);
+		return all;
+	}
+
+	/**
+	 * Stop tracking a job. Waiters that are blocked on the job are not
+	 * released.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 */
+	public void untrack(String jobId) {
+		jobs.remove(jobId);
+	}
+
+	/**
+	 * Tell the monitor that the log of a job has changed so that it gets parsed
+	 * right away rather than at the next poll. Nothing happens if the job is
+	 * not being tracked.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 */
+	public void logChanged(String jobId) {
+		TrackedJob job = jobs.get(jobId);
+		if (job != null) {
+			job.schedule();
+		}
+	}
+
+	/**
+	 * Whether a file in the log directory is the shared log.
+	 *
+	 * @param fileName the name of the file, without any directory
+	 * @return a <code>boolean</code>
+	 */
+	public boolean isSharedLog(String fileName) {
+		return sharedLog != null && sharedLog.getFile().getName().equals(fileName);
+	}
+
+	/**
+	 * Tell the monitor that the shared log has changed so that it gets read
+	 * right away rather than at the next poll. Nothing happens if there is no
+	 * shared log.
+	 */
+	public void sharedLogChanged() {
+		if (sharedLog != null) {
+			scheduleSharedRead();
+		}
+	}
+
+	/**
+	 * Parse the log of each tracked job right away.
+	 */
+	public void pollAll() {
+		tick();
+	}
+
+	/**
+	 * The number of jobs that are currently being tracked.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getTrackedCount() {
+		return jobs.size();
+	}
+
+	/*
+	 * Parse the log of each tracked job once.
+	 */
+	private void tick() {
+		if (sharedLog != null) {
+			scheduleSharedRead();
+		}
+		for (TrackedJob job : jobs.values()) {
+			if (! job.isShared()) {
+				job.schedule();
+			}
+		}
+	}
+
+	/*
+	 * Read the shared log on the executor, if there is one, or right here.
+	 */
+	private void scheduleSharedRead() {
+		if (executor == null) {
+			safeReadSharedLog();
+		} else if (sharedReadScheduled.compareAndSet(false, true)) {
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						sharedReadScheduled.set(false);
+						safeReadSharedLog();
+					}
+				});
+			} catch (RuntimeException re) {
+				// The executor has been shut down or is full; try again next time.
+				sharedReadScheduled.set(false);
+			}
+		}
+	}
+
+	private void safeReadSharedLog() {
+		try {
+			readSharedLog();
+		} catch (RuntimeException re) {
+			re.printStackTrace();
+		}
+	}
+
+	/*
+	 * Read what has been appended to the shared log and check on the tracked
+	 * jobs that had events.
+	 */
+	private void readSharedLog() {
+		List<String> changed;
+		sharedLog.setJobStateListener(getDecodedListener());
+		try {
+			changed = sharedLog.read();
+		} catch (IOException ioe) {
+			// The log may be in the middle of being written; try again next time.
+			System.err.println(JobMonitor.class.getName() +
+					" warning: Unable to read " + sharedLog.getFile() + ": " + ioe.getMessage());
+			return;
+		}
+		for (String jobId : changed) {
+			TrackedJob job = jobs.get(jobId);
+			if (job != null && job.isShared()) {
+				job.checkSharedLog();
+			}
+		}
+	}
+
+	/*
+	 * The listener for the parsers to hand decoded events to, or null if
+	 * nobody would do anything with them, so that they aren't decoded at all.
+	 */
+	private JobStateListener getDecodedListener() {
+		for (JobStateListener listener : listeners) {
+			// A publisher without subscribers drops every event.
+			if (! (listener instanceof JobEventPublisher) || ((JobEventPublisher) listener).hasSubscribers()) {
+				return dispatcher;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * The monitoring state for a single job. Jobs that write to the shared log
+	 * have no log of their own. The parser of a job with its own log is kept
+	 * so that each update only reads what has been appended since the last.
+	 */
+	private class TrackedJob {
+		private final String jobId;
+		private File log;
+		private final CompletableFuture<JobInfo> completion = new CompletableFuture<JobInfo>();
+		// Set while an update is waiting for the executor, so updates don't pile up.
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private JobLogParser parser = null;
+		// How much of the log has been parsed and reported to the listeners.
+		private long parsedLength = 0;
+
+		TrackedJob(String jobId, File log) {
+			this.jobId = jobId;
+			this.log = log;
+		}
+
+		boolean isShared() {
+			return log == null;
+		}
+
+		/*
+		 * Update the job on the executor, if there is one, or right here.
+		 */
+		void schedule() {
+			if (log == null) {
+				scheduleSharedRead();
+			} else if (executor == null) {
+				safeUpdate();
+			} else if (scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(new Runnable() {
+						public void run() {
+							scheduled.set(false);
+							safeUpdate();
+						}
+					});
+				} catch (RuntimeException re) {
+					// The executor has been shut down or is full; try again next time.
+					scheduled.set(false);
+				}
+			}
+		}
+
+		private void safeUpdate() {
+			try {
+				update();
+			} catch (RuntimeException re) {
+				// Don't let one bad log stop the monitoring of all the others.
+				re.printStackTrace();
+			}
+		}
+
+		/*
+		 * Parse whatever has been appended to the log since the last update and
+		 * complete the future if the job has finished or was removed from the
+		 * queue. Finished jobs are no longer tracked.
+		 */
+		synchronized void update() {
+			if (log == null) {
+				readSharedLog();
+				checkSharedLog();
+				return;
+			}
+			// Don't bother opening the log if nothing has been added to it. A
+			// log that doesn't exist yet has no length either.
+			long length = log.length();
+			if (length == parsedLength) {
+				return;
+			}
+			if (length < parsedLength) {
+				// The log was truncated or replaced, so it's all new.
+				parsedLength = 0;
+				parser = null;
+			}
+			JobLogParser current = parser;
+			try {
+				if (current == null) {
+					current = new JobLogParser(jobId);
+					current.setScannedEventListener(scannedDispatcher);
+					current.setReportedUntil(parsedLength);
+				}
+				current.setJobStateListener(getDecodedListener());
+				JobInfo info = current.parse();
+				parsedLength = current.getPosition();
+				if (parser != current) {
+					parser = current;
+					// Share the parser's copy of the path.
+					log = current.getLogFile();
+				}
+				if (info.hasExited() || info.wasAborted()) {
+					jobs.remove(jobId, this);
+					completion.complete(info);
+				}
+			} catch (IllegalArgumentException iae) {
+				// The log isn't there yet, or can't be read yet. Try again next time.
+			} catch (IOException ioe) {
+				jobs.remove(jobId, this);
+				completion.completeExceptionally(ioe);
+			} catch (DrmaaException de) {
+				jobs.remove(jobId, this);
+				completion.completeExceptionally(de);
+			}
+		}
+
+		/*
+		 * Complete the future if the shared log says that the job has finished.
+		 * The shared log has nothing more to do with the job after that.
+		 */
+		void checkSharedLog() {
+			JobInfo info = sharedLog.getJobInfo(jobId);
+			try {
+				if (info != null && (info.hasExited() || info.wasAborted())) {
+					jobs.remove(jobId, this);
+					sharedLog.release(jobId);
+					completion.complete(info);
+				}
+			} catch (DrmaaException de) {
+				jobs.remove(jobId, this);
+				sharedLog.release(jobId);
+				completion.completeExceptionally(de);
+			}
+		}
+	}
+}
@@ -0,0 +1,763 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.ggf.drmaa.DrmaaException;
+import org.ggf.drmaa.JobInfo;
+import org.ggf.drmaa.Session;
+
+/**
+ * The jobs submitted by a session, kept in memory. Each job is looked up by its
+ * cluster and process number, and the registry records the job template it was
+ * submitted with, its last known state and, once it has finished, its
+ * {@link JobInfo}. Jobs are stored per cluster, a byte of state per job, so a
+ * bulk submission of a million tasks costs about a megabyte.
+ *
+ * <p>Jobs that finish are queued in the order they finished until they are
+ * reaped, which is what waiting for any job of the session takes them from.
+ * Asynchronous waiters registered with {@link #nextFinished()} are served
+ * first.</p>
+ *
+ * <p>If the registry is given a session directory, every submission is also
+ * appended to the file of its job template, using {@link JobIdRangeFile}. The
+ * files are written behind by a background thread, so registering jobs never
+ * waits on the filesystem, and nothing reads them back while the session is
+ * active.</p>
+ *
+ * <p>The registry is told about the events read from the job logs, as a
+ * {@link ScannedEventListener}, and keeps the state of each job up to date
+ * with them.</p>
+ */
+public class JobRegistry implements ScannedEventListener {
+
+	// The state of a job that has been reaped, or that was never part of the session.
+	private static final byte REAPED = -1;
+	// The HoldReasonCodes of jobs held at the request of their owner.
+	private static final int HOLD_CODE_USER_REQUEST = 1;
+	private static final int HOLD_CODE_SUBMITTED_ON_HOLD = 15;
+	// What the hold event of a job is searched for.
+	private static final byte[] HOLD_CODE = JobLogScanner.bytes("Code ");
+	private static final byte[] CONDOR_HOLD = JobLogScanner.bytes("condor_hold");
+	// The values of the JobStatus job attribute.
+	private static final int JOB_STATUS_IDLE = 1;
+	private static final int JOB_STATUS_RUNNING = 2;
+	private static final int JOB_STATUS_REMOVED = 3;
+	private static final int JOB_STATUS_COMPLETED = 4;
+	private static final int JOB_STATUS_HELD = 5;
+	private static final int JOB_STATUS_TRANSFERRING_OUTPUT = 6;
+	private static final int JOB_STATUS_SUSPENDED = 7;
+
+	private final ConcurrentNavigableMap<Integer, Cluster> clusters = new ConcurrentSkipListMap<Integer, Cluster>();
+	// The cluster of the last event, since events come in runs for the same cluster.
+	private volatile Cluster lastEventCluster = null;
+	private final BlockingDeque<String> finished = new LinkedBlockingDeque<String>();
+	private final Queue<CompletableFuture<String>> waiters = new ConcurrentLinkedQueue<CompletableFuture<String>>();
+	private final File sessionDir;
+	private final ExecutorService writer;
+
+	/**
+	 * Constructor for a registry that is only kept in memory.
+	 */
+	public JobRegistry() {
+		this(null);
+	}
+
+	/**
+	 * Constructor for a registry that writes its submissions to a session directory.
+	 *
+	 * @param sessionDir the session directory, or null for no persistence
+	 */
+	public JobRegistry(File sessionDir) {
+		this.sessionDir = sessionDir;
+		if (sessionDir == null) {
+			writer = null;
+		} else {
+			writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "condor-jdrmaa-registry");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Record the jobs created by a submission.
+	 *
+	 * @param templateId the ID of the job template the jobs were submitted with
+	 * @param jobIDs a {@link Collection} of job IDs
+	 * @param state the DRMAA state the jobs start in, such as {@link Session#QUEUED_ACTIVE}
+	 */
+	public void register(final int templateId, Collection<String> jobIDs, int state) {
+		final List<JobIdRange> ranges = JobIdRangeFile.toRanges(jobIDs);
+		for (JobIdRange range : ranges) {
+			while (true) {
+				Cluster existing = clusters.get(range.getCluster());
+				if (existing == null) {
+					existing = clusters.putIfAbsent(range.getCluster(), new Cluster(range, templateId, state));
+					if (existing == null) {
+						break;
+					}
+				}
+				// The jobs of a batch submission share a cluster and are registered
+				// one at a time, so the cluster grows in place.
+				if (existing.add(range, templateId, state)) {
+					break;
+				}
+				// All the cluster's jobs were reaped and it was removed meanwhile.
+			}
+		}
+		if (writer != null && ! ranges.isEmpty()) {
+			writer.execute(new Runnable() {
+				public void run() {
+					File file = new File(sessionDir, String.valueOf(templateId));
+					try {
+						JobIdRangeFile.appendRanges(file, ranges);
+					} catch (IOException ioe) {
+						System.err.println(JobRegistry.class.getName() +
+								" warning: Unable to save job IDs to " + file + ": " + ioe.getMessage());
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Determines whether a job belongs to the session and hasn't been reaped.
+	 *
+	 * @param jobId a job ID
+	 * @return a <code>boolean</code>
+	 */
+	public boolean contains(String jobId) {
+		return getRawState(jobId) != REAPED;
+	}
+
+	/**
+	 * Determines whether the session has any jobs that haven't been reaped.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public boolean isEmpty() {
+		return clusters.isEmpty();
+	}
+
+	/**
+	 * The ID of the job template a job was submitted with.
+	 *
+	 * @param jobId a job ID
+	 * @return an <code>int</code>, or -1 if the job isn't in the registry
+	 */
+	public int getTemplateId(String jobId) {
+		long key = Util.getJobKey(jobId);
+		Cluster cluster = (key < 0) ? null : clusters.get(Util.getKeyCluster(key));
+		return (cluster == null) ? -1 : cluster.getTemplateId(Util.getKeyProc(key));
+	}
+
+	/**
+	 * The last known DRMAA state of a job.
+	 *
+	 * @param jobId a job ID
+	 * @return an <code>int</code>, {@link Session#UNDETERMINED} if the job
+	 * isn't in the registry
+	 */
+	public int getState(String jobId) {
+		byte state = getRawState(jobId);
+		return (state == REAPED) ? Session.UNDETERMINED : state;
+	}
+
+	/**
+	 * Record the state of a job. Jobs that aren't in the registry are ignored.
+	 *
+	 * @param jobId a job ID
+	 * @param state a DRMAA state, such as {@link Session#RUNNING}
+	 */
+	public void setState(String jobId, int state) {
+		long key = Util.getJobKey(jobId);
+		Cluster cluster = (key < 0) ? null : clusters.get(Util.getKeyCluster(key));
+		if (cluster != null) {
+			cluster.setState(Util.getKeyProc(key), (byte) state);
+		}
+	}
+
+	/**
+	 * Move a job to the state that an event from its log leads to. Events that
+	 * don't change the state, such as image size updates, are ignored, and so
+	 * are events for jobs that aren't in the registry or have finished. The end
+	 * of a job is left to {@link #finish(String, JobInfo)}, which has the job's
+	 * {@link JobInfo}.
+	 *
+	 * @param event a {@link JobEvent}
+	 * @see #nextState(int, JobEvent)
+	 */
+	public void update(JobEvent event) {
+		Cluster cluster = clusters.get(event.getCluster());
+		if (cluster != null) {
+			cluster.update(event.getProc(), event.getType(), isUserHold(event));
+		}
+	}
+
+	/**
+	 * The same as {@link #update(JobEvent)}, for the event a scanner is on.
+	 * Nothing is decoded from the event beyond its header, unless it is a
+	 * hold, whose code is looked for in place.
+	 *
+	 * @param scanner the {@link JobLogScanner} on the event
+	 */
+	public void eventScanned(JobLogScanner scanner) {
+		Cluster cluster = lastEventCluster;
+		if (cluster == null || cluster.clusterId != scanner.getCluster() || cluster.retired) {
+			cluster = clusters.get(scanner.getCluster());
+		}
+		if (cluster != null) {
+			lastEventCluster = cluster;
+			JobEventType type = JobEventType.forCode(scanner.getCode());
+			cluster.update(scanner.getProc(), type, type == JobEventType.JOB_HELD && isUserHold(scanner));
+		}
+	}
+
+	/**
+	 * The DRMAA state a job is in after an event, given the state it was in
+	 * before. This is the job state machine:
+	 *
+	 * <ul>
+	 * <li>Starting to run, or being unsuspended, leads to {@link Session#RUNNING}.</li>
+	 * <li>Being evicted, released, or losing its shadow puts the job back in
+	 * the queue, {@link Session#QUEUED_ACTIVE}.</li>
+	 * <li>Being held leads to {@link Session#USER_ON_HOLD} if the user asked for
+	 * it, at submission or later, and to {@link Session#SYSTEM_ON_HOLD} if Condor
+	 * held the job for some other reason.</li>
+	 * <li>Being suspended leads to {@link Session#SYSTEM_SUSPENDED}, since this
+	 * library carries out DRMAA suspensions by holding jobs and Condor itself
+	 * suspends jobs that its machine policies say should make way.</li>
+	 * <li>Everything else leaves the state alone. In particular, a job that was
+	 * submitted on hold stays on hold when its submission is logged.</li>
+	 * </ul>
+	 *
+	 * @param state the DRMAA state before the event
+	 * @param event a {@link JobEvent}
+	 * @return the DRMAA state after the event
+	 */
+	public static int nextState(int state, JobEvent event) {
+		return nextState(state, event.getType(), isUserHold(event));
+	}
+
+	/*
+	 * nextState() for an event of the given type, which is a hold that the
+	 * user asked for if userHold is set.
+	 */
+	private static int nextState(int state, JobEventType type, boolean userHold) {
+		switch (type) {
+		case EXECUTE:
+		case NODE_EXECUTE:
+		case JOB_UNSUSPENDED:
+			return Session.RUNNING;
+		case JOB_EVICTED:
+		case JOB_RELEASED:
+		case SHADOW_EXCEPTION:
+			return Session.QUEUED_ACTIVE;
+		case JOB_HELD:
+			return userHold ? Session.USER_ON_HOLD : Session.SYSTEM_ON_HOLD;
+		case JOB_SUSPENDED:
+			return Session.SYSTEM_SUSPENDED;
+		default:
+			return state;
+		}
+	}
+
+	/**
+	 * The DRMAA state of a job in the queue, given the JobStatus and
+	 * HoldReasonCode attributes that condor_q reports for it. The states
+	 * follow {@link #nextState(int, JobEvent)}.
+	 *
+	 * @param jobStatus the JobStatus attribute
+	 * @param holdReasonCode the HoldReasonCode attribute, or -1 if it isn't set
+	 * @return a DRMAA state
+	 */
+	public static int queueState(int jobStatus, int holdReasonCode) {
+		switch (jobStatus) {
+		case JOB_STATUS_IDLE:
+			return Session.QUEUED_ACTIVE;
+		case JOB_STATUS_RUNNING:
+		case JOB_STATUS_TRANSFERRING_OUTPUT:
+			return Session.RUNNING;
+		case JOB_STATUS_REMOVED:
+			return Session.FAILED;
+		case JOB_STATUS_COMPLETED:
+			return Session.DONE;
+		case JOB_STATUS_HELD:
+			return (holdReasonCode < 0 || holdReasonCode == HOLD_CODE_USER_REQUEST ||
+					holdReasonCode == HOLD_CODE_SUBMITTED_ON_HOLD) ? Session.USER_ON_HOLD : Session.SYSTEM_ON_HOLD;
+		case JOB_STATUS_SUSPENDED:
+			return Session.SYSTEM_SUSPENDED;
+		default:
+			return Session.UNDETERMINED;
+		}
+	}
+
+	/**
+	 * Record that a job has finished. The job is marked {@link Session#FAILED} if
+	 * it never ran or was killed by a signal and {@link Session#DONE} otherwise, and is queued for
+	 * {@link #pollFinished(long, TimeUnit)}. Jobs that aren't in the registry, or
+	 * that have already been recorded as finished, are ignored.
+	 *
+	 * @param jobId a job ID
+	 * @param info the job's {@link JobInfo}
+	 */
+	public void finish(String jobId, JobInfo info) {
+		long key = Util.getJobKey(jobId);
+		Cluster cluster = (key < 0) ? null : clusters.get(Util.getKeyCluster(key));
+		if (cluster == null) {
+			return;
+		}
+		int proc = Util.getKeyProc(key);
+		boolean failed = true;
+		try {
+			failed = info.wasAborted() || info.hasSignaled() || ! info.hasExited();
+		} catch (DrmaaException e) {
+			// Treat it as a failure.
+		}
+		if (cluster.finish(proc, (byte) (failed ? Session.FAILED : Session.DONE), info)) {
+			deliver(jobId, false);
+		}
+	}
+
+	/**
+	 * Get a future for the next job to finish. If a job has finished already and
+	 * hasn't been handed out or reaped, the future is complete right away. The
+	 * job isn't reaped.
+	 *
+	 * @return a {@link CompletableFuture} for the ID of a finished job
+	 */
+	public CompletableFuture<String> nextFinished() {
+		String jobId = nextQueued();
+		if (jobId != null) {
+			return CompletableFuture.completedFuture(jobId);
+		}
+		CompletableFuture<String> waiter = new CompletableFuture<String>();
+		waiters.add(waiter);
+		// A job may have been queued before the waiter was in place.
+		jobId = nextQueued();
+		if (jobId != null && ! waiter.complete(jobId)) {
+			// The waiter got another job in the meantime; put this one back.
+			finished.addFirst(jobId);
+		}
+		return waiter;
+	}
+
+	/**
+	 * Give back a job that was handed out by {@link #nextFinished()} or
+	 * {@link #pollFinished(long, TimeUnit)} but that the taker doesn't want
+	 * after all. It goes to the next waiter, or to the front of the queue.
+	 * Jobs that have been reaped in the meantime are dropped.
+	 *
+	 * @param jobId a job ID
+	 */
+	public void putBack(String jobId) {
+		if (contains(jobId)) {
+			deliver(jobId, true);
+		}
+	}
+
+	/**
+	 * Wait for a job to finish and return its ID. Jobs are returned in the order
+	 * they finished, each only once, and jobs that were reaped in the meantime
+	 * are skipped. The job isn't reaped.
+	 *
+	 * @param timeout how long to wait, 0 to return right away
+	 * @param unit the {@link TimeUnit} of the timeout
+	 * @return the ID of a finished job, or null if none finished in time
+	 * @throws InterruptedException
+	 */
+	public String pollFinished(long timeout, TimeUnit unit) throws InterruptedException {
+		long start = System.nanoTime();
+		long limit = unit.toNanos(timeout);
+		while (true) {
+			long remaining = limit - (System.nanoTime() - start);
+			String jobId = (remaining > 0) ? finished.poll(remaining, TimeUnit.NANOSECONDS) : finished.poll();
+			if (jobId == null || contains(jobId)) {
+				return jobId;
+			}
+		}
+	}
+
+	/**
+	 * The {@link JobInfo} of a job that has finished.
+	 *
+	 * @param jobId a job ID
+	 * @return a {@link JobInfo}, or null if the job hasn't finished or isn't in
+	 * the registry
+	 */
+	public JobInfo getJobInfo(String jobId) {
+		long key = Util.getJobKey(jobId);
+		Cluster cluster = (key < 0) ? null : clusters.get(Util.getKeyCluster(key));
+		return (cluster == null) ? null : cluster.infos.get(Util.getKeyProc(key));
+	}
+
+	/**
+	 * Remove a job from the registry, along with everything recorded about it.
+	 *
+	 * @param jobId a job ID
+	 * @return true if the job was in the registry
+	 */
+	public boolean reap(String jobId) {
+		long key = Util.getJobKey(jobId);
+		if (key < 0) {
+			return false;
+		}
+		int clusterId = Util.getKeyCluster(key);
+		Cluster cluster = clusters.get(clusterId);
+		if (cluster == null) {
+			return false;
+		}
+		synchronized (cluster) {
+			boolean reaped = cluster.reap(Util.getKeyProc(key));
+			if (reaped && cluster.isEmpty()) {
+				// Under the cluster's lock, so that jobs aren't added to it meanwhile.
+				cluster.retired = true;
+				clusters.remove(clusterId, cluster);
+			}
+			return reaped;
+		}
+	}
+
+	/**
+	 * The IDs of all the jobs in the registry, in order of submission. The IDs
+	 * are expanded lazily from ranges.
+	 *
+	 * @return a {@link List} of job IDs
+	 */
+	public List<String> getJobIds() {
+		List<JobIdRange> ranges = new ArrayList<JobIdRange>();
+		for (Cluster cluster : clusters.values()) {
+			cluster.addRanges(ranges);
+		}
+		return new JobIdRangeList(ranges);
+	}
+
+	/**
+	 * The IDs of the clusters that have jobs in the registry, in order of submission.
+	 *
+	 * @return a {@link List} of cluster IDs, as <code>String</code>s
+	 */
+	public List<String> getClusterIds() {
+		List<String> clusterIds = new ArrayList<String>(clusters.size());
+		for (Integer clusterId : clusters.keySet()) {
+			clusterIds.add(clusterId.toString());
+		}
+		return clusterIds;
+	}
+
+	/**
+	 * The IDs of the clusters that have jobs in the registry that aren't known
+	 * to have finished, in order of submission. These are the clusters that
+	 * may still be in the queue.
+	 *
+	 * @return a {@link List} of cluster IDs, as <code>String</code>s
+	 */
+	public List<String> getUnfinishedClusterIds() {
+		List<String> clusterIds = new ArrayList<String>();
+		for (Cluster cluster : clusters.values()) {
+			if (cluster.hasUnfinished()) {
+				clusterIds.add(String.valueOf(cluster.clusterId));
+			}
+		}
+		return clusterIds;
+	}
+
+	/**
+	 * Finish writing the session files and stop the background thread. Waiters
+	 * registered with {@link #nextFinished()} are released with an exception.
+	 * The registry stays usable, but nothing more is persisted.
+	 */
+	public void close() {
+		CompletableFuture<String> waiter;
+		while ((waiter = waiters.poll()) != null) {
+			waiter.completeExceptionally(new IllegalStateException("The session has been closed."));
+		}
+		if (writer == null) {
+			return;
+		}
+		writer.shutdown();
+		try {
+			writer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * Hand a finished job to the first waiter that still wants one, or queue
+	 * it if there isn't one, at the front if it is being put back.
+	 */
+	private void deliver(String jobId, boolean first) {
+		CompletableFuture<String> waiter;
+		while ((waiter = waiters.poll()) != null) {
+			if (waiter.complete(jobId)) {
+				return;
+			}
+		}
+		if (first) {
+			finished.addFirst(jobId);
+		} else {
+			finished.add(jobId);
+		}
+	}
+
+	/*
+	 * Take the next queued job that hasn't been reaped, without waiting.
+	 */
+	private String nextQueued() {
+		String jobId;
+		while ((jobId = finished.poll()) != null) {
+			if (contains(jobId)) {
+				return jobId;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Whether a job was held by its owner, with condor_hold or by being
+	 * submitted on hold, rather than by Condor. Older versions of Condor don't
+	 * log the reason code, so the reason itself has to do.
+	 */
+	private static boolean isUserHold(JobEvent event) {
+		if (! (event instanceof JobEvent.Held)) {
+			return true;
+		}
+		JobEvent.Held held = (JobEvent.Held) event;
+		if (held.getCode() >= 0) {
+			return held.getCode() == HOLD_CODE_USER_REQUEST || held.getCode() == HOLD_CODE_SUBMITTED_ON_HOLD;
+		}
+		return held.getReason() == null || held.getReason().indexOf("condor_hold") >= 0;
+	}
+
+	/*
+	 * isUserHold() for the hold event a scanner is on.
+	 */
+	private static boolean isUserHold(JobLogScanner scanner) {
+		long code = scanner.numberAfter(HOLD_CODE);
+		if (code >= 0) {
+			return code == HOLD_CODE_USER_REQUEST || code == HOLD_CODE_SUBMITTED_ON_HOLD;
+		}
+		return ! scanner.hasBody() || scanner.bodyContains(CONDOR_HOLD);
+	}
+
+	private byte getRawState(String jobId) {
+		long key = Util.getJobKey(jobId);
+		Cluster cluster = (key < 0) ? null : clusters.get(Util.getKeyCluster(key));
+		return (cluster == null) ? REAPED : cluster.getState(Util.getKeyProc(key));
+	}
+
+	/*
+	 * The jobs of a single cluster. The states are indexed by process number,
+	 * offset by the first process number of the cluster. The array has room
+	 * to grow, so that the jobs of a batch can be added one at a time. The
+	 * jobs share a template ID unless they were submitted with different
+	 * templates, in which case each job has its own.
+	 */
+	private static class Cluster {
+		private final int clusterId;
+		private final int templateId;
+		private int firstProc;
+		private byte[] states;
+		// How many entries of states are in use.
+		private int size;
+		private int[] templateIds = null;
+		private final Map<Integer, JobInfo> infos = new ConcurrentHashMap<Integer, JobInfo>();
+		private int live;
+		// Set once the cluster has been removed from the registry.
+		private volatile boolean retired = false;
+
+		Cluster(JobIdRange range, int templateId, int state) {
+			this.clusterId = range.getCluster();
+			this.firstProc = range.getFirstProc();
+			this.templateId = templateId;
+			this.states = new byte[range.size()];
+			Arrays.fill(states, (byte) state);
+			this.size = states.length;
+			this.live = states.length;
+		}
+
+		/*
+		 * Add the jobs of another registration of the cluster. Jobs that are
+		 * already there are left alone. Returns false if the cluster has been
+		 * removed from the registry.
+		 */
+		synchronized boolean add(JobIdRange range, int template, int state) {
+			if (retired) {
+				return false;
+			}
+			int first = Math.min(firstProc, range.getFirstProc());
+			int end = Math.max(firstProc + size, range.getLastProc() + 1);
+			if (first < firstProc || end - first > states.length) {
+				// Leave room for the rest of the batch when growing at the end.
+				int capacity = (first == firstProc) ? Math.max(end - first, states.length * 2) : end - first;
+				resize(first, capacity);
+			}
+			size = end - firstProc;
+			for (int proc = range.getFirstProc(); proc <= range.getLastProc(); proc++) {
+				int index = proc - firstProc;
+				if (states[index] != REAPED) {
+					continue;
+				}
+				states[index] = (byte) state;
+				live++;
+				if (templateIds == null && template != templateId) {
+					templateIds = new int[states.length];
+					Arrays.fill(templateIds, templateId);
+				}
+				if (templateIds != null) {
+					templateIds[index] = template;
+				}
+			}
+			return true;
+		}
+
+		/*
+		 * Move the jobs into arrays of the given capacity that start at the given
+		 * process number.
+		 */
+		private void resize(int first, int capacity) {
+			int shift = firstProc - first;
+			byte[] grown = new byte[capacity];
+			Arrays.fill(grown, REAPED);
+			System.arraycopy(states, 0, grown, shift, size);
+			states = grown;
+			if (templateIds != null) {
+				int[] grownIds = new int[capacity];
+				System.arraycopy(templateIds, 0, grownIds, shift, size);
+				templateIds = grownIds;
+			}
+			firstProc = first;
+			size += shift;
+		}
+
+		synchronized int getTemplateId(int proc) {
+			int index = proc - firstProc;
+			if (index < 0 || index >= size || states[index] == REAPED) {
+				return -1;
+			}
+			return (templateIds == null) ? templateId : templateIds[index];
+		}
+
+		synchronized byte getState(int proc) {
+			int index = proc - firstProc;
+			return (index < 0 || index >= size) ? REAPED : states[index];
+		}
+
+		synchronized boolean setState(int proc, byte state) {
+			int index = proc - firstProc;
+			if (index < 0 || index >= size || states[index] == REAPED) {
+				return false;
+			}
+			states[index] = state;
+			return true;
+		}
+
+		/*
+		 * Apply an event to the state of a job, unless the job has finished.
+		 */
+		synchronized void update(int proc, JobEventType type, boolean userHold) {
+			int index = proc - firstProc;
+			if (index < 0 || index >= size || states[index] == REAPED || infos.containsKey(proc)) {
+				return;
+			}
+			byte state = states[index];
+			if (state != Session.DONE && state != Session.FAILED) {
+				states[index] = (byte) nextState(state, type, userHold);
+			}
+		}
+
+		/*
+		 * Record the terminal state of a job. Returns false if the job isn't
+		 * there or had already finished.
+		 */
+		synchronized boolean finish(int proc, byte state, JobInfo info) {
+			int index = proc - firstProc;
+			if (index < 0 || index >= size || states[index] == REAPED || infos.containsKey(proc)) {
+				return false;
+			}
+			states[index] = state;
+			infos.put(proc, info);
+			return true;
+		}
+
+		synchronized boolean reap(int proc) {
+			int index = proc - firstProc;
+			if (index < 0 || index >= size || states[index] == REAPED) {
+				return false;
+			}
+			states[index] = REAPED;
+			infos.remove(proc);
+			live--;
+			return true;
+		}
+
+		synchronized boolean isEmpty() {
+			return live == 0;
+		}
+
+		/*
+		 * Whether any of the jobs that haven't been reaped hasn't finished either.
+		 */
+		synchronized boolean hasUnfinished() {
+			return live > infos.size();
+		}
+
+		/*
+		 * Add the ranges of jobs that haven't been reaped.
+		 */
+		synchronized void addRanges(List<JobIdRange> ranges) {
+			if (live == size) {
+				ranges.add(new JobIdRange(clusterId, firstProc, firstProc + size - 1));
+				return;
+			}
+			int start = -1;
+			for (int index = 0; index <= size; index++) {
+				boolean present = index < size && states[index] != REAPED;
+				if (present && start < 0) {
+					start = index;
+				} else if (! present && start >= 0) {
+					ranges.add(new JobIdRange(clusterId, firstProc + start, firstProc + index - 1));
+					start = -1;
+				}
+			}
+		}
+	}
+}
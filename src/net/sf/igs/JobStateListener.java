@@ -0,0 +1,38 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+/**
+ * Receives the events of a session's jobs as they are read from the job logs,
+ * so that applications can react to jobs being held, released, evicted and so
+ * on without calling {@link org.ggf.drmaa.Session#wait(String, long)}.
+ *
+ * <p>Listeners are called on the threads that read the logs, so they should
+ * return quickly. Events of one job are delivered in the order they were
+ * logged; events of different jobs may be delivered concurrently.</p>
+ *
+ * @see SessionImpl#addJobStateListener(JobStateListener)
+ */
+public interface JobStateListener {
+
+	/**
+	 * Called for each event in the log of a job.
+	 *
+	 * @param event the {@link JobEvent}
+	 */
+	void jobStateChanged(JobEvent event);
+}
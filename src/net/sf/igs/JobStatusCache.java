@@ -0,0 +1,359 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ggf.drmaa.Session;
+
+/**
+ * Caches the job states that the schedd reports, per cluster, for a while, so
+ * that many threads asking about the same jobs don't each run condor_q. The
+ * answer for a cluster is kept for the {@link #CONDOR_JDRMAA_STATUS_TTL}. A
+ * thread that needs clusters that aren't cached runs one query for all of them,
+ * and threads that need the same clusters while that query is running wait for
+ * its answer instead of running their own.
+ *
+ * <p>The cache is told about the events read from the job logs, either as a
+ * {@link ScannedEventListener} or as a {@link JobStateListener}. An event for a
+ * cluster throws its answer away, since the answer is out of date, and the end
+ * of a job is remembered, so that finished jobs aren't asked about again. The
+ * logs can be about other users' jobs too, so only the most recent
+ * {@link #CONDOR_JDRMAA_STATUS_FINISHED} ends are sure to be remembered; older
+ * ones are forgotten a generation at a time, and asked about if needed.
+ * Failed queries aren't cached.</p>
+ *
+ * @see SessionImpl#getJobProgramStatuses(Collection)
+ */
+public class JobStatusCache implements ScannedEventListener, JobStateListener {
+
+	/**
+	 * This is the name of the system property that sets how long, in
+	 * milliseconds, the states reported by the schedd are used for. With 0,
+	 * only threads that ask at the same time share a query.
+	 */
+	public static final String CONDOR_JDRMAA_STATUS_TTL = "condor.jdrmaa.status.ttl";
+
+	/**
+	 * This is the name of the system property that sets how many finished jobs
+	 * the cache remembers at least. It remembers up to twice as many.
+	 */
+	public static final String CONDOR_JDRMAA_STATUS_FINISHED = "condor.jdrmaa.status.finished";
+
+	private static final long DEFAULT_TTL = 5000;
+	private static final int DEFAULT_MAX_FINISHED = 100000;
+	private static final byte[] NORMAL_TERMINATION = JobLogScanner.bytes("(1) Normal termination");
+
+	/**
+	 * Asks the schedd about the jobs of a number of clusters.
+	 */
+	public interface Query {
+		/**
+		 * Get the states of the jobs of the clusters that are still in the queue.
+		 *
+		 * @param clusterIds a {@link Collection} of cluster IDs
+		 * @return a {@link JobStatusMap} of DRMAA states
+		 * @throws CondorExecException
+		 */
+		JobStatusMap query(Collection<String> clusterIds) throws CondorExecException;
+	}
+
+	private final long ttl;
+	private final Query query;
+	private final Map<Integer, Answer> answers = new ConcurrentHashMap<Integer, Answer>();
+	private final int maxFinished;
+	// The states of the jobs that are known to have finished, the most recent
+	// ones and the generation before them. Guarded by this.
+	private JobStatusMap finished = new JobStatusMap();
+	private JobStatusMap previousFinished = new JobStatusMap(0);
+	private final AtomicLong queryCount = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param ttl how long, in milliseconds, to use the answer to a query for
+	 * @param query the {@link Query} that asks the schedd
+	 */
+	public JobStatusCache(long ttl, Query query) {
+		this(ttl, DEFAULT_MAX_FINISHED, query);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param ttl how long, in milliseconds, to use the answer to a query for
+	 * @param maxFinished how many finished jobs to remember at least
+	 * @param query the {@link Query} that asks the schedd
+	 */
+	public JobStatusCache(long ttl, int maxFinished, Query query) {
+		if (ttl < 0) {
+			throw new IllegalArgumentException("The time to live may not be negative.");
+		}
+		if (maxFinished <= 0) {
+			throw new IllegalArgumentException("The number of finished jobs to remember must be positive.");
+		}
+		this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+		this.maxFinished = maxFinished;
+		this.query = query;
+	}
+
+	/**
+	 * Create a cache that runs condor_q, with the time to live from the system
+	 * properties. Clusters that have no jobs left in the queue are looked up in
+	 * the history with condor_history.
+	 *
+	 * @return a {@link JobStatusCache}
+	 */
+	public static JobStatusCache fromSystemProperties() {
+		long ttl = Long.getLong(CONDOR_JDRMAA_STATUS_TTL, DEFAULT_TTL);
+		int maxFinished = Integer.getInteger(CONDOR_JDRMAA_STATUS_FINISHED, DEFAULT_MAX_FINISHED);
+		return new JobStatusCache(ttl, maxFinished, new Query() {
+			public JobStatusMap query(Collection<String> clusterIds) throws CondorExecException {
+				JobStatusMap statuses = CondorExec.queryJobStatus(clusterIds);
+				ClusterSet queued = new ClusterSet();
+				for (long key : statuses.getKeys()) {
+					queued.add(Util.getKeyCluster(key));
+				}
+				List<String> departed = new ArrayList<String>();
+				for (String clusterId : clusterIds) {
+					if (! queued.contains(Integer.parseInt(clusterId))) {
+						departed.add(clusterId);
+					}
+				}
+				if (! departed.isEmpty()) {
+					try {
+						CondorExec.queryJobHistory(departed, statuses);
+					} catch (CondorExecException cee) {
+						// The history may be turned off. What the queue said still stands.
+						System.err.println(JobStatusCache.class.getName() +
+								" warning: Unable to look up the job history: " + cee.getMessage());
+					}
+				}
+				return statuses;
+			}
+		});
+	}
+
+	/**
+	 * Get the states of a number of jobs. Jobs that have left the queue, and
+	 * that aren't known to have finished, aren't in the result.
+	 *
+	 * @param jobIds a {@link Collection} of job IDs
+	 * @return a {@link JobStatusMap} of DRMAA states
+	 * @throws CondorExecException if the schedd couldn't be asked
+	 */
+	public JobStatusMap getStatuses(Collection<String> jobIds) throws CondorExecException {
+		JobStatusMap statuses = new JobStatusMap(jobIds.size());
+		Map<Integer, Answer> needed = new HashMap<Integer, Answer>();
+		List<String> clusterIds = new ArrayList<String>();
+		Answer ours = null;
+		for (String jobId : jobIds) {
+			long key = Util.getJobKey(jobId);
+			if (key < 0) {
+				continue;
+			}
+			int state = getFinishedState(key);
+			if (state != JobStatusMap.ABSENT) {
+				statuses.put(key, state);
+				continue;
+			}
+			int cluster = Util.getKeyCluster(key);
+			if (needed.containsKey(cluster)) {
+				continue;
+			}
+			Answer answer = answers.get(cluster);
+			while (answer == null || ! answer.isUsable(System.nanoTime())) {
+				// Nobody has asked lately, so ask along with the other missing clusters.
+				if (ours == null) {
+					ours = new Answer();
+				}
+				boolean installed = (answer == null) ?
+						answers.putIfAbsent(cluster, ours) == null : answers.replace(cluster, answer, ours);
+				if (installed) {
+					answer = ours;
+					clusterIds.add(String.valueOf(cluster));
+					break;
+				}
+				answer = answers.get(cluster);
+			}
+			needed.put(cluster, answer);
+		}
+
+		if (ours != null) {
+			ask(ours, clusterIds);
+		}
+		for (String jobId : jobIds) {
+			long key = Util.getJobKey(jobId);
+			Answer answer = (key < 0) ? null : needed.get(Util.getKeyCluster(key));
+			if (answer != null) {
+				int state = answer.get().get(key);
+				if (state != JobStatusMap.ABSENT) {
+					statuses.put(key, state);
+				}
+			}
+		}
+		return statuses;
+	}
+
+	/**
+	 * Get the state of a job.
+	 *
+	 * @param jobId a job ID
+	 * @return a DRMAA state, or {@link JobStatusMap#ABSENT} if the job has left
+	 * the queue and isn't known to have finished
+	 * @throws CondorExecException if the schedd couldn't be asked
+	 */
+	public int getStatus(String jobId) throws CondorExecException {
+		List<String> jobIds = new ArrayList<String>(1);
+		jobIds.add(jobId);
+		return getStatuses(jobIds).get(jobId);
+	}
+
+	/**
+	 * Throw away what the schedd said about the jobs of a cluster.
+	 *
+	 * @param cluster the cluster ID
+	 */
+	public void invalidate(int cluster) {
+		// Most events are for clusters that nobody has asked the schedd about.
+		if (! answers.isEmpty()) {
+			answers.remove(cluster);
+		}
+	}
+
+	/**
+	 * The number of queries that have been run.
+	 *
+	 * @return a <code>long</code>
+	 */
+	public long getQueryCount() {
+		return queryCount.get();
+	}
+
+	/**
+	 * Invalidate the cluster of the job the event is about, and remember how
+	 * the job ended if it has.
+	 *
+	 * @param event the {@link JobEvent}
+	 */
+	public void jobStateChanged(JobEvent event) {
+		boolean normal = (event instanceof JobEvent.Terminated) && ((JobEvent.Terminated) event).isNormal();
+		eventRead(event.getType(), event.getCluster(), event.getProc(), normal);
+	}
+
+	/**
+	 * The same as {@link #jobStateChanged(JobEvent)}, for the event a scanner is on.
+	 *
+	 * @param scanner the {@link JobLogScanner} on the event
+	 */
+	public void eventScanned(JobLogScanner scanner) {
+		JobEventType type = JobEventType.forCode(scanner.getCode());
+		boolean normal = type == JobEventType.JOB_TERMINATED && scanner.bodyContains(NORMAL_TERMINATION);
+		eventRead(type, scanner.getCluster(), scanner.getProc(), normal);
+	}
+
+	private void eventRead(JobEventType type, int cluster, int proc, boolean normal) {
+		if (type.isTerminal()) {
+			finished(cluster, proc, normal ? Session.DONE : Session.FAILED);
+		}
+		invalidate(cluster);
+	}
+
+	/*
+	 * Remember how a job ended. Once the current generation is full, the one
+	 * before it is forgotten.
+	 */
+	private synchronized void finished(int cluster, int proc, int state) {
+		if (finished.size() >= maxFinished && finished.get(cluster, proc) == JobStatusMap.ABSENT) {
+			previousFinished = finished;
+			finished = new JobStatusMap();
+		}
+		finished.put(cluster, proc, state);
+	}
+
+	private synchronized int getFinishedState(long key) {
+		int state = finished.get(key);
+		return (state != JobStatusMap.ABSENT) ? state : previousFinished.get(key);
+	}
+
+	/*
+	 * Run a query for the answer this thread is responsible for, and hand the
+	 * result, or the failure, to every thread waiting for it.
+	 */
+	private void ask(Answer answer, List<String> clusterIds) throws CondorExecException {
+		queryCount.incrementAndGet();
+		try {
+			JobStatusMap result = query.query(clusterIds);
+			answer.expires = System.nanoTime() + ttl;
+			answer.result.complete(result);
+		} catch (CondorExecException cee) {
+			answer.result.completeExceptionally(cee);
+		} catch (RuntimeException re) {
+			answer.result.completeExceptionally(re);
+		} finally {
+			if (answer.result.isCompletedExceptionally()) {
+				for (String clusterId : clusterIds) {
+					answers.remove(Integer.valueOf(clusterId), answer);
+				}
+			}
+		}
+	}
+
+	/*
+	 * What the schedd said, or is about to say, about some clusters.
+	 */
+	private static class Answer {
+		private final CompletableFuture<JobStatusMap> result = new CompletableFuture<JobStatusMap>();
+		// Set before the result is completed.
+		private volatile long expires = 0;
+
+		/*
+		 * Whether the answer can be used by a thread that asks now: it is still
+		 * on its way, or arrived successfully and hasn't expired.
+		 */
+		boolean isUsable(long now) {
+			if (! result.isDone()) {
+				return true;
+			}
+			return ! result.isCompletedExceptionally() && now - expires < 0;
+		}
+
+		JobStatusMap get() throws CondorExecException {
+			try {
+				return result.get();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new CondorExecException("Interrupted", ie);
+			} catch (ExecutionException ee) {
+				Throwable cause = ee.getCause();
+				if (cause instanceof CondorExecException) {
+					throw (CondorExecException) cause;
+				}
+				throw new CondorExecException("Unable to query the job states.", cause);
+			}
+		}
+	}
+}
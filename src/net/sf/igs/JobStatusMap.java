@@ -0,0 +1,194 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.Arrays;
+
+/**
+ * The DRMAA states of a number of jobs, keyed by the packed job keys of
+ * {@link Util#getJobKey(String)}. The keys and states are kept in primitive
+ * arrays, an open-addressing table, so that looking up any number of jobs
+ * neither boxes nor builds job ID strings.
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @see SessionImpl#getJobProgramStatuses(java.util.Collection)
+ */
+public class JobStatusMap {
+
+	/**
+	 * What {@link #get(String)} returns for a job that isn't in the map.
+	 */
+	public static final int ABSENT = -1;
+
+	private static final long EMPTY = -1;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+	private byte[] states;
+	private int size = 0;
+
+	/**
+	 * Constructor.
+	 */
+	public JobStatusMap() {
+		this(INITIAL_CAPACITY / 2);
+	}
+
+	/**
+	 * Constructor for a map that will hold about the given number of jobs.
+	 *
+	 * @param expected the number of jobs
+	 */
+	public JobStatusMap(int expected) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < expected * 2) {
+			capacity *= 2;
+		}
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		states = new byte[capacity];
+	}
+
+	/**
+	 * Record the state of a job.
+	 *
+	 * @param cluster the cluster ID
+	 * @param proc the process number
+	 * @param state a DRMAA state, such as {@link org.ggf.drmaa.Session#RUNNING}
+	 */
+	public void put(int cluster, int proc, int state) {
+		put(Util.getJobKey(cluster, proc), state);
+	}
+
+	/**
+	 * Record the state of a job.
+	 *
+	 * @param key a job key, as made by {@link Util#getJobKey(String)}
+	 * @param state a DRMAA state, such as {@link org.ggf.drmaa.Session#RUNNING}
+	 */
+	public void put(long key, int state) {
+		if (key < 0) {
+			throw new IllegalArgumentException("Invalid job key: " + key);
+		}
+		int slot = slotOf(keys, key);
+		if (keys[slot] != key) {
+			keys[slot] = key;
+			size++;
+		}
+		states[slot] = (byte) state;
+		// Keep the table at most half full, so that probes stay short.
+		if (size * 2 > keys.length) {
+			grow();
+		}
+	}
+
+	/**
+	 * The state of a job.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 * @return a DRMAA state, or {@link #ABSENT} if the job isn't in the map
+	 */
+	public int get(String jobId) {
+		return get(Util.getJobKey(jobId));
+	}
+
+	/**
+	 * The state of a job.
+	 *
+	 * @param cluster the cluster ID
+	 * @param proc the process number
+	 * @return a DRMAA state, or {@link #ABSENT} if the job isn't in the map
+	 */
+	public int get(int cluster, int proc) {
+		return get(Util.getJobKey(cluster, proc));
+	}
+
+	/**
+	 * The state of a job.
+	 *
+	 * @param key a job key, as made by {@link Util#getJobKey(String)}
+	 * @return a DRMAA state, or {@link #ABSENT} if the job isn't in the map
+	 */
+	public int get(long key) {
+		if (key < 0) {
+			return ABSENT;
+		}
+		int slot = slotOf(keys, key);
+		return (keys[slot] == key) ? states[slot] : ABSENT;
+	}
+
+	/**
+	 * Whether the map has a state for a job.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 * @return a <code>boolean</code>
+	 */
+	public boolean contains(String jobId) {
+		return get(jobId) != ABSENT;
+	}
+
+	/**
+	 * The number of jobs in the map.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The keys of the jobs in the map, in no particular order.
+	 *
+	 * @return an array of job keys
+	 */
+	public long[] getKeys() {
+		long[] present = new long[size];
+		int count = 0;
+		for (long key : keys) {
+			if (key != EMPTY) {
+				present[count++] = key;
+			}
+		}
+		return present;
+	}
+
+	private static int slotOf(long[] keys, long key) {
+		int mask = keys.length - 1;
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		byte[] oldStates = states;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		states = new byte[keys.length];
+		for (int index = 0; index < oldKeys.length; index++) {
+			if (oldKeys[index] != EMPTY) {
+				int slot = slotOf(keys, oldKeys[index]);
+				keys[slot] = oldKeys[index];
+				states[slot] = oldStates[index];
+			}
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a job log incrementally, event by event. The tail remembers the file
+ * position just after the last complete event (the "..." separator line) and
+ * each {@link #read(Handler)} only reads the bytes that have been appended since
+ * then. An event that has only been partially written is left for the next
+ * read. If the file shrinks (it was truncated or replaced), the tail starts over
+ * from the beginning; callers that keep state from the events should check for
+ * that with {@link #isTruncated()} first.
+ *
+ * <p>A tail holds no read buffer or scanner between reads. Each thread reuses
+ * one of each for all the tails it reads, so that following many logs costs
+ * little more than their positions.</p>
+ *
+ * @see JobLogParser
+ * @see SharedJobLog
+ */
+class LogTail {
+
+	/**
+	 * Is handed each complete event that is read.
+	 */
+	interface Handler {
+		/**
+		 * Called with the scanner on a complete event.
+		 *
+		 * @param scanner the {@link JobLogScanner}
+		 */
+		void event(JobLogScanner scanner);
+	}
+
+	private static final int READ_BUFFER_SIZE = 8192;
+	// Buffers that had to grow for an unusually large event are only kept up to this size.
+	private static final int MAX_CACHED_BUFFER_SIZE = 65536;
+
+	// The buffer and scanner of each reading thread. They are taken out while a
+	// read is in progress, so a handler that reads another log gets its own.
+	private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>();
+	private static final ThreadLocal<JobLogScanner> SCANNERS = new ThreadLocal<JobLogScanner>();
+	// What the scanner is left on between reads, so it doesn't hold on to a buffer.
+	private static final ByteBuffer NO_BUFFER = ByteBuffer.allocate(0);
+
+	private final File file;
+	private long position = 0;
+	private long lastReadBytes = 0;
+	// The offset in the file of the event being handed to the handler.
+	private long eventOffset = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file the log {@link File}
+	 */
+	LogTail(File file) {
+		this.file = file;
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * The offset in the file just past the last complete event that has been read.
+	 *
+	 * @return a <code>long</code>
+	 */
+	long getPosition() {
+		return position;
+	}
+
+	/**
+	 * The number of bytes that were read by the most recent {@link #read(Handler)}.
+	 *
+	 * @return a <code>long</code>
+	 */
+	long getLastReadBytes() {
+		return lastReadBytes;
+	}
+
+	/**
+	 * Whether the file is now shorter than what has been read of it.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	boolean isTruncated() {
+		return file.length() < position;
+	}
+
+	/**
+	 * Whether nothing has been appended to the file since it was last read.
+	 * This costs no more than a stat.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	boolean isUnchanged() {
+		return file.length() == position;
+	}
+
+	/**
+	 * The offset in the file at which the event that is being handed to the
+	 * handler starts. Only meaningful during a call to {@link Handler#event(JobLogScanner)}.
+	 *
+	 * @return a <code>long</code>
+	 */
+	long getEventOffset() {
+		return eventOffset;
+	}
+
+	/**
+	 * Carry on reading from the given offset, which should be the start of an
+	 * event, rather than from where the last read stopped.
+	 *
+	 * @param offset the offset in the file
+	 */
+	void seek(long offset) {
+		reset();
+		position = offset;
+	}
+
+	/**
+	 * Go back to the beginning of the file.
+	 */
+	void reset() {
+		position = 0;
+		lastReadBytes = 0;
+	}
+
+	/**
+	 * Read whatever has been appended to the file and hand each complete event
+	 * to the handler.
+	 *
+	 * @param handler the {@link Handler}
+	 * @throws IOException
+	 */
+	void read(Handler handler) throws IOException {
+		FileChannel channel = new FileInputStream(file).getChannel();
+		ByteBuffer readBuffer = BUFFERS.get();
+		if (readBuffer == null) {
+			readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		} else {
+			BUFFERS.set(null);
+		}
+		JobLogScanner scanner = SCANNERS.get();
+		if (scanner == null) {
+			scanner = new JobLogScanner();
+		} else {
+			SCANNERS.set(null);
+		}
+		try {
+			long size = channel.size();
+			if (size < position) {
+				// The log is smaller than what we already consumed, so it isn't
+				// the same file anymore. Start over.
+				reset();
+			}
+
+			lastReadBytes = 0;
+			channel.position(position);
+			while (true) {
+				int read = channel.read(readBuffer);
+				if (read <= 0) {
+					break;
+				}
+				lastReadBytes += read;
+
+				readBuffer.flip();
+				position += consumeEvents(readBuffer, scanner, handler);
+				readBuffer.compact();
+
+				// If a single event doesn't fit in the buffer, make room for it.
+				if (! readBuffer.hasRemaining()) {
+					ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+					readBuffer.flip();
+					larger.put(readBuffer);
+					readBuffer = larger;
+				}
+			}
+		} finally {
+			// Whatever is left over is an incomplete event. It will be read
+			// again, in full, once the rest of it has been written.
+			readBuffer.clear();
+			if (readBuffer.capacity() <= MAX_CACHED_BUFFER_SIZE) {
+				BUFFERS.set(readBuffer);
+			}
+			scanner.reset(NO_BUFFER);
+			SCANNERS.set(scanner);
+			channel.close();
+		}
+	}
+
+	/*
+	 * Hands all the complete events in the buffer, that is, everything up to and
+	 * including the last "..." separator line, to the handler and returns the
+	 * number of bytes that were consumed. The buffer's position is left just past
+	 * the consumed bytes.
+	 */
+	private int consumeEvents(ByteBuffer readBuffer, JobLogScanner scanner, Handler handler) {
+		int start = readBuffer.position();
+		scanner.reset(readBuffer);
+		long bufferOffset = position;
+		while (true) {
+			eventOffset = bufferOffset + scanner.getConsumed();
+			if (! scanner.next()) {
+				break;
+			}
+			if (scanner.isValid()) {
+				handler.event(scanner);
+			}
+		}
+		int consumed = scanner.getConsumed();
+		readBuffer.position(start + consumed);
+		return consumed;
+	}
+}
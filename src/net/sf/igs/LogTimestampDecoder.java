@@ -0,0 +1,237 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Turns the times written in Condor job logs into milliseconds since the epoch.
+ * Both the "MM/dd HH:mm:ss" form of older Condor versions and the ISO 8601
+ * "yyyy-MM-dd HH:mm:ss" (or "yyyy-MM-ddTHH:mm:ss") form of newer ones are read,
+ * as local times.
+ *
+ * <p>The "MM/dd" form has no year. The first time decoded, normally that of the
+ * submission event, is taken to be in the last year in which that day has
+ * already come, and the year is moved on whenever a later event goes back to
+ * an earlier month, so a log that runs over New Year is read correctly. A time
+ * with a year resets the year that is assumed.</p>
+ *
+ * <p>The offset of the time zone is looked up once per day and kept, unless the
+ * day has a daylight saving transition, so decoding a time is a bit of
+ * arithmetic. A decoder is meant to be used for a single log, and isn't thread
+ * safe.</p>
+ */
+public class LogTimestampDecoder {
+
+	/**
+	 * Returned for a time that couldn't be read.
+	 */
+	public static final long NO_TIME = Long.MIN_VALUE;
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+	private final ZoneId zone;
+	private final ZoneRules rules;
+	private final long referenceMillis;
+
+	// The year assumed for "MM/dd" times, and the month of the last time decoded.
+	private int year = -1;
+	private int lastMonth = 0;
+
+	// The offset of the zone on the last day that was looked up, if it has no
+	// transition.
+	private long cachedDay = Long.MIN_VALUE;
+	private long cachedOffsetMillis = 0;
+
+	/**
+	 * Constructor for a decoder in the default time zone.
+	 */
+	public LogTimestampDecoder() {
+		this(ZoneId.systemDefault(), -1);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param zone the {@link ZoneId} that the log's times are in
+	 * @param referenceMillis the time that the first "MM/dd" time must not be
+	 * later than, or -1 for the time at which it is decoded
+	 */
+	public LogTimestampDecoder(ZoneId zone, long referenceMillis) {
+		this.zone = zone;
+		this.rules = zone.getRules();
+		this.referenceMillis = referenceMillis;
+	}
+
+	/**
+	 * Forget the year that has been assumed, to start on a new log.
+	 */
+	public void reset() {
+		year = -1;
+		lastMonth = 0;
+	}
+
+	/**
+	 * Decode a time with a year.
+	 *
+	 * @param year the year
+	 * @param month the month, from 1 to 12
+	 * @param day the day of the month
+	 * @param hour the hour
+	 * @param minute the minute
+	 * @param second the second
+	 * @return the milliseconds since the epoch, or {@link #NO_TIME} if the
+	 * fields aren't a valid time
+	 */
+	public long toMillis(int year, int month, int day, int hour, int minute, int second) {
+		if (year < 1 || year > 9999 || ! valid(month, day, hour, minute, second) || day > daysInMonth(year, month)) {
+			return NO_TIME;
+		}
+		this.year = year;
+		this.lastMonth = month;
+		return localToMillis(year, month, day, hour, minute, second);
+	}
+
+	/**
+	 * Decode a time without a year, as in "MM/dd HH:mm:ss". The year is worked
+	 * out from the times decoded before.
+	 *
+	 * @param month the month, from 1 to 12
+	 * @param day the day of the month
+	 * @param hour the hour
+	 * @param minute the minute
+	 * @param second the second
+	 * @return the milliseconds since the epoch, or {@link #NO_TIME} if the
+	 * fields aren't a valid time
+	 */
+	public long toMillis(int month, int day, int hour, int minute, int second) {
+		if (! valid(month, day, hour, minute, second)) {
+			return NO_TIME;
+		}
+		if (year < 0) {
+			year = inferYear(month, day, hour, minute, second);
+		} else if (month < lastMonth) {
+			// The log has gone past New Year.
+			year++;
+		}
+		lastMonth = month;
+		if (day > daysInMonth(year, month)) {
+			return NO_TIME;
+		}
+		return localToMillis(year, month, day, hour, minute, second);
+	}
+
+	/**
+	 * Decode a time written in either form.
+	 *
+	 * @param text a {@link CharSequence} that starts with the time
+	 * @return the milliseconds since the epoch, or {@link #NO_TIME} if the text
+	 * doesn't start with a time
+	 */
+	public long parse(CharSequence text) {
+		int length = text.length();
+		if (length >= 14 && text.charAt(2) == '/') {
+			return toMillis(digits(text, 0, 2), digits(text, 3, 2), digits(text, 6, 2),
+					digits(text, 9, 2), digits(text, 12, 2));
+		} else if (length >= 19 && text.charAt(4) == '-') {
+			return toMillis(digits(text, 0, 4), digits(text, 5, 2), digits(text, 8, 2),
+					digits(text, 11, 2), digits(text, 14, 2), digits(text, 17, 2));
+		}
+		return NO_TIME;
+	}
+
+	/*
+	 * The latest year in which the given time isn't after the reference time.
+	 */
+	private int inferYear(int month, int day, int hour, int minute, int second) {
+		long now = (referenceMillis < 0) ? System.currentTimeMillis() : referenceMillis;
+		int currentYear = Instant.ofEpochMilli(now).atZone(zone).getYear();
+		if (day > daysInMonth(currentYear, month)) {
+			// February 29th, in a year that doesn't have one.
+			return currentYear - 1;
+		}
+		long candidate = localToMillis(currentYear, month, day, hour, minute, second);
+		return (candidate > now) ? currentYear - 1 : currentYear;
+	}
+
+	private long localToMillis(int year, int month, int day, int hour, int minute, int second) {
+		long epochDay = epochDay(year, month, day);
+		long localMillis = epochDay * MILLIS_PER_DAY + ((hour * 60L + minute) * 60L + second) * 1000L;
+		if (epochDay == cachedDay) {
+			return localMillis - cachedOffsetMillis;
+		}
+		ZoneOffset startOfDay = rules.getOffset(LocalDateTime.of(year, month, day, 0, 0));
+		ZoneOffset endOfDay = rules.getOffset(LocalDateTime.of(year, month, day, 23, 59, 59));
+		if (startOfDay.equals(endOfDay)) {
+			cachedDay = epochDay;
+			cachedOffsetMillis = startOfDay.getTotalSeconds() * 1000L;
+			return localMillis - cachedOffsetMillis;
+		}
+		// A daylight saving day; look this time up on its own.
+		ZoneOffset offset = rules.getOffset(LocalDateTime.of(year, month, day, hour, minute, second));
+		return localMillis - offset.getTotalSeconds() * 1000L;
+	}
+
+	/*
+	 * The number of days from 1970-01-01 to the given date in the proleptic
+	 * Gregorian calendar.
+	 */
+	private static long epochDay(int year, int month, int day) {
+		long y = (month <= 2) ? year - 1 : year;
+		long era = Math.floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+			return leap ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	private static boolean valid(int month, int day, int hour, int minute, int second) {
+		return month >= 1 && month <= 12 && day >= 1 && day <= 31 && hour >= 0 && hour < 24
+			&& minute >= 0 && minute < 60 && second >= 0 && second < 60;
+	}
+
+	private static int digits(CharSequence text, int start, int length) {
+		int value = 0;
+		for (int index = start; index < start + length; index++) {
+			char c = text.charAt(index);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+}
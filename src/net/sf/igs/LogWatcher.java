@@ -0,0 +1,165 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Watches the directory that holds the job logs and tells a {@link JobMonitor}
+ * about a job as soon as its log is written to, so that job completion is
+ * noticed without waiting for the monitor's next poll. On Linux this is backed
+ * by inotify.
+ *
+ * <p>A change to the monitor's {@link SharedJobLog}, which is kept in the same
+ * directory, gets the shared log read.</p>
+ *
+ * <p>Some filesystems, NFS in particular, don't deliver change events for writes
+ * made by other hosts. The monitor's periodic polling remains in place as the
+ * fallback for those.</p>
+ *
+ * @see JobMonitor
+ */
+public class LogWatcher {
+
+	/**
+	 * This is the name of the system property that can be set to "false" to
+	 * turn off the watching of log files, leaving only polling.
+	 */
+	public static final String CONDOR_JDRMAA_WATCH = "condor.jdrmaa.watch";
+
+	private final File directory;
+	private final JobMonitor monitor;
+	private WatchService watchService = null;
+	private Thread thread = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory a {@link File} with the directory containing the job logs
+	 * @param monitor the {@link JobMonitor} to notify
+	 */
+	public LogWatcher(File directory, JobMonitor monitor) {
+		this.directory = directory;
+		this.monitor = monitor;
+	}
+
+	/**
+	 * Determines whether log watching has been enabled. It is, unless the
+	 * {@link #CONDOR_JDRMAA_WATCH} system property says otherwise.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public static boolean isEnabled() {
+		return ! "false".equalsIgnoreCase(System.getProperty(CONDOR_JDRMAA_WATCH));
+	}
+
+	/**
+	 * Start watching the log directory.
+	 *
+	 * @throws IOException if the filesystem doesn't support watching
+	 */
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			return;
+		}
+		Path path = directory.toPath();
+		watchService = FileSystems.getDefault().newWatchService();
+		try {
+			path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException ioe) {
+			watchService.close();
+			watchService = null;
+			throw ioe;
+		}
+
+		final WatchService service = watchService;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				watch(service);
+			}
+		}, "condor-jdrmaa-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop watching the log directory.
+	 */
+	public synchronized void shutdown() {
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException ioe) {
+				ioe.printStackTrace();
+			}
+			watchService = null;
+		}
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	/*
+	 * Take change events until the watch service is closed and hand the job
+	 * IDs of changed logs to the monitor.
+	 */
+	private void watch(WatchService service) {
+		while (true) {
+			WatchKey key;
+			try {
+				key = service.take();
+			} catch (InterruptedException ie) {
+				return;
+			} catch (ClosedWatchServiceException cwse) {
+				return;
+			}
+
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					// Events were lost, so we don't know which logs changed.
+					monitor.pollAll();
+					continue;
+				}
+				Path changed = (Path) event.context();
+				String name = changed.getFileName().toString();
+				if (monitor.isSharedLog(name)) {
+					monitor.sharedLogChanged();
+					continue;
+				}
+				String jobId = Util.getIdFromLogName(name);
+				if (jobId != null) {
+					monitor.logChanged(jobId);
+				}
+			}
+
+			if (! key.reset()) {
+				// The directory is gone or inaccessible.
+				return;
+			}
+		}
+	}
+}
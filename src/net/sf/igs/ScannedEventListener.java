@@ -0,0 +1,37 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+/**
+ * Is told about each event in a job log while the scanner is on it, before
+ * anything has been decoded from it. The session keeps its own state up to
+ * date this way, so that no strings are made of the events unless somebody
+ * has asked for {@link JobEvent}s.
+ *
+ * @see JobMonitor#addScannedEventListener(ScannedEventListener)
+ * @see JobStateListener
+ */
+public interface ScannedEventListener {
+
+	/**
+	 * Called for each event in the log of a job. The scanner is only on the
+	 * event for the duration of the call.
+	 *
+	 * @param scanner the {@link JobLogScanner} on the event
+	 */
+	void eventScanned(JobLogScanner scanner);
+}
@@ -16,22 +16,35 @@ License along with this library; if not, write to the Free Software
 Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 */
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.ggf.drmaa.AlreadyActiveSessionException;
 import org.ggf.drmaa.DrmaaException;
+import org.ggf.drmaa.ExitTimeoutException;
 import org.ggf.drmaa.HoldInconsistentStateException;
 import org.ggf.drmaa.InternalException;
 import org.ggf.drmaa.InvalidContactStringException;
@@ -52,7 +65,7 @@ import org.ggf.drmaa.Version;
  * @see net.sf.igs.JobTemplateImpl
  * @see "http://www.cs.wisc.edu/condor/"
  */
-public class SessionImpl implements Session {
+public class SessionImpl implements AsyncSession {
 	
     /**
      * This is the name of the system property that should be set if debugging
@@ -67,8 +80,24 @@ public class SessionImpl implements Session {
     private boolean activeSession = false;
     private File sessionDir = null;
     private int jobTemplateId = 1;
+    private JobRegistry registry = null;
+    private JobMonitor monitor = null;
+    private LogWatcher watcher = null;
+    private SubmitBatcher batcher = null;
+    private ExecutorService executor = null;
+    private JobEventPublisher publisher = null;
+    private JobStatusCache statusCache = null;
+    // Where the jobs write their logs: one per job, the session's shared log, or
+    // nowhere (null) if they are followed through the event log.
+    private String logTemplate = Util.LOG_TEMPLATE;
+    // The schedd's event log, if the jobs are followed through it.
+    private EventLog eventLog = null;
+    private final List<JobStateListener> listeners = new CopyOnWriteArrayList<JobStateListener>();
+    // Guards init() and exit(). A lock rather than a synchronized block, so that a
+    // virtual thread blocked on the filesystem in there doesn't pin its carrier.
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
     
-    // Sleep period is in seconds
+    // Sleep period is in seconds. This is how often the monitor polls job logs.
     private static final int SLEEP_PERIOD = 5;
     
     /**
@@ -99,6 +128,19 @@ public class SessionImpl implements Session {
      * @throws DrmaaException {@inheritDoc}
      */
     public void control(String jobId, int action) throws DrmaaException {
+    	await(controlAsync(jobId, action));
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param jobId {@inheritDoc}
+     * @param action {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws DrmaaException {@inheritDoc}
+     * @see #control(String, int)
+     */
+    public CompletableFuture<Void> controlAsync(String jobId, int action) throws DrmaaException {
     	// Check that we have an active session. You can't do this operation unless
     	// we are in an active session...
         if (! activeSession) {
@@ -111,66 +153,64 @@ public class SessionImpl implements Session {
     	}
     	
     	// A collection for all the job IDs that we need to control.
-    	Set<String> jobIDs = new HashSet<String>();
+    	Collection<String> jobIDs = null;
     	
-    	try {
-        	// Check if we are operating on all job IDs. If we are, then get all
-        	// the job IDs for this session and perform the control on all of them
-        	if (jobId.equals(Session.JOB_IDS_SESSION_ALL)) {
-        		// Get all the job IDs for this session and put them into the set.
-        		jobIDs.addAll(getAllSessionJobsIDs());
-        	} else {
-        		// Only 1 job ID to control...
-        		jobIDs.add(jobId);
-        	}
-    	} catch (IOException ioe) {
-    		throw new InternalException("Unable to scan session for job IDs: " + ioe.getMessage());
+    	// Check if we are operating on all job IDs. If we are, then get all
+    	// the job IDs for this session and perform the control on all of them
+    	if (jobId.equals(Session.JOB_IDS_SESSION_ALL)) {
+    		// Every cluster was created by a single submission from this session,
+    		// so the session owns all of its jobs. Control whole clusters by their
+    		// bare cluster IDs rather than job by job. Clusters whose jobs have all
+    		// finished have left the queue, and the Condor tools would fail on them.
+    		jobIDs = getRegistry().getUnfinishedClusterIds();
+    	} else {
+    		// Only 1 job ID to control...
+    		jobIDs = Collections.singleton(jobId);
     	}
 
+    	// Nothing to do if the session hasn't submitted anything.
+    	if (jobIDs.isEmpty()) {
+    		return CompletableFuture.completedFuture(null);
+    	}
     	
-    	try {
-			// Iterate through the IDs and control them as specified.
-			for (String idToControl : jobIDs) {
-				controlHelper(action, idToControl);
-			}
-		} catch (CondorExecException e) {
-			e.printStackTrace();
-			throw new InternalException("Unable to run condor binary: " + e.getMessage());
-		}
+		// Control all the IDs at once, as specified.
+		return controlHelper(action, jobIDs);
     }
 
 	/**
 	 * @param action
-	 * @param idToControl
-	 * @throws CondorExecException
+	 * @param idsToControl
+	 * @return a {@link CompletableFuture} that completes when the Condor tool has
+	 * finished, or exceptionally with an {@link InternalException} if it failed
 	 * @throws HoldInconsistentStateException
 	 * @throws ResumeInconsistentStateException
 	 */
-	private void controlHelper(int action, String idToControl)
-			throws CondorExecException, DrmaaException {
+	private CompletableFuture<Void> controlHelper(int action, Collection<String> idsToControl)
+			throws DrmaaException {
+		CompletableFuture<Void> run = null;
 		switch (action) {
 			case SessionImpl.TERMINATE:
-				// Kill the job. This is equivalent to invoking condor_rm
-				CondorExec.terminate(idToControl);
+				// Kill the jobs. This is equivalent to invoking condor_rm
+				run = CondorExec.terminateAsync(idsToControl);
 				break;
 			case SessionImpl.HOLD:
 			case SessionImpl.SUSPEND:
-				// Put the job on hold
+				// Put the jobs on hold
 				// TODO: Check if we can run the suspension.
 				boolean ableToHold = true;
 				if (ableToHold) {
-					CondorExec.suspend(idToControl);
+					run = CondorExec.suspendAsync(idsToControl);
 				} else {
 					throw new HoldInconsistentStateException();
 				}
 				break;
 			case SessionImpl.RELEASE:
 			case SessionImpl.RESUME:
-				// Release the job if it's in a hold status
+				// Release the jobs if they're in a hold status
 				// TODO: Check if we can run the resume command
 				boolean ableToResume = true;
 				if (ableToResume) {
-					CondorExec.release(idToControl);	
+					run = CondorExec.releaseAsync(idsToControl);
 				} else {
 					throw new ResumeInconsistentStateException();
 				}
@@ -179,6 +219,14 @@ public class SessionImpl implements Session {
 			default:
 				throw new IllegalArgumentException("Invalid control action.");
 		}
+		return run.exceptionally(new Function<Throwable, Void>() {
+			public Void apply(Throwable failure) {
+				Throwable cause = (failure instanceof CompletionException) ? failure.getCause() : failure;
+				cause.printStackTrace();
+				throw new CompletionException(
+						new InternalException("Unable to run condor binary: " + cause.getMessage()));
+			}
+		});
 	}
     
     /**
@@ -196,9 +244,36 @@ public class SessionImpl implements Session {
      * @throws DrmaaException {@inheritDoc}
      */
     public void exit() throws DrmaaException {
-    	synchronized (JOB_IDS_SESSION_ALL) {
+    	lifecycleLock.lock();
+		try {
 			try {
 				if (activeSession) {
+					if (batcher != null) {
+						batcher.shutdown();
+						batcher = null;
+					}
+					if (watcher != null) {
+						watcher.shutdown();
+						watcher = null;
+					}
+					if (monitor != null) {
+						monitor.shutdown();
+						monitor = null;
+					}
+					if (publisher != null) {
+						publisher.close();
+						publisher = null;
+					}
+					statusCache = null;
+					eventLog = null;
+					if (registry != null) {
+						registry.close();
+						registry = null;
+					}
+					if (executor != null) {
+						executor.shutdown();
+						executor = null;
+					}
 					if (sessionDir != null && sessionDir.exists()) {
 						Util.deleteDir(sessionDir);
 					}
@@ -210,9 +285,72 @@ public class SessionImpl implements Session {
 			} finally {
 				activeSession = false;
 			}
+		} finally {
+			lifecycleLock.unlock();
 		}
     }
 
+    /**
+     * Register a listener that is told about the events of the session's jobs,
+     * such as a job starting to execute, being held, released, evicted or
+     * terminating, as they are read from the job logs. Listeners stay
+     * registered across {@link #exit()} and {@link #init(String)}.
+     * 
+     * @param listener a {@link JobStateListener}
+     * @see #removeJobStateListener(JobStateListener)
+     */
+    public void addJobStateListener(JobStateListener listener) {
+    	if (listener == null) {
+    		throw new IllegalArgumentException("The listener may not be null.");
+    	}
+    	lifecycleLock.lock();
+    	try {
+    		listeners.add(listener);
+    		if (monitor != null) {
+    			monitor.addJobStateListener(listener);
+    		}
+    	} finally {
+    		lifecycleLock.unlock();
+    	}
+    }
+
+    /**
+     * Remove a listener that was registered with
+     * {@link #addJobStateListener(JobStateListener)}.
+     * 
+     * @param listener a {@link JobStateListener}
+     */
+    public void removeJobStateListener(JobStateListener listener) {
+    	lifecycleLock.lock();
+    	try {
+    		listeners.remove(listener);
+    		if (monitor != null) {
+    			monitor.removeJobStateListener(listener);
+    		}
+    	} finally {
+    		lifecycleLock.unlock();
+    	}
+    }
+
+    /**
+     * The events of the session's jobs as a reactive stream. Subscribers only
+     * get as many events as they request and each has a bounded buffer, so a
+     * slow subscriber holds up the reading of the job logs for a while and then
+     * starts missing events, rather than using up memory. The stream completes
+     * when the session is exited.
+     * 
+     * @return a {@link Flow.Publisher} of {@link JobEvent}s
+     * @throws NoActiveSessionException if the session isn't active
+     * @see JobEventPublisher
+     */
+    public Flow.Publisher<JobEvent> getJobEventPublisher() throws NoActiveSessionException {
+    	JobEventPublisher jobEventPublisher = publisher;
+    	if (jobEventPublisher == null) {
+    		throw new NoActiveSessionException();
+    	}
+    	return jobEventPublisher;
+    }
+
     /**
      * getContact() returns an opaque string containing contact information
      * related to the current DRMAA session to be used with the {@link #init(String) init}
@@ -254,10 +392,19 @@ public class SessionImpl implements Session {
     /**
      * Get the job program status.
      *
+     * <p>The status of one of the session's jobs comes from the session's
+     * registry, which the job monitor keeps up to date as it reads the events
+     * of the session's jobs, so asking costs a lookup and no calls to Condor. A
+     * job is reported as {@link Session#DONE} or {@link Session#FAILED} from
+     * the moment it has finished until it is reaped. The status of any other
+     * job is asked of the schedd, through a {@link JobStatusCache}. Jobs that
+     * are neither in the session nor known to the schedd are invalid.</p>
+     *
      * {@inheritDoc}
      * @return {@inheritDoc}
      * @param jobId {@inheritDoc}
      * @throws DrmaaException {@inheritDoc}
+     * @see JobRegistry#nextState(int, JobEvent)
      */
     public int getJobProgramStatus(String jobId) throws DrmaaException {
     	// Check that we have an active session. You can't do this operation unless
@@ -266,11 +413,81 @@ public class SessionImpl implements Session {
         	throw new NoActiveSessionException(); 
         }
         
-        // TODO: Implement
-    	if (true) {
-    		throw new RuntimeException("Not yet implemented.");
+        if (jobId == null || ! Util.validJobId(jobId)) {
+        	throw new InvalidJobException();
+        }
+        
+        JobRegistry jobRegistry = getRegistry();
+        if (jobRegistry.contains(jobId)) {
+        	return jobRegistry.getState(jobId);
+        }
+        int state;
+        try {
+        	state = getStatusCache().getStatus(jobId);
+        } catch (CondorExecException cee) {
+        	throw new InternalException("Unable to query the state of job " + jobId + ": " + cee.getMessage());
+        }
+        if (state == JobStatusMap.ABSENT) {
+        	throw new InvalidJobException("Job " + jobId + " is not part of this session or known to the schedd.");
+        }
+        return state;
+    }
+    
+    /**
+     * Get the statuses of a number of jobs at once. This is an extension of
+     * the DRMAA API for jobs whose logs are missing or haven't been written
+     * yet, such as jobs from other sessions.
+     * 
+     * <p>Jobs that the session knows have finished are {@link Session#DONE} or
+     * {@link Session#FAILED}. The states of the other jobs are asked of the
+     * schedd, with a single condor_q for all the clusters involved rather than
+     * one per job, and cached for a while by a {@link JobStatusCache}. Clusters
+     * that have left the queue altogether are looked up in the schedd's
+     * history. Jobs that are in neither are {@link Session#UNDETERMINED}.</p>
+     * 
+     * @param jobIds a {@link Collection} of job IDs
+     * @return a {@link JobStatusMap} with the DRMAA state of every job
+     * @throws DrmaaException if a job ID is invalid or condor_q fails
+     * @see #getJobProgramStatus(String)
+     */
+    public JobStatusMap getJobProgramStatuses(Collection<String> jobIds) throws DrmaaException {
+    	if (! activeSession) {
+    		throw new NoActiveSessionException();
+    	}
+    	if (jobIds == null) {
+    		throw new IllegalArgumentException("jobIds is null.");
     	}
-        return 0;
+    	
+    	JobRegistry jobRegistry = getRegistry();
+    	JobStatusMap statuses = new JobStatusMap(jobIds.size());
+    	List<String> unfinished = new ArrayList<String>();
+    	for (String jobId : jobIds) {
+    		long key = (jobId == null) ? -1 : Util.getJobKey(jobId);
+    		if (key < 0) {
+    			throw new InvalidJobException("Job " + jobId + " is invalid.");
+    		}
+    		int state = jobRegistry.getState(jobId);
+    		if (state == Session.DONE || state == Session.FAILED) {
+    			statuses.put(key, state);
+    		} else {
+    			unfinished.add(jobId);
+    		}
+    	}
+    	if (unfinished.isEmpty()) {
+    		return statuses;
+    	}
+    	
+    	JobStatusMap queue;
+    	try {
+    		queue = getStatusCache().getStatuses(unfinished);
+    	} catch (CondorExecException cee) {
+    		throw new InternalException("Unable to query the job states: " + cee.getMessage());
+    	}
+    	for (String jobId : unfinished) {
+    		int state = queue.get(jobId);
+    		statuses.put(Util.getJobKey(jobId), (state == JobStatusMap.ABSENT) ? Session.UNDETERMINED : state);
+    	}
+    	return statuses;
     }
     
     /**
@@ -298,7 +515,7 @@ public class SessionImpl implements Session {
      * TODO: Complete some documentation here.
      */
     private File getJobTemplateFile(int templateId) {
-        File jtFile = new File(sessionDir, jobTemplateId + "");
+        File jtFile = new File(sessionDir, templateId + "");
         return jtFile;
     }
     
@@ -375,7 +592,8 @@ public class SessionImpl implements Session {
         // Make the directory for the session
         String topDir = Util.TMP + File.separator + "condor-jdrmaa-" + System.getProperty("user.name");
 
-    	synchronized (contact) {
+    	lifecycleLock.lock();
+    	try {
         	if (activeSession) {
         		throw new AlreadyActiveSessionException();
         	}
@@ -390,7 +608,87 @@ public class SessionImpl implements Session {
             }
             sessionDir.mkdirs();
             sessionDir.deleteOnExit();
+            
+            // The session's jobs are kept in memory. The session directory is
+            // only written to, in the background.
+            registry = new JobRegistry(sessionDir);
+            
+            // Blocking DRM work, like parsing logs and submitting batches, runs on
+            // virtual threads if the Java runtime has them, unless told otherwise.
+            executor = ExecutorStrategy.fromSystemProperties().newExecutor("condor-jdrmaa-worker");
+            
+            // Every job writes a log of its own in the temporary directory, unless
+            // the session's jobs have been asked to share one.
+            // The shared log outlives the session, like the logs of single jobs,
+            // since jobs that are still queued will write to it.
+            // If asked to, the jobs are followed through the schedd's event log
+            // instead, and write no logs at all.
+            SharedJobLog sharedLog = null;
+            logTemplate = Util.LOG_TEMPLATE;
+            File eventLogFile = EventLog.isEnabled() ? EventLog.findEventLog() : null;
+            if (EventLog.isEnabled() && eventLogFile == null) {
+            	System.err.println(SessionImpl.class.getName() +
+            			" warning: No EVENT_LOG is configured, using job logs instead.");
+            }
+            if (eventLogFile != null) {
+            	// The offset is kept next to the session directory, which is
+            	// cleared out when the session starts.
+            	eventLog = new EventLog(eventLogFile, new File(topDir, contact + ".offset"));
+            	sharedLog = eventLog;
+            	logTemplate = null;
+            } else if (SharedJobLog.isEnabled()) {
+            	File sharedLogFile = new File(Util.TMP, Util.LOG_FILE_PREFIX + System.getProperty("user.name") +
+            			"_" + contact + Util.LOG_FILE_SUFFIX);
+            	sharedLogFile.delete();
+            	sharedLog = new SharedJobLog(sharedLogFile);
+            	logTemplate = sharedLogFile.getAbsolutePath();
+            }
+            
+            // A single monitor polls the logs of all the jobs being waited on,
+            // and the events it reads drive the states of the jobs in the registry.
+            // The session's own state is kept from the events as they are
+            // scanned, and is brought up to date before anybody else hears
+            // about an event. Events are only decoded for the user's listeners
+            // and subscribers.
+            monitor = new JobMonitor(SLEEP_PERIOD * 1000, executor, sharedLog);
+            monitor.addScannedEventListener(registry);
+            // What the schedd says about jobs is cached until their logs say otherwise.
+            statusCache = JobStatusCache.fromSystemProperties();
+            monitor.addScannedEventListener(statusCache);
+            for (JobStateListener listener : listeners) {
+            	monitor.addJobStateListener(listener);
+            }
+            publisher = JobEventPublisher.fromSystemProperties(executor);
+            monitor.addJobStateListener(publisher);
+            monitor.start();
+            
+            // Get told about log changes as they happen, if the filesystem allows it.
+            // Otherwise, we rely on the monitor's polling.
+            if (LogWatcher.isEnabled()) {
+            	File logDir = (eventLogFile != null) ? eventLogFile.getAbsoluteFile().getParentFile() : new File(Util.TMP);
+            	watcher = new LogWatcher(logDir, monitor);
+            	try {
+            		watcher.start();
+            	} catch (IOException ioe) {
+            		System.err.println(SessionImpl.class.getName() +
+            				" warning: Unable to watch job logs, falling back to polling: " + ioe.getMessage());
+            		watcher = null;
+            	}
+            }
+            
+            // Coalesce concurrent runJob() calls into single submissions if that
+            // has been asked for.
+            batcher = SubmitBatcher.fromSystemProperties(new SubmitBatcher.Submitter() {
+            	public List<JobIdRange> submitBatch(List<String> descriptions) throws Exception {
+            		return submit(createSubmitDescription(descriptions));
+            	}
+            }, executor);
+            if (batcher != null) {
+            	batcher.start();
+            }
             activeSession = true;
+		} finally {
+			lifecycleLock.unlock();
 		}
     }
 
@@ -401,7 +699,8 @@ public class SessionImpl implements Session {
      * <i>jt</i>.
      *
      * <p>On success a String array containing job identifiers for each array
-     * job task is returned.</p>
+     * job task is returned. The list is immutable and only holds the range of
+     * job IDs, so it stays small however many tasks the array has.</p>
      *
      * @return {@inheritDoc}
      * @param start {@inheritDoc}
@@ -411,6 +710,27 @@ public class SessionImpl implements Session {
      * @throws DrmaaException {@inheritDoc}
      */
     public List<String> runBulkJobs(JobTemplate jt, int start, int end, int increment) throws DrmaaException {
+    	try {
+    		return await(runBulkJobsAsync(jt, start, end, increment));
+    	} catch (InternalException ie) {
+    		// A failed submission means Condor didn't like the template.
+    		throw new InvalidJobTemplateException(ie.getMessage());
+    	}
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     * @param jt {@inheritDoc}
+     * @param start {@inheritDoc}
+     * @param end {@inheritDoc}
+     * @param increment {@inheritDoc}
+     * @throws DrmaaException {@inheritDoc}
+     * @see #runBulkJobs(JobTemplate, int, int, int)
+     */
+    public CompletableFuture<List<String>> runBulkJobsAsync(final JobTemplate jt, int start, int end, int increment)
+    		throws DrmaaException {
 		// See Section 7.3 of the Java DRMAA 1.0 spec
 		if (jt instanceof SimpleJobTemplate) {
 			throw new InvalidJobTemplateException();
@@ -447,34 +767,29 @@ public class SessionImpl implements Session {
 					"This version of Condor-JDRMAA does not support decreasing ranges.");
 		}
 
+		// condor_submit reports the exact range of job IDs it created. Condor numbers
+		// the jobs of a cluster sequentially, so we can't really support increments
+		// other than 1, since Condor doesn't seem to have an easy way to do it in the
+		// submit file either...
+		CompletableFuture<List<JobIdRange>> submission = null;
 		try {
 			int number = end - start + 1;
-			File submitFile = createSubmitFile(jt, number);
-			
-			// The submit() method returns the first job id regardless of whether the job
-			// is a singleton or an array job. Therefore, we should always get a job ID with
-			// a trailing ".0" on it. In the runBulkJobs context, we remove this and recalculate
-			// the array suffixes sequentially. For this reason, we can't really support
-			// increments other than 1, since Condor doesn't seem to have an easy way to do it
-			// in the submit file either...
-			String jobId = submit(submitFile);
-			jobId = jobId.replace(".0", "");
-			
-			ArrayList<String> jobs = new ArrayList<String>();
-			for (int jobIndex = 0; jobIndex < end; jobIndex++) {
-				String fullJobId = jobId + "." + jobIndex;
-				jobs.add(fullJobId);
-			}
-			
-			// Save all the retrieved job IDs in the session file
-			HashSet<String> jobSet = new HashSet<String>();
-			jobSet.addAll(jobs);
-			saveJobIDsInSessionFile(jt, jobSet);
-			
-			return jobs;
+			String description = createSubmitDescription(jt, number);
+			submission = submitAsync(description);
 		} catch (Exception e) {
 			throw new InvalidJobTemplateException(e.getMessage());
 		}
+		
+		return submission.thenApply(new Function<List<JobIdRange>, List<String>>() {
+			public List<String> apply(List<JobIdRange> ranges) {
+				// The IDs are only turned into strings if the caller asks for them.
+				List<String> jobs = new JobIdRangeList(ranges.get(0));
+				
+				// Record the jobs as belonging to the session
+				registerJobsAsync(jt, jobs);
+				return jobs;
+			}
+		}).exceptionally(SessionImpl.<List<String>>asDrmaaFailure());
     }
 
     /**
@@ -489,6 +804,18 @@ public class SessionImpl implements Session {
      * @return {@inheritDoc}
      */
     public String runJob(JobTemplate jt) throws DrmaaException {
+    	return await(runJobAsync(jt));
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param jt {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws DrmaaException {@inheritDoc}
+     * @see #runJob(JobTemplate)
+     */
+    public CompletableFuture<String> runJobAsync(final JobTemplate jt) throws DrmaaException {
 		// Section 7.3 of the Java DRMAA spec
 		if (jt instanceof SimpleJobTemplate) {
 			throw new InvalidJobTemplateException();
@@ -500,310 +827,551 @@ public class SessionImpl implements Session {
         	throw new NoActiveSessionException(); 
         }
         
-    	String jobId = null;
         if (jt == null) {
             throw new NullPointerException("JobTemplate is null");
         } else if (! (jt instanceof JobTemplateImpl)) {
             throw new InvalidJobTemplateException();
         }
         
+        // Hang on to the batcher in case the session is exited while we use it.
+        SubmitBatcher submitBatcher = batcher;
+        CompletableFuture<String> submission = null;
         try {
-        	File submitFile = createSubmitFile(jt, 1);
-			jobId = submit(submitFile);
-			
-			// Save the retrieved jobId in the session file
-			saveJobIDsInSessionFile(jt, Collections.singleton(jobId));
+        	if (submitBatcher != null && isBatchable(jt)) {
+        		// Go in with whichever other jobs are submitted at about the same time.
+        		submission = submitBatcher.submit(describeJob(jt));
+        	} else {
+        		String description = createSubmitDescription(jt, 1);
+        		submission = submitAsync(description).thenApply(new Function<List<JobIdRange>, String>() {
+        			public String apply(List<JobIdRange> ranges) {
+        				return ranges.get(0).getJobId(0);
+        			}
+        		});
+        	}
         } catch (Exception e) {
         	throw new InternalException(e.getMessage());
         }
-        return jobId;
+        
+        return submission.thenApply(new Function<String, String>() {
+        	public String apply(String jobId) {
+        		// Record the job as belonging to the session
+        		registerJobsAsync(jt, Collections.singleton(jobId));
+        		return jobId;
+        	}
+        }).exceptionally(SessionImpl.<String>asDrmaaFailure());
     }
 
 	/*
-	 * Save the job IDs in the session file for the job.
+	 * Record newly submitted jobs in the session's registry, which also saves
+	 * them in the session file for the job template in the background. The
+	 * jobs are tracked by the monitor from now on, so the registry learns when
+	 * each of them finishes.
 	 * 
 	 * @param template a {@link JobTemplate}
-	 * @param jobIDs a {@link Set}
-	 * @throws IOException
+	 * @param jobIDs a {@link Collection}
 	 * @throws DrmaaException 
 	 */
-	private void saveJobIDsInSessionFile(JobTemplate template, Set<String> jobIDs)
-			throws IOException, DrmaaException {
-		File templateFile = getJobTemplateFile(((JobTemplateImpl) template).getId());
-		BufferedWriter writer = new BufferedWriter(new FileWriter(templateFile));
-		Iterator<String> iter = jobIDs.iterator();
+	private void registerJobs(JobTemplate template, Collection<String> jobIDs)
+			throws DrmaaException {
+		final JobRegistry jobRegistry = getRegistry();
+		JobMonitor jobMonitor = monitor;
+		if (jobMonitor == null) {
+			throw new NoActiveSessionException();
+		}
+		int state = (template.getJobSubmissionState() == JobTemplate.HOLD_STATE) ?
+				Session.USER_ON_HOLD : Session.QUEUED_ACTIVE;
+		jobRegistry.register(((JobTemplateImpl) template).getId(), jobIDs, state);
 		
-		// Iterate over the IDs and write them to the file
-		while (iter.hasNext()) {
-			String jobId = iter.next();
-			writer.write(jobId);
-			writer.newLine();
+		for (final String jobId : jobIDs) {
+			// The logs are picked up by the next poll, once they exist, so this
+			// stays cheap for large submissions.
+			CompletableFuture<JobInfo> completion;
+			try {
+				completion = jobMonitor.track(jobId, false);
+			} catch (InvalidJobException ije) {
+				// The job is queued all the same. Waiting on it will try again.
+				System.err.println(SessionImpl.class.getName() +
+						" warning: Unable to monitor job " + jobId + ": " + ije.getMessage());
+				continue;
+			}
+			completion.thenAccept(new Consumer<JobInfo>() {
+				public void accept(JobInfo info) {
+					jobRegistry.finish(jobId, info);
+				}
+			});
+		}
+	}
+	/*
+	 * registerJobs() for use within a future, where checked exceptions can't
+	 * be thrown.
+	 */
+	private void registerJobsAsync(JobTemplate template, Collection<String> jobIDs) {
+		try {
+			registerJobs(template, jobIDs);
+		} catch (DrmaaException de) {
+			throw new CompletionException(de);
+		}
+	}
+
+	/*
+	 * A function for CompletableFuture.exceptionally() that passes DrmaaExceptions
+	 * through and turns any other failure into an InternalException.
+	 */
+	private static <T> Function<Throwable, T> asDrmaaFailure() {
+		return new Function<Throwable, T>() {
+			public T apply(Throwable failure) {
+				Throwable cause = failure;
+				if (failure instanceof CompletionException && failure.getCause() != null) {
+					cause = failure.getCause();
+				}
+				if (cause instanceof DrmaaException) {
+					throw new CompletionException(cause);
+				}
+				throw new CompletionException(new InternalException(cause.getMessage()));
+			}
+		};
+	}
+
+	/*
+	 * Wait for the result of an asynchronous operation, turning its failure into
+	 * the DrmaaException that the synchronous operation should throw.
+	 */
+	private static <T> T await(CompletableFuture<T> future) throws DrmaaException {
+		try {
+			return future.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InternalException("Interrupted.");
+		} catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof DrmaaException) {
+				throw (DrmaaException) cause;
+			}
+			throw new InternalException(cause.getMessage());
 		}
-		writer.close();
 	}
+
     
     /**
-     * Create a Condor submit file for the job template.
+     * Create the Condor submit description for the job template. The description
+     * is built in memory, ready to be streamed to condor_submit.
      * 
      * @param job a {@link JobTemplate}
      * @param number the number of times to execute the job
      * @see "condor_submit man page"
-     * @return a {@link File} for the submit file created
+     * @return a <code>String</code> with the contents of the submit file
      * @throws Exception
      */
-    private File createSubmitFile(JobTemplate job, int number) throws Exception {
+    private String createSubmitDescription(JobTemplate job, int number) throws Exception {
     	// Can't submit 0 or negative jobs, can we?
     	if (number <= 0) {
     		throw new IllegalArgumentException("Job count must be a positive integer.");
     	}
     	
-    	// The submit file will be a temporary file.
-    	File tempFile = null;
-    	
+    	StringWriter description = new StringWriter();
 		try {
-	    	tempFile = File.createTempFile(SUBMIT_FILE_PREFIX, null);
-			BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile));
+			BufferedWriter writer = new BufferedWriter(description);
 			
-			writer.write("# Condor Submit file");
-			writer.newLine();
-			writer.write("# Generated by Condor-JDRMAA");
-			writer.newLine();
-			writer.write("#");
-			writer.newLine();
-			writer.write("Log=" + Util.LOG_TEMPLATE);
-			writer.newLine();
-			writer.write("Universe=vanilla");
-			writer.newLine();
-			writer.write("Executable=" + job.getRemoteCommand());
-			writer.newLine();
+			writeSubmitHeader(writer);
+			writeJobDescription(job, writer, false);
 			
-			// Should jobs be submitted into a holding pattern
-			// (don't immediately start running them)?
-			if (job.getJobSubmissionState() == JobTemplate.HOLD_STATE) {
-				writer.write("Hold=true");
-				writer.newLine();
-			}
-			
-			// Here we handle the job arguments, if any have been supplied.
-			// We try to adhere to the "new" way of specifying the arguments
-			// as explained in the 'condor_submit' man page.
-			if (job.getArgs() != null && job.getArgs().size() > 0) {
-				StringBuffer sb = new StringBuffer();
-				sb.append("\"");
-				char tick = '\'';
-				Iterator<String> iter = job.getArgs().iterator();
-				while (iter.hasNext()) {
-					String arg = iter.next();
-					if (arg.contains("\"")) {
-						arg = arg.replace("\"", "\"\"");
-					}
-					// Replace ticks with double ticks
-					if (arg.contains("\'")) {
-						arg = arg.replace("\'", "\'\'");
-					}
-					if (arg.contains(" ")) {
-						sb.append(tick).append(arg).append(tick);
-					} else {
-						sb.append(arg);
-					}
-					// Only append a space if there are more...
-					if (iter.hasNext()) {
-						sb.append(" ");
-					}
-				}
-				// Finish off with the closing quote
-				sb.append("\"");
-				writer.write("Arguments=" + sb.toString());
-				writer.newLine();
-			}
-			
-			// If the working directory has been set, configure it.
-			if (job.getWorkingDirectory() != null) {
-				writer.write("InitialDir=" + job.getWorkingDirectory());
-				writer.newLine();
-			}
-			
-			// Handle any native specifications that have been set
-			if (job.getNativeSpecification() != null) {
-				writer.write(job.getNativeSpecification());
-				writer.newLine();
-			}
-			
-			// Handle the job category. This is handled the same way as the
-			// native specification.
-			if (job.getJobCategory() != null) {
-				writer.write(job.getJobCategory());
-				writer.newLine();
-			}
-			
-			// Send email notifications?
-			if (job.getBlockEmail()) {
-				writer.write("Notification=Never");
-			}
+			// Every Condor submit file needs a Queue directive to make the job go.
+			// Array jobs will have a Queue count greater than 1.
+			writer.write("Queue " + number);
+			writer.newLine();
 			
-			// If the caller has specified a start time, then we add special
-			// Condor settings into the submit file. Otherwise, don't do anything
-			// special...
-			if (job.getStartTime() != null) {
-				long time = job.getStartTime().getTimeInMillis() / 1000;
-				writer.write("PeriodicRelease=(CurrentTime > " + time + ")");
-				writer.newLine();
-				writer.write("Hold=True");
-				writer.newLine();
-			}
+			// Close the writer
+			writer.close();
+		} catch (IOException e) {
+			throw new Exception("Unable to create the Condor submit description.");
+		}
+		return description.toString();
+    }
+    
+    /**
+     * Create a Condor submit description that queues one job for each of the given
+     * job descriptions, as produced by {@link #describeJob(JobTemplate)}. All the
+     * jobs end up in the same cluster, in the order of the descriptions.
+     * 
+     * @param descriptions a {@link List} of job descriptions
+     * @return a <code>String</code> with the contents of the submit file
+     * @throws Exception
+     */
+    private String createSubmitDescription(List<String> descriptions) throws Exception {
+    	StringWriter description = new StringWriter();
+		try {
+			BufferedWriter writer = new BufferedWriter(description);
 			
-			// Handle the naming of the job.
-			if (job.getJobName() != null) {
-				// TODO: The C implementation has a "+" character in front of the
-				// directive. We add it here as well. Find out why (or if) this is necessary.
-				writer.write("+JobName=" + job.getJobName());
+			writeSubmitHeader(writer);
+			for (String jobDescription : descriptions) {
+				writer.write(jobDescription);
+				writer.write("Queue 1");
 				writer.newLine();
 			}
-			
-			// Handle the job input path. Care must be taken to replace DRMAA tokens
-			// with tokens that Condor understands.
-			if (job.getInputPath() != null) {
-				String input = job.getInputPath();
-				input = input.replace(JobTemplate.PARAMETRIC_INDEX, "$(Process)");
-				input = input.replace(JobTemplate.HOME_DIRECTORY,  "$ENV(HOME)");
-				if (input.startsWith(":")) {
-					input = input.substring(1);
+			writer.close();
+		} catch (IOException e) {
+			throw new Exception("Unable to create the Condor submit description.");
+		}
+		return description.toString();
+    }
+    
+    /*
+     * Writes the part of a submit file that is the same for every job.
+     */
+    private void writeSubmitHeader(BufferedWriter writer) throws IOException {
+		writer.write("# Condor Submit file");
+		writer.newLine();
+		writer.write("# Generated by Condor-JDRMAA");
+		writer.newLine();
+		writer.write("#");
+		writer.newLine();
+		if (logTemplate != null) {
+			writer.write("Log=" + logTemplate);
+			writer.newLine();
+		}
+		writer.write("Universe=vanilla");
+		writer.newLine();
+    }
+    
+    /**
+     * Returns the submit description of a single job, without the Queue directive,
+     * in a form that can follow the description of another job in the same submit
+     * file. Since condor_submit carries commands over from one Queue directive to
+     * the next, every command that another job might have set is reset if this job
+     * doesn't set it. That can't be done for the free-form native specification
+     * and job category, so jobs that use either are not
+     * {@link #isBatchable(JobTemplate) batchable}.
+     * 
+     * @param job a {@link JobTemplate}
+     * @return a <code>String</code>
+     * @throws Exception
+     */
+    private String describeJob(JobTemplate job) throws Exception {
+    	StringWriter description = new StringWriter();
+    	BufferedWriter writer = new BufferedWriter(description);
+    	writeJobDescription(job, writer, true);
+    	writer.close();
+    	return description.toString();
+    }
+    
+    /*
+     * Determines whether the job can share a submit file with other jobs.
+     */
+    private boolean isBatchable(JobTemplate job) throws DrmaaException {
+    	return job.getNativeSpecification() == null && job.getJobCategory() == null;
+    }
+    
+    /*
+     * Writes the commands describing the job to the submit file. If reset is true,
+     * commands that don't apply to this job are written anyway, with their default
+     * values, to undo whatever an earlier job in the same file may have set.
+     */
+    private void writeJobDescription(JobTemplate job, BufferedWriter writer, boolean reset)
+    		throws IOException, DrmaaException {
+		writer.write("Executable=" + job.getRemoteCommand());
+		writer.newLine();
+		
+		// Should jobs be submitted into a holding pattern
+		// (don't immediately start running them)?
+		if (job.getJobSubmissionState() == JobTemplate.HOLD_STATE) {
+			writer.write("Hold=true");
+			writer.newLine();
+		} else if (reset) {
+			writer.write("Hold=false");
+			writer.newLine();
+		}
+		
+		// Here we handle the job arguments, if any have been supplied.
+		// We try to adhere to the "new" way of specifying the arguments
+		// as explained in the 'condor_submit' man page.
+		if (job.getArgs() != null && job.getArgs().size() > 0) {
+			StringBuffer sb = new StringBuffer();
+			sb.append("\"");
+			char tick = '\'';
+			Iterator<String> iter = job.getArgs().iterator();
+			while (iter.hasNext()) {
+				String arg = iter.next();
+				if (arg.contains("\"")) {
+					arg = arg.replace("\"", "\"\"");
 				}
-				writer.write("Input=" + input);
-				writer.newLine();
-				// Check whether to transfer the input files
-				if (job.getTransferFiles() != null && job.getTransferFiles().getInputStream()) {
-					writer.write("transfer_input_files=i");
-					writer.newLine();
+				// Replace ticks with double ticks
+				if (arg.contains("\'")) {
+					arg = arg.replace("\'", "\'\'");
 				}
-			}
-			
-			// Handle the job output path. Care must be taken to replace DRMAA tokens
-			// with tokens that Condor understands.
-			if (job.getOutputPath() != null) {
-				String output = job.getOutputPath();
-				output = output.replace(JobTemplate.PARAMETRIC_INDEX, "$(Process)");
-				output = output.replace(JobTemplate.HOME_DIRECTORY, "$ENV(HOME)");
-				if (output.startsWith(":")) {
-					output = output.substring(1);
+				if (arg.contains(" ")) {
+					sb.append(tick).append(arg).append(tick);
+				} else {
+					sb.append(arg);
 				}
-				writer.write("Output=" + output);
-				writer.newLine();
-				
-				// Check if we need to join input and output files
-				if (job.getJoinFiles()) {
-					writer.write("# Joining Input and Output");
-					writer.newLine();
-					writer.write("Error=" + output);
-					writer.newLine();
+				// Only append a space if there are more...
+				if (iter.hasNext()) {
+					sb.append(" ");
 				}
 			}
-			
-			// Handle the error path if specified. Do token replacement if necessary.
-			if (job.getErrorPath() != null && ! job.getJoinFiles()) {
-				String error = job.getErrorPath();
-				error = error.replace(JobTemplate.PARAMETRIC_INDEX, "$(Process)");
-				error = error.replace(JobTemplate.HOME_DIRECTORY, "$ENV(HOME)");
-				if (error.startsWith(":")) {
-					error = error.substring(1);
-				}
-				writer.write("Error=" + error);
+			// Finish off with the closing quote
+			sb.append("\"");
+			writer.write("Arguments=" + sb.toString());
+			writer.newLine();
+		} else if (reset) {
+			writer.write("Arguments=\"\"");
+			writer.newLine();
+		}
+		
+		// If the working directory has been set, configure it.
+		if (job.getWorkingDirectory() != null) {
+			writer.write("InitialDir=" + job.getWorkingDirectory());
+			writer.newLine();
+		} else if (reset) {
+			writer.write("InitialDir=");
+			writer.newLine();
+		}
+		
+		// Handle any native specifications that have been set
+		if (job.getNativeSpecification() != null) {
+			writer.write(job.getNativeSpecification());
+			writer.newLine();
+		}
+		
+		// Handle the job category. This is handled the same way as the
+		// native specification.
+		if (job.getJobCategory() != null) {
+			writer.write(job.getJobCategory());
+			writer.newLine();
+		}
+		
+		// Send email notifications?
+		if (job.getBlockEmail()) {
+			writer.write("Notification=Never");
+			writer.newLine();
+		} else if (reset) {
+			writer.write("Notification=");
+			writer.newLine();
+		}
+		
+		// If the caller has specified a start time, then we add special
+		// Condor settings into the submit file. Otherwise, don't do anything
+		// special...
+		if (job.getStartTime() != null) {
+			long time = job.getStartTime().getTimeInMillis() / 1000;
+			writer.write("PeriodicRelease=(CurrentTime > " + time + ")");
+			writer.newLine();
+			writer.write("Hold=True");
+			writer.newLine();
+		} else if (reset) {
+			writer.write("PeriodicRelease=");
+			writer.newLine();
+		}
+		
+		// Handle the naming of the job.
+		if (job.getJobName() != null) {
+			// TODO: The C implementation has a "+" character in front of the
+			// directive. We add it here as well. Find out why (or if) this is necessary.
+			writer.write("+JobName=" + job.getJobName());
+			writer.newLine();
+		} else if (reset) {
+			// An empty value isn't a valid ClassAd expression.
+			writer.write("+JobName=UNDEFINED");
+			writer.newLine();
+		}
+		
+		// Handle the job input path. Care must be taken to replace DRMAA tokens
+		// with tokens that Condor understands.
+		if (job.getInputPath() != null) {
+			String input = job.getInputPath();
+			input = input.replace(JobTemplate.PARAMETRIC_INDEX, "$(Process)");
+			input = input.replace(JobTemplate.HOME_DIRECTORY,  "$ENV(HOME)");
+			if (input.startsWith(":")) {
+				input = input.substring(1);
+			}
+			writer.write("Input=" + input);
+			writer.newLine();
+			// Check whether to transfer the input files
+			if (job.getTransferFiles() != null && job.getTransferFiles().getInputStream()) {
+				writer.write("transfer_input_files=i");
+				writer.newLine();
+			} else if (reset) {
+				writer.write("transfer_input_files=");
 				writer.newLine();
 			}
+		} else if (reset) {
+			writer.write("Input=");
+			writer.newLine();
+			writer.write("transfer_input_files=");
+			writer.newLine();
+		}
+		
+		// Handle the job output path. Care must be taken to replace DRMAA tokens
+		// with tokens that Condor understands.
+		if (job.getOutputPath() != null) {
+			String output = job.getOutputPath();
+			output = output.replace(JobTemplate.PARAMETRIC_INDEX, "$(Process)");
+			output = output.replace(JobTemplate.HOME_DIRECTORY, "$ENV(HOME)");
+			if (output.startsWith(":")) {
+				output = output.substring(1);
+			}
+			writer.write("Output=" + output);
+			writer.newLine();
 			
-			if (job.getTransferFiles() != null && job.getTransferFiles().getOutputStream()) {
-				writer.write("should_transfer_files=IF_NEEDED");
+			// Check if we need to join input and output files
+			if (job.getJoinFiles()) {
+				writer.write("# Joining Input and Output");
 				writer.newLine();
-				writer.write("when_to_transfer_output=ON_EXIT");
+				writer.write("Error=" + output);
 				writer.newLine();
 			}
+		} else if (reset) {
+			writer.write("Output=");
+			writer.newLine();
+		}
+		
+		// Handle the error path if specified. Do token replacement if necessary.
+		if (job.getErrorPath() != null && ! job.getJoinFiles()) {
+			String error = job.getErrorPath();
+			error = error.replace(JobTemplate.PARAMETRIC_INDEX, "$(Process)");
+			error = error.replace(JobTemplate.HOME_DIRECTORY, "$ENV(HOME)");
+			if (error.startsWith(":")) {
+				error = error.substring(1);
+			}
+			writer.write("Error=" + error);
+			writer.newLine();
+		} else if (reset && ! (job.getOutputPath() != null && job.getJoinFiles())) {
+			writer.write("Error=");
+			writer.newLine();
+		}
+		
+		if (job.getTransferFiles() != null && job.getTransferFiles().getOutputStream()) {
+			writer.write("should_transfer_files=IF_NEEDED");
+			writer.newLine();
+			writer.write("when_to_transfer_output=ON_EXIT");
+			writer.newLine();
+		} else if (reset) {
+			writer.write("should_transfer_files=");
+			writer.newLine();
+			writer.write("when_to_transfer_output=");
+			writer.newLine();
+		}
+		
+		// Handle the case of the user/caller setting the environment for the job.
+		if (job.getJobEnvironment() != null && ! job.getJobEnvironment().isEmpty()) {
+			Map<String, String> environment = job.getJobEnvironment();
+			StringBuffer sb = new StringBuffer();
+			Iterator<String> iter = environment.keySet().iterator();
 			
-			// Handle the case of the user/caller setting the environment for the job.
-			if (job.getJobEnvironment() != null && ! job.getJobEnvironment().isEmpty()) {
-				Map<String, String> environment = job.getJobEnvironment();
-				StringBuffer sb = new StringBuffer();
-				Iterator<String> iter = environment.keySet().iterator();
+			// Condor has a peculiar way of handling environment variables in the submit
+			// file. Here we try to make it work by escaping quotes properly.
+			// TODO: This logic should perhaps be put into a special condorEnvEscape(String)
+			// method in Util.
+			// TODO: Needs testing
+			while (iter.hasNext()) {
+				String name = (String) iter.next();
+				String value = (String) environment.get(name);
 				
-				// Condor has a peculiar way of handling environment variables in the submit
-				// file. Here we try to make it work by escaping quotes properly.
-				// TODO: This logic should perhaps be put into a special condorEnvEscape(String)
-				// method in Util.
-				// TODO: Needs testing
-				while (iter.hasNext()) {
-					String name = (String) iter.next();
-					String value = (String) environment.get(name);
-					
-					// Replace quotes with double quotes.
-					value = value.replace("\"", "\"\"");
-					String pair = name + "=" + value;
-					sb.append(pair);
-					// Append a space, unless it's the last variable.
-					if (! iter.hasNext()) {
-						sb.append(" ");
-					}
+				// Replace quotes with double quotes.
+				value = value.replace("\"", "\"\"");
+				String pair = name + "=" + value;
+				sb.append(pair);
+				// Append a space, unless it's the last variable.
+				if (! iter.hasNext()) {
+					sb.append(" ");
 				}
-				// This is the Condor directive for setting the job environment.
-				writer.write("Environment=\"" + sb.toString() + "\"");
-				writer.newLine();
 			}
-			
-			// It appears that Condor can only handle 1 email address for notifications
-			// while the DRMAA returns a set of them. If we have emails specified, then
-			// just use the first one...
-			if (job.getEmail() != null && job.getEmail().size() > 0) {
-				if (job.getEmail().size() > 1) {
-					System.err.println(SessionImpl.class.getName() + 
-							" warning: Only 1 email notification address is supported.");
-				}
-				writer.write("Notify_user=" + (String) job.getEmail().iterator().next());
-				writer.newLine();
+			// This is the Condor directive for setting the job environment.
+			writer.write("Environment=\"" + sb.toString() + "\"");
+			writer.newLine();
+		} else if (reset) {
+			writer.write("Environment=");
+			writer.newLine();
+		}
+		
+		// It appears that Condor can only handle 1 email address for notifications
+		// while the DRMAA returns a set of them. If we have emails specified, then
+		// just use the first one...
+		if (job.getEmail() != null && job.getEmail().size() > 0) {
+			if (job.getEmail().size() > 1) {
+				System.err.println(SessionImpl.class.getName() + 
+						" warning: Only 1 email notification address is supported.");
 			}
-			
-			// Every Condor submit file needs a Queue directive to make the job go.
-			// Array jobs will have a Queue count greater than 1.
-			writer.write("Queue " + number);
+			writer.write("Notify_user=" + (String) job.getEmail().iterator().next());
+			writer.newLine();
+		} else if (reset) {
+			writer.write("Notify_user=");
 			writer.newLine();
-			
-			// Close the writer
-			writer.close();
-		} catch (IOException e) {
-			throw new Exception("Unable to create the Condor submit file.");
 		}
-		return tempFile;
     }
 
     /*
-     * Invokes 'condor_submit' to submit the job to the Condor scheduler. The submit
-     * file is deleted after submission is complete. To leave the submit file in place,
-     * for debugging perhaps, define the condor.jdrmaa.debug system property. The difference
-     * between this submit() method and the one in CondorExec, is that this one handles the
-     * deletion of the submit file if the condor.drmaa.debug system property is not set.
-     * The version in CondorExec is dumb and basically just runs the "condor_submit"
-     * binary...
+     * Invokes 'condor_submit' to submit the job to the Condor scheduler and returns
+     * the IDs of the jobs that were created, one range per cluster. The submit
+     * description is piped to condor_submit, so normally no submit file is written at
+     * all. To get the submit file written, and left in place, for debugging perhaps,
+     * define the condor.jdrmaa.debug system property. The difference between this
+     * submit() method and the ones in CondorExec, is that this one handles the
+     * condor.jdrmaa.debug system property. The versions in CondorExec are dumb and
+     * basically just run the "condor_submit" binary...
      */
-    private String submit(File submitFile) throws Exception {
-    	// Before we do anything, check that the submit file actually exists and is
-    	// readable. Otherwise, we can't submit anything can we?
-    	if (! (submitFile.exists() && submitFile.isFile() && submitFile.canRead())) {
-    		throw new IllegalArgumentException("Submit file does not exist or isn't readable.");
-    	}
-    	
-    	String jobID = null;
+    private List<JobIdRange> submit(String description) throws Exception {
+    	List<JobIdRange> ranges = null;
+    	EventLog log = eventLog;
+    	long checkpoint = (log == null) ? -1 : log.checkpoint();
     	
-    	try {
-        	jobID = CondorExec.submit(submitFile);
-		} catch (CondorExecException cee) {
-			throw cee;
+    	if (System.getProperty(CONDOR_JDRMAA_DEBUG) == null) {
+    		ranges = CondorExec.submitDescription(description);
+    	} else {
+    		// If we are debugging, the submit file should be left behind for
+    		// closer inspection/analysis.
+    		ranges = CondorExec.submitForRanges(writeSubmitFile(description));
+    	}
+
+    	followClusters(log, checkpoint, ranges);
+		return ranges;
+    }
+
+    /*
+     * The asynchronous version of submit(). The submit description is always piped
+     * to condor_submit, but a copy is still left behind when debugging. Failures
+     * complete the future with an InternalException.
+     */
+    private CompletableFuture<List<JobIdRange>> submitAsync(String description) throws IOException {
+    	if (System.getProperty(CONDOR_JDRMAA_DEBUG) != null) {
+    		writeSubmitFile(description);
+    	}
+    	final EventLog log = eventLog;
+    	final long checkpoint = (log == null) ? -1 : log.checkpoint();
+    	return CondorExec.submitDescriptionAsync(description).thenApply(new Function<List<JobIdRange>, List<JobIdRange>>() {
+    		public List<JobIdRange> apply(List<JobIdRange> ranges) {
+    			followClusters(log, checkpoint, ranges);
+    			return ranges;
+    		}
+    	}).exceptionally(SessionImpl.<List<JobIdRange>>asDrmaaFailure());
+    }
+
+    /*
+     * Follow the clusters that a submission created through the event log, if
+     * the jobs are followed through it, so that none of their events are missed
+     * however busy the log has been since the checkpoint taken before the
+     * submission.
+     */
+    private static void followClusters(EventLog log, long checkpoint, List<JobIdRange> ranges) {
+    	if (log == null) {
+    		return;
+    	}
+    	for (JobIdRange range : ranges) {
+    		log.addCluster(range.getCluster(), checkpoint);
+    	}
+    }
+
+    /*
+     * Write a submit description to a temporary submit file, which is left in place.
+     */
+    private File writeSubmitFile(String description) throws IOException {
+		File submitFile = File.createTempFile(SUBMIT_FILE_PREFIX, null);
+		Writer writer = new FileWriter(submitFile);
+		try {
+			writer.write(description);
 		} finally {
-			// Delete the submit file. That is, unless we are in debug mode.
-			// If we are debugging, the submit file should be left behind for
-			// closer inspection/analysis.
-			if (System.getProperty(CONDOR_JDRMAA_DEBUG) == null) {
-				submitFile.delete();
-			}
+			writer.close();
 		}
-
-		return jobID;
+		return submitFile;
     }
     
     /**
@@ -846,92 +1414,100 @@ public class SessionImpl implements Session {
     	// So now bad IDs detected. Just need to check whether we need
     	// to scan for all the IDs belonging to the session, or to use
     	// the IDs provided by the caller.
-    	Set<String> toWaitFor = null;
-    	try {
-			if (waitOnAllSessionJobs) {
-				// We've been told to wait for all the session jobs. Therefore
-				// our set of job IDs needs to contain all the job IDs belonging
-				// to the session. That means we need to scan the session directory
-				// for all the job IDs belonging to it. For this, we make use of a
-				// private method...
-				toWaitFor = getAllSessionJobsIDs();
-			} else {
-				// Okay, in this case, we only need to wait for the job IDs that have
-				// been explicitly passed to us. None of the IDs was equal to the
-				// special value indicating that we should wait for all... Therefore
-				// we create a new set, and all the IDs that we've been told about.
-				toWaitFor = new HashSet<String>();
-				toWaitFor.addAll(jobIds);
-			}
-		} catch (IOException e) {
-			throw new InternalException(e.getMessage());
+    	Collection<String> toWaitFor = null;
+		if (waitOnAllSessionJobs) {
+			// We've been told to wait for all the session jobs. Therefore
+			// our set of job IDs needs to contain all the job IDs belonging
+			// to the session, which the registry has in memory.
+			toWaitFor = getRegistry().getJobIds();
+		} else {
+			// Okay, in this case, we only need to wait for the job IDs that have
+			// been explicitly passed to us. None of the IDs was equal to the
+			// special value indicating that we should wait for all... Therefore
+			// we create a new set, and all the IDs that we've been told about.
+			toWaitFor = new HashSet<String>();
+			toWaitFor.addAll(jobIds);
 		}
     	
-    	// We now know what job IDs to wait for. Cycle through each and wait for it.
-		// To be able to do this, we should iterate through the set. The iterator()
-		// method to the rescue!
-    	iter = toWaitFor.iterator();
+    	// We now know what job IDs to wait for. Watch all of them at once, so the
+    	// total wait is as long as the slowest job rather than the sum of the
+    	// delays in noticing each one. There is a single deadline for the lot.
+    	long start = System.nanoTime();
+    	JobMonitor jobMonitor = monitor;
+    	if (jobMonitor == null) {
+    		throw new NoActiveSessionException();
+    	}
+    	JobRegistry jobRegistry = getRegistry();
     	
-    	// Let's determine when we started waiting and how long we are able to wait
-    	// by computing the deadline.
-    	long start = Util.getSecondsFromEpoch();
-    	long now = start;
-    	long deadline = start + timeout;
-    
-    	// Wait for each job ID. Mind the timeout! If we exceed our
-    	// deadline, break out of the loop...
-    	while (iter.hasNext()) {
-    		String jobId = (String) iter.next();
-    		
-    		// As we consume time, the timeouts get shorter and shorter...
-    		long individualTimeout = deadline - now;
-    		wait(jobId, individualTimeout);
-    		
-    		// TODO: Handle "disposal"
-    		// Okay, the job has completed. Do we remove/dispose of the
-    		// job from the session directory? Consult the "dispose" boolean...
-    		now = Util.getSecondsFromEpoch();
-    		if (now >= deadline) {
-    			// We've exceeded the limit of our overall timeout
-    			break;
+    	// Jobs that the registry already knows have finished don't need their logs read.
+    	List<String> pending = new ArrayList<String>();
+    	for (String jobId : toWaitFor) {
+    		if (jobRegistry.getJobInfo(jobId) == null) {
+    			pending.add(jobId);
+    		}
+    	}
+    	CompletableFuture<Void> completion = jobMonitor.trackAll(pending);
+    	try {
+    		if (timeout == Session.TIMEOUT_NO_WAIT) {
+    			if (! completion.isDone()) {
+    				throw new ExitTimeoutException("Not all jobs have finished.");
+    			}
+    			completion.get();
+    		} else if (timeout == Session.TIMEOUT_WAIT_FOREVER) {
+    			completion.get();
+    		} else {
+    			long remaining = TimeUnit.SECONDS.toNanos(timeout) - (System.nanoTime() - start);
+    			completion.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+    		}
+    	} catch (TimeoutException te) {
+    		throw new ExitTimeoutException("Timed out waiting for jobs to finish.");
+    	} catch (InterruptedException ie) {
+    		Thread.currentThread().interrupt();
+    		throw new InternalException("Interrupted while waiting for jobs.");
+    	} catch (ExecutionException ee) {
+    		if (ee.getCause() instanceof DrmaaException) {
+    			throw (DrmaaException) ee.getCause();
+    		}
+    		ee.getCause().printStackTrace();
+    		throw new InternalException(ee.getCause().getMessage());
+    	}
+    	
+    	// All the jobs have finished. If we've been asked to dispose of them,
+    	// their information is reaped, just as wait() would do.
+    	if (dispose) {
+    		for (String jobId : toWaitFor) {
+    			jobRegistry.reap(jobId);
     		}
     	}
     }
     
     /**
-     * This method scans the session directory for job files. For each found
-     * file, the file represents a job belonging to that session. The file is opened
-     * and the job ID is read from it.
+     * The cache of the job states reported by the schedd.
      * 
-     * @return a {@link Set} of String job IDs
-     * @throws IOException
+     * @return a {@link JobStatusCache}
+     * @throws NoActiveSessionException if the session has been exited
      */
-    private Set<String> getAllSessionJobsIDs() throws IOException {
-		File[] idFiles = sessionDir.listFiles();
-		Set<String> idSet = new HashSet<String>();
-		
-		// Iterate through the files
-		for (File file : idFiles) {
-			// Make sure we have a readable file.
-			if (! (file.isFile() && file.canRead())) {
-				continue;
-			}
-			
-			try {
-				BufferedReader reader = new BufferedReader(new FileReader(file));
-				String jobId = null;
-				while ((jobId = reader.readLine()) != null) {
-					jobId = jobId.trim();
-					//  Do one more check to make sure we have a good looking ID.
-					if (Util.validJobId(jobId)) {
-						idSet.add(jobId);
-					}
-				}
-			} catch (IOException ioe) {
-				throw ioe;
-			}
+    private JobStatusCache getStatusCache() throws NoActiveSessionException {
+    	JobStatusCache cache = statusCache;
+    	if (cache == null) {
+    		throw new NoActiveSessionException();
+    	}
+    	return cache;
+    }
+
+    /**
+     * The registry of the session's jobs.
+     * 
+     * @return a {@link JobRegistry}
+     * @throws NoActiveSessionException if the session has been exited
+     */
+    private JobRegistry getRegistry() throws NoActiveSessionException {
+    	// The registry goes away when the session is exited, so hang on to it.
+		JobRegistry jobRegistry = registry;
+		if (jobRegistry == null) {
+			throw new NoActiveSessionException();
 		}
-		return idSet;
+		return jobRegistry;
 	}
 
 	/**
@@ -942,6 +1518,12 @@ public class SessionImpl implements Session {
      * @throws DrmaaException {@inheritDoc}
      */
     public JobInfo wait(String jobId, long timeout) throws DrmaaException {
+    	// Check that we have an active session. You can't do this operation unless
+    	// we are in an active session...
+    	if (! activeSession) {
+    		throw new NoActiveSessionException();
+    	}
+    	
     	// Make sure we have a good timeout, but check that it's not one of the
     	// predefined values.
     	if (timeout <= 0 && timeout != Session.TIMEOUT_WAIT_FOREVER && timeout != Session.TIMEOUT_NO_WAIT) {
@@ -960,69 +1542,211 @@ public class SessionImpl implements Session {
         }
         
         if (jobId.equals(SessionImpl.JOB_IDS_SESSION_ANY)) {
-        	File[] files = sessionDir.listFiles();
-        	if (files.length > 0) {
-        		// TODO: Pick a file at random instead of just the first
-        		File toWaitFor = files[0];
-        		try {
-					BufferedReader buf = new BufferedReader(new FileReader(toWaitFor));
-					jobId = buf.readLine().trim();
-				} catch (Exception e) {
-					throw new InternalException("Unable to read file " + toWaitFor.getAbsolutePath());
-				}
-        	}
+        	return waitAny(timeout);
         }
         
-        JobInfo info = null;
-    	try {
-            JobLogParser logParser = new JobLogParser(jobId);
-			info = logParser.parse();
-	    	// Only go into a monitoring loop if we have a bonafide timeout
-	        if (timeout != Session.TIMEOUT_NO_WAIT) {
-	            info = monitor(logParser, timeout);
-	        }
-		} catch (Exception ioe) {
-			ioe.printStackTrace();
-			throw new InternalException(ioe.getMessage());
-		}
-    	
+        // Once a job has been waited for, its information is reaped. Only one
+        // waiter gets the job, whether it waited by ID or for any job.
+        JobRegistry jobRegistry = getRegistry();
+        boolean member = jobRegistry.contains(jobId);
+        JobInfo info = waitFor(jobId, timeout);
+        if (! jobRegistry.reap(jobId) && member) {
+        	throw new InvalidJobException("Job " + jobId + " has already been reaped.");
+        }
         return info;
     }
-
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * @param jobId {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws DrmaaException {@inheritDoc}
+     * @see #wait(String, long)
+     */
+    public CompletableFuture<JobInfo> waitAsync(final String jobId) throws DrmaaException {
+    	// Check that we have an active session. You can't do this operation unless
+    	// we are in an active session...
+    	if (! activeSession) {
+    		throw new NoActiveSessionException();
+    	}
+    	
+        // Check if we have a valid job ID
+        if (! (Util.validJobId(jobId) || jobId.equals(Session.JOB_IDS_SESSION_ANY))) {
+        	throw new InvalidJobException();
+        }
+        
+        final JobRegistry jobRegistry = getRegistry();
+        if (jobId.equals(Session.JOB_IDS_SESSION_ANY)) {
+        	if (jobRegistry.isEmpty()) {
+        		throw new InvalidJobException("The session has no jobs to wait for.");
+        	}
+        	return waitAnyAsync(jobRegistry);
+        }
+        
+        // The monitor goes away when the session is exited, so hang on to it.
+        JobMonitor jobMonitor = monitor;
+        if (jobMonitor == null) {
+        	throw new NoActiveSessionException();
+        }
+        
+        final boolean member = jobRegistry.contains(jobId);
+        JobInfo info = jobRegistry.getJobInfo(jobId);
+        CompletableFuture<JobInfo> completion = (info != null) ?
+        		CompletableFuture.completedFuture(info) : jobMonitor.track(jobId);
+        return completion.thenApply(new Function<JobInfo, JobInfo>() {
+        	public JobInfo apply(JobInfo finished) {
+        		// Once a job has been waited for, its information is reaped, and
+        		// only one waiter gets it.
+        		if (! jobRegistry.reap(jobId) && member) {
+        			throw new CompletionException(new InvalidJobException("Job " + jobId + " has already been reaped."));
+        		}
+        		return finished;
+        	}
+        }).exceptionally(SessionImpl.<JobInfo>asDrmaaFailure());
+    }
+    
     /*
-     * TODO: Complete documentation
+     * The asynchronous version of waitAny(). A job that turns out to have been
+     * reaped by somebody else is skipped in favour of the next one.
      */
-	private JobInfo monitor(JobLogParser logParser, long timeout) throws Exception {
-    	// Get the current number of seconds since the epoch. We'll refer
-    	// to this to make sure we stop waiting if we reach the timeout...
-    	long start = System.currentTimeMillis() / 1000;
+    private CompletableFuture<JobInfo> waitAnyAsync(JobRegistry jobRegistry) {
+    	CompletableFuture<JobInfo> result = new CompletableFuture<JobInfo>();
+    	waitAnyAsync(jobRegistry, result);
+    	return result;
+    }
+    
+    /*
+     * Complete the result with the next job to finish. If the caller has
+     * cancelled the result, or completed it on a timeout, by the time a job
+     * finishes, the job isn't reaped but put back for the next waiter.
+     */
+    private void waitAnyAsync(final JobRegistry jobRegistry, final CompletableFuture<JobInfo> result) {
+    	final CompletableFuture<String> next = jobRegistry.nextFinished();
+    	result.whenComplete(new BiConsumer<JobInfo, Throwable>() {
+    		public void accept(JobInfo info, Throwable failure) {
+    			// Don't take a job for a result that nobody wants anymore.
+    			next.cancel(false);
+    		}
+    	});
+    	next.whenComplete(new BiConsumer<String, Throwable>() {
+    		public void accept(String jobId, Throwable failure) {
+    			if (failure != null) {
+    				if (! next.isCancelled()) {
+    					result.completeExceptionally((failure instanceof DrmaaException) ?
+    							failure : new InternalException(failure.getMessage()));
+    				}
+    			} else if (result.isDone()) {
+    				jobRegistry.putBack(jobId);
+    			} else {
+    				JobInfo info = jobRegistry.getJobInfo(jobId);
+    				if (info != null && jobRegistry.reap(jobId)) {
+    					result.complete(info);
+    				} else {
+    					waitAnyAsync(jobRegistry, result);
+    				}
+    			}
+    		}
+    	});
+    }
+    
+    /**
+     * Wait for whichever job of the session finishes first, and reap it. Jobs
+     * that have already finished are returned in the order they finished, so
+     * each call returns the next job.
+     * 
+     * @param timeout the timeout in seconds, or one of the special values
+     * @return the {@link JobInfo} of the job
+     * @throws DrmaaException
+     */
+    private JobInfo waitAny(long timeout) throws DrmaaException {
+    	JobRegistry jobRegistry = getRegistry();
+    	long start = System.nanoTime();
+    	long limit = TimeUnit.SECONDS.toNanos(timeout);
+    	long period = TimeUnit.SECONDS.toNanos(SLEEP_PERIOD);
+    	try {
+    		while (true) {
+    			// Nothing will ever finish if the session has no jobs left.
+    			if (jobRegistry.isEmpty()) {
+    				throw new InvalidJobException("The session has no jobs to wait for.");
+    			}
+    			
+    			// Wait in slices so that we notice if the remaining jobs are reaped
+    			// by somebody else.
+    			long slice = period;
+    			if (timeout == Session.TIMEOUT_NO_WAIT) {
+    				slice = 0;
+    			} else if (timeout != Session.TIMEOUT_WAIT_FOREVER) {
+    				slice = Math.min(period, limit - (System.nanoTime() - start));
+    			}
+    			
+    			String jobId = jobRegistry.pollFinished(slice, TimeUnit.NANOSECONDS);
+    			if (jobId != null) {
+    				JobInfo info = jobRegistry.getJobInfo(jobId);
+    				// Another thread may have reaped the job first.
+    				if (info != null && jobRegistry.reap(jobId)) {
+    					return info;
+    				}
+    			} else if (timeout != Session.TIMEOUT_WAIT_FOREVER && System.nanoTime() - start >= limit) {
+    				throw new ExitTimeoutException("Timed out waiting for any job to finish.");
+    			}
+    		}
+    	} catch (InterruptedException ie) {
+    		Thread.currentThread().interrupt();
+    		throw new InternalException("Interrupted while waiting for any job.");
+    	}
+    }
+    
+    /**
+     * Wait for a job to finish without reaping it.
+     * 
+     * @param jobId the job ID
+     * @param timeout the timeout in seconds, or one of the special values
+     * @return the {@link JobInfo} of the job
+     * @throws DrmaaException
+     */
+    private JobInfo waitFor(String jobId, long timeout) throws DrmaaException {
+        // The monitor goes away when the session is exited, so hang on to it.
+        JobMonitor jobMonitor = monitor;
+        if (jobMonitor == null) {
+        	throw new NoActiveSessionException();
+        }
         
-		boolean done = false;
-		JobInfo info = null;
-		// Start monitoring
-		while (! done) {
-		    info = logParser.parse();
-		    if (info.hasExited()) {
-		    	done = true;
-		    }
-		    
-		    if (! done && timeout == Session.TIMEOUT_WAIT_FOREVER) {
-		        long now = System.currentTimeMillis() / 1000;
-		        if ((now - start) >= timeout) {
-		        	// We've reached the timeout
-		        	done = true;
-		        }
-		    }
-		    
-		    if (! done) {
-		    	try {
-		    		// SLEEP_PERIOD is in seconds
-					Thread.sleep(SLEEP_PERIOD * 1000);
-				} catch (InterruptedException e) {
-					break;
-				}
-		    }
-		}
-		return info;
-	}
+        // No need to go near the log if we already know how the job ended.
+        JobRegistry jobRegistry = getRegistry();
+        JobInfo info = jobRegistry.getJobInfo(jobId);
+        if (info != null) {
+        	return info;
+        }
+        
+        CompletableFuture<JobInfo> completion = jobMonitor.track(jobId);
+    	try {
+    		if (timeout == Session.TIMEOUT_NO_WAIT) {
+    			// The monitor parses the log as soon as the job is tracked, so
+    			// if the job is done, the future is already complete.
+    			if (! completion.isDone()) {
+    				throw new ExitTimeoutException("Job " + jobId + " has not finished.");
+    			}
+    			info = completion.get();
+    		} else if (timeout == Session.TIMEOUT_WAIT_FOREVER) {
+    			info = completion.get();
+    		} else {
+    			info = completion.get(timeout, TimeUnit.SECONDS);
+    		}
+    	} catch (TimeoutException te) {
+    		throw new ExitTimeoutException("Timed out waiting for job " + jobId + ".");
+    	} catch (InterruptedException ie) {
+    		Thread.currentThread().interrupt();
+    		throw new InternalException("Interrupted while waiting for job " + jobId + ".");
+    	} catch (ExecutionException ee) {
+    		if (ee.getCause() instanceof DrmaaException) {
+    			throw (DrmaaException) ee.getCause();
+    		}
+    		ee.getCause().printStackTrace();
+    		throw new InternalException(ee.getCause().getMessage());
+    	}
+    	
+    	jobRegistry.finish(jobId, info);
+        return info;
+    }
 }
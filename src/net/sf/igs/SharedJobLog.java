@@ -0,0 +1,255 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ggf.drmaa.JobInfo;
+
+/**
+ * A single job log that all the jobs of a session write to, instead of one log
+ * per job in the temporary directory. One reader tails the log and hands each
+ * event to the state of the job named in its "(cluster.proc.subproc)" header,
+ * so following any number of jobs takes one open file and one read per poll.
+ * The state of a job is kept until the job's end has been handed on and the
+ * job is {@link #release(String) released}.
+ *
+ * <p>Shared logs are off unless the {@link #CONDOR_JDRMAA_SHARED_LOG} system
+ * property is set to "true".</p>
+ *
+ * @see JobMonitor
+ */
+public class SharedJobLog {
+
+	/**
+	 * This is the name of the system property that can be set to "true" to
+	 * have all the jobs of a session write to one log.
+	 */
+	public static final String CONDOR_JDRMAA_SHARED_LOG = "condor.jdrmaa.log.shared";
+
+	private final LogTail tail;
+	private final Map<Long, JobLogParser> jobs = new ConcurrentHashMap<Long, JobLogParser>();
+	private final Set<Long> changed = new LinkedHashSet<Long>();
+	private volatile JobStateListener listener = null;
+	private volatile ScannedEventListener scannedListener = null;
+	private final LogTail.Handler handler = new LogTail.Handler() {
+		public void event(JobLogScanner scanner) {
+			if (accepts(scanner)) {
+				dispatch(scanner);
+			}
+		}
+	};
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file the log {@link File}, which doesn't have to exist yet
+	 */
+	public SharedJobLog(File file) {
+		this.tail = new LogTail(file);
+	}
+
+	/**
+	 * Determines whether shared logs have been turned on with the
+	 * {@link #CONDOR_JDRMAA_SHARED_LOG} system property.
+	 *
+	 * @return a <code>boolean</code>
+	 */
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(CONDOR_JDRMAA_SHARED_LOG);
+	}
+
+	/**
+	 * The log file.
+	 *
+	 * @return a {@link File}
+	 */
+	public File getFile() {
+		return tail.getFile();
+	}
+
+	/**
+	 * Set the listener that is told about every event as it is read.
+	 *
+	 * @param listener a {@link JobStateListener}, or null for none
+	 */
+	public synchronized void setJobStateListener(JobStateListener listener) {
+		if (this.listener == listener) {
+			return;
+		}
+		this.listener = listener;
+		for (JobLogParser parser : jobs.values()) {
+			parser.setJobStateListener(listener);
+		}
+	}
+
+	/**
+	 * Set the listener that is told about every event as it is read, before
+	 * anything is decoded from it.
+	 *
+	 * @param scannedListener a {@link ScannedEventListener}, or null for none
+	 */
+	public synchronized void setScannedEventListener(ScannedEventListener scannedListener) {
+		if (this.scannedListener == scannedListener) {
+			return;
+		}
+		this.scannedListener = scannedListener;
+		for (JobLogParser parser : jobs.values()) {
+			parser.setScannedEventListener(scannedListener);
+		}
+	}
+
+	/**
+	 * Read whatever has been appended to the log and return the IDs of the jobs
+	 * that had events in it. If nothing has been appended, this costs a stat.
+	 *
+	 * @return a {@link List} of job IDs
+	 * @throws IOException
+	 */
+	public synchronized List<String> read() throws IOException {
+		File file = tail.getFile();
+		if (file.exists() && ! tail.isUnchanged()) {
+			if (tail.isTruncated()) {
+				truncated();
+			}
+			tail.read(handler);
+		}
+		if (changed.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<String> jobIds = new ArrayList<String>(changed.size());
+		for (long key : changed) {
+			jobIds.add(Util.getKeyCluster(key) + "." + Util.getKeyProc(key));
+		}
+		changed.clear();
+		return jobIds;
+	}
+
+	/**
+	 * Whether the log has had events for the given job.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 * @return a <code>boolean</code>
+	 */
+	public boolean contains(String jobId) {
+		return jobs.containsKey(Util.getJobKey(jobId));
+	}
+
+	/**
+	 * What the events read so far say about a job.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 * @return a {@link JobInfo}, or null if the log has had no events for the job
+	 */
+	public JobInfo getJobInfo(String jobId) {
+		JobLogParser parser = jobs.get(Util.getJobKey(jobId));
+		return (parser == null) ? null : parser.getJobInfo();
+	}
+
+	/**
+	 * Forget what the log has said about a job, once the end of the job has
+	 * been handed on, so that the jobs of a long session don't pile up. Should
+	 * the log have more events for the job, its state starts over.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 */
+	public void release(String jobId) {
+		long key = Util.getJobKey(jobId);
+		if (key >= 0) {
+			jobs.remove(key);
+		}
+	}
+
+	/**
+	 * The number of jobs that the log has had events for and that haven't
+	 * been released.
+	 *
+	 * @return an <code>int</code>
+	 */
+	public int getJobCount() {
+		return jobs.size();
+	}
+
+	/**
+	 * Called before reading a log that has become shorter than what has been
+	 * read of it. The log is read again from the start, so the state of every
+	 * job is thrown away.
+	 */
+	void truncated() {
+		for (JobLogParser parser : jobs.values()) {
+			parser.reset();
+		}
+	}
+
+	/**
+	 * Whether an event should be handed to the state of its job. Every event
+	 * is, unless a subclass says otherwise.
+	 *
+	 * @param scanner the {@link JobLogScanner} on the event
+	 * @return a <code>boolean</code>
+	 */
+	boolean accepts(JobLogScanner scanner) {
+		return true;
+	}
+
+	/**
+	 * Called when a job is about to be followed through this log.
+	 *
+	 * @param jobId a <code>String</code> with the Condor job ID
+	 */
+	void follow(String jobId) {
+		// Every job in the log is followed already.
+	}
+
+	/**
+	 * Hand an event to the state of its job, and remember that the job had an
+	 * event in this read.
+	 *
+	 * @param scanner the {@link JobLogScanner} on the event
+	 */
+	void dispatch(JobLogScanner scanner) {
+		long key = Util.getJobKey(scanner.getCluster(), scanner.getProc());
+		getParser(key).process(scanner);
+		changed.add(key);
+	}
+
+	LogTail getTail() {
+		return tail;
+	}
+
+	/*
+	 * The state of a job, created when the job's first event is read.
+	 */
+	private JobLogParser getParser(long key) {
+		JobLogParser parser = jobs.get(key);
+		if (parser == null) {
+			parser = new JobLogParser(Util.getKeyCluster(key) + "." + Util.getKeyProc(key), tail.getFile());
+			parser.setJobStateListener(listener);
+			parser.setScannedEventListener(scannedListener);
+			jobs.put(key, parser);
+		}
+		return parser;
+	}
+}
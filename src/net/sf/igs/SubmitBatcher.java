@@ -0,0 +1,281 @@
+package net.sf.igs;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces job submissions that arrive close together into a single
+ * invocation of condor_submit. The first submission waits for up to the batch
+ * window for others to join it, or until the maximum batch size is reached,
+ * and the whole batch is then handed to a {@link Submitter} as one submit
+ * description with a Queue directive per job. Each caller gets a future for
+ * the ID of its own job.
+ *
+ * <p>Batches are submitted on the batching thread itself, or on an
+ * {@link Executor} if one is given, in which case the next batch can be formed
+ * while the previous one is still being submitted.</p>
+ *
+ * <p>Batching is off unless the {@link #CONDOR_JDRMAA_SUBMIT_WINDOW} system
+ * property is set to a positive number of milliseconds.</p>
+ */
+public class SubmitBatcher {
+
+	/**
+	 * This is the name of the system property that sets the batch window in
+	 * milliseconds. Submissions are only batched when it is positive.
+	 */
+	public static final String CONDOR_JDRMAA_SUBMIT_WINDOW = "condor.jdrmaa.submit.window";
+
+	/**
+	 * This is the name of the system property that sets the maximum number of
+	 * jobs in a single batch.
+	 */
+	public static final String CONDOR_JDRMAA_SUBMIT_BATCH = "condor.jdrmaa.submit.batch";
+
+	private static final int DEFAULT_BATCH_SIZE = 100;
+
+	/**
+	 * Submits a batch of jobs with a single invocation of condor_submit.
+	 */
+	public interface Submitter {
+		/**
+		 * Submit the jobs, in order, as a single submission.
+		 *
+		 * @param descriptions a {@link List} of job descriptions, one for each job
+		 * @return the IDs of the jobs that were created, in order, as a {@link List}
+		 * of {@link JobIdRange} objects
+		 * @throws Exception
+		 */
+		List<JobIdRange> submitBatch(List<String> descriptions) throws Exception;
+	}
+
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	private final Submitter submitter;
+	private final long window;
+	private final int maxBatchSize;
+	private final Executor executor;
+	private Thread thread = null;
+	// Set by shutdown(). Guarded by this, like the queueing of new submissions.
+	private boolean closed = false;
+
+	/**
+	 * Constructor for a batcher that submits on its own thread.
+	 *
+	 * @param submitter the {@link Submitter} that does the actual submission
+	 * @param window the batch window in milliseconds
+	 * @param maxBatchSize the maximum number of jobs in a batch
+	 */
+	public SubmitBatcher(Submitter submitter, long window, int maxBatchSize) {
+		this(submitter, window, maxBatchSize, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param submitter the {@link Submitter} that does the actual submission
+	 * @param window the batch window in milliseconds
+	 * @param maxBatchSize the maximum number of jobs in a batch
+	 * @param executor the {@link Executor} to submit batches on, or null to use
+	 * the batching thread
+	 */
+	public SubmitBatcher(Submitter submitter, long window, int maxBatchSize, Executor executor) {
+		if (window <= 0 || maxBatchSize <= 0) {
+			throw new IllegalArgumentException("The batch window and size must be positive.");
+		}
+		this.submitter = submitter;
+		this.window = window;
+		this.maxBatchSize = maxBatchSize;
+		this.executor = executor;
+	}
+
+	/**
+	 * Create a batcher configured from the system properties, or return null if
+	 * batching hasn't been turned on.
+	 *
+	 * @param submitter the {@link Submitter} that does the actual submission
+	 * @return a {@link SubmitBatcher}, or null
+	 */
+	public static SubmitBatcher fromSystemProperties(Submitter submitter) {
+		return fromSystemProperties(submitter, null);
+	}
+
+	/**
+	 * Create a batcher configured from the system properties that submits on the
+	 * given executor, or return null if batching hasn't been turned on.
+	 *
+	 * @param submitter the {@link Submitter} that does the actual submission
+	 * @param executor the {@link Executor} to submit batches on, or null
+	 * @return a {@link SubmitBatcher}, or null
+	 */
+	public static SubmitBatcher fromSystemProperties(Submitter submitter, Executor executor) {
+		long window = Long.getLong(CONDOR_JDRMAA_SUBMIT_WINDOW, 0L);
+		if (window <= 0) {
+			return null;
+		}
+		int maxBatchSize = Integer.getInteger(CONDOR_JDRMAA_SUBMIT_BATCH, DEFAULT_BATCH_SIZE);
+		return new SubmitBatcher(submitter, window, maxBatchSize, executor);
+	}
+
+	/**
+	 * Start the thread that forms and submits batches.
+	 */
+	public synchronized void start() {
+		if (thread != null || closed) {
+			return;
+		}
+		thread = new Thread(new Runnable() {
+			public void run() {
+				process();
+			}
+		}, "condor-jdrmaa-submitter");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop forming batches. Submissions that haven't been sent yet fail, and
+	 * so do any that are made from now on.
+	 */
+	public synchronized void shutdown() {
+		closed = true;
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+		List<Request> pending = new ArrayList<Request>();
+		queue.drainTo(pending);
+		fail(pending, new IllegalStateException("Job submission has been shut down."));
+	}
+
+	/**
+	 * Queue a job for submission with the next batch.
+	 *
+	 * @param description the job's submit description, without a Queue directive
+	 * @return a {@link CompletableFuture} for the job ID, which has failed
+	 * already if the batcher has been shut down
+	 */
+	public CompletableFuture<String> submit(String description) {
+		Request request = new Request(description);
+		synchronized (this) {
+			if (! closed) {
+				queue.add(request);
+				return request.jobId;
+			}
+		}
+		request.jobId.completeExceptionally(new IllegalStateException("Job submission has been shut down."));
+		return request.jobId;
+	}
+
+	/*
+	 * Form batches and submit them until interrupted.
+	 */
+	private void process() {
+		List<Request> batch = new ArrayList<Request>();
+		try {
+			while (true) {
+				batch.add(queue.take());
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(window);
+				while (batch.size() < maxBatchSize) {
+					long remaining = deadline - System.nanoTime();
+					Request request = (remaining > 0) ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if (request == null) {
+						break;
+					}
+					batch.add(request);
+				}
+				dispatch(batch);
+				batch = new ArrayList<Request>();
+			}
+		} catch (InterruptedException ie) {
+			fail(batch, new IllegalStateException("Job submission has been shut down."));
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * Submit a batch on the executor, or right here if there isn't one.
+	 */
+	private void dispatch(final List<Request> batch) {
+		if (executor == null) {
+			submitBatch(batch);
+			return;
+		}
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					submitBatch(batch);
+				}
+			});
+		} catch (RuntimeException re) {
+			fail(batch, re);
+		}
+	}
+
+	/*
+	 * Submit a batch and hand each caller the ID of its job. The jobs are created
+	 * in the order of their descriptions.
+	 */
+	private void submitBatch(List<Request> batch) {
+		List<String> descriptions = new ArrayList<String>(batch.size());
+		for (Request request : batch) {
+			descriptions.add(request.description);
+		}
+		try {
+			List<JobIdRange> ranges = submitter.submitBatch(descriptions);
+			int index = 0;
+			for (JobIdRange range : ranges) {
+				for (int rangeIndex = 0; rangeIndex < range.size() && index < batch.size(); rangeIndex++) {
+					batch.get(index++).jobId.complete(range.getJobId(rangeIndex));
+				}
+			}
+			if (index < batch.size()) {
+				throw new Exception("condor_submit created " + index + " jobs instead of " + batch.size() + ".");
+			}
+		} catch (InterruptedException ie) {
+			fail(batch, ie);
+			// Without an executor, this is the batching thread being shut down.
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			fail(batch, e);
+		}
+	}
+
+	private static void fail(List<Request> requests, Throwable cause) {
+		for (Request request : requests) {
+			request.jobId.completeExceptionally(cause);
+		}
+	}
+
+	/*
+	 * A job waiting to be submitted.
+	 */
+	private static class Request {
+		private final String description;
+		private final CompletableFuture<String> jobId = new CompletableFuture<String>();
+
+		Request(String description) {
+			this.description = description;
+		}
+	}
+}
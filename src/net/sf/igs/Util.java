@@ -39,10 +39,15 @@ public class Util {
      */
     public static final String LOG_FILE_PREFIX = "condor_drmaa_";
     
+    /**
+     * The suffix that all log files for submitted Condor jobs will have.
+     */
+    public static final String LOG_FILE_SUFFIX = ".log";
+    
 	/**
 	 * The log file template for submitted Condor jobs.
 	 */
-	public static final String LOG_TEMPLATE = TMP + File.separator + LOG_FILE_PREFIX + "$(Cluster).$(Process).log";
+	public static final String LOG_TEMPLATE = TMP + File.separator + LOG_FILE_PREFIX + "$(Cluster).$(Process)" + LOG_FILE_SUFFIX;
     
 	// This is the regular expression used to match the job id from the job's log file
 	// The job id looks like this: (123.000.000)  The first set of 3 digits is the job
@@ -63,6 +68,86 @@ public class Util {
     	return valid;
     }
     
+    /**
+     * Given a Condor job ID, such as "357.12", return the ID of the cluster the
+     * job belongs to, "357" in this case. A bare cluster ID is returned as is.
+     * 
+     * @param jobId a <code>String</code> containing the job ID.
+     * @return a <code>String</code> with the cluster ID.
+     */
+    public static String getClusterId(String jobId) {
+    	int dot = jobId.indexOf('.');
+    	return (dot < 0) ? jobId : jobId.substring(0, dot);
+    }
+    
+    /**
+     * Packs a Condor job ID, such as "357.12", into a single <code>long</code> with
+     * the cluster in the upper and the process number in the lower 32 bits, so that
+     * jobs can be kept in primitive-keyed structures. The ID is parsed in place.
+     * 
+     * @param jobId a <code>String</code> containing the job ID.
+     * @return a <code>long</code> key, or -1 if the ID isn't of the form cluster.proc
+     */
+    public static long getJobKey(String jobId) {
+    	long cluster = 0;
+    	long proc = 0;
+    	int dot = -1;
+    	int length = jobId.length();
+    	for (int index = 0; index < length; index++) {
+    		char c = jobId.charAt(index);
+    		if (c == '.' && dot < 0 && index > 0) {
+    			dot = index;
+    		} else if (c >= '0' && c <= '9') {
+    			if (dot < 0) {
+    				cluster = cluster * 10 + (c - '0');
+    			} else {
+    				proc = proc * 10 + (c - '0');
+    			}
+    			if (cluster > Integer.MAX_VALUE || proc > Integer.MAX_VALUE) {
+    				return -1;
+    			}
+    		} else {
+    			return -1;
+    		}
+    	}
+    	if (dot < 0 || dot == length - 1) {
+    		return -1;
+    	}
+    	return getJobKey((int) cluster, (int) proc);
+    }
+    
+    /**
+     * Packs a cluster and process number into a single <code>long</code>.
+     * 
+     * @param cluster the cluster ID
+     * @param proc the process number
+     * @return a <code>long</code> key
+     * @see #getJobKey(String)
+     */
+    public static long getJobKey(int cluster, int proc) {
+    	return ((long) cluster << 32) | (proc & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * The cluster ID of a key made by {@link #getJobKey(String)}.
+     * 
+     * @param key a <code>long</code> key
+     * @return an <code>int</code>
+     */
+    public static int getKeyCluster(long key) {
+    	return (int) (key >>> 32);
+    }
+    
+    /**
+     * The process number of a key made by {@link #getJobKey(String)}.
+     * 
+     * @param key a <code>long</code> key
+     * @return an <code>int</code>
+     */
+    public static int getKeyProc(long key) {
+    	return (int) key;
+    }
+    
     /**
      * Given a condor job ID of a job submitted through Condor-JDRMAA, return the path to
      * the log file that belongs to it. There is no guarantee that the log file exists or
@@ -73,10 +158,29 @@ public class Util {
      * @return a <code>String</code> with the absolute path.
      */
     public static String getLogFromId(String jobId) {
-    	String log = TMP + File.separator + LOG_FILE_PREFIX + jobId + ".log";
+    	String log = TMP + File.separator + LOG_FILE_PREFIX + jobId + LOG_FILE_SUFFIX;
     	return log;
     }
 
+    /**
+     * The inverse of {@link #getLogFromId(String)}. Given the name of a log file,
+     * without any directory, return the ID of the job it belongs to, or null if
+     * the name isn't that of a Condor-JDRMAA job log.
+     * 
+     * @param logName a <code>String</code> containing the file name.
+     * @return a <code>String</code> with the job ID, or null.
+     */
+    public static String getIdFromLogName(String logName) {
+    	String jobId = null;
+    	if (logName.startsWith(LOG_FILE_PREFIX) && logName.endsWith(LOG_FILE_SUFFIX)) {
+    		jobId = logName.substring(LOG_FILE_PREFIX.length(), logName.length() - LOG_FILE_SUFFIX.length());
+    		if (! validJobId(jobId)) {
+    			jobId = null;
+    		}
+    	}
+    	return jobId;
+    }
+
 	/**
 	 * Given a Condor log file, determine the job Id.
 	 * 
@@ -0,0 +1,206 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.igs.ClassAdJsonReader;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Test the {@link ClassAdJsonReader} class.
+ */
+public class ClassAdJsonReaderTest {
+
+	private static final String QUEUE =
+		"[\n" +
+		"{\n" +
+		"  \"ClusterId\": 800,\n" +
+		"  \"Environment\": { \"PATH\": \"/bin\", \"Nested\": [1, \"}\", {\"a\": null}] },\n" +
+		"  \"procid\": 0,\n" +
+		"  \"HoldReason\": \"Error from slot1@node: \\\"disk\\\" full \\u00e9\\ud83d\\ude00\",\n" +
+		"  \"JobStatus\": 5,\n" +
+		"  \"RemoteUserCpu\": 1.5e1,\n" +
+		"  \"ExitBySignal\": false,\n" +
+		"  \"Requirements\": \"\\/Expr(TARGET.Arch == \\\"X86_64\\\")\\/\"\n" +
+		"}\n" +
+		",\n" +
+		"{\n" +
+		"  \"ClusterId\": 800,\n" +
+		"  \"ProcId\": 1,\n" +
+		"  \"JobStatus\": 4,\n" +
+		"  \"HoldReason\": null,\n" +
+		"  \"ExitBySignal\": true,\n" +
+		"  \"Args\": [\"x\", [\"y\"]]\n" +
+		"}\n" +
+		"]\n";
+
+	private static final String[] ATTRIBUTES =
+		{"ClusterId", "ProcId", "JobStatus", "HoldReason", "RemoteUserCpu", "ExitBySignal"};
+
+	/**
+	 * Test that the requested attributes are projected out of each ClassAd,
+	 * whatever their case, and that everything else is skipped.
+	 */
+	@Test
+	public void projectionTest() throws IOException {
+		ClassAdJsonReader reader = new ClassAdJsonReader(ATTRIBUTES);
+		assertEquals(2, reader.indexOf("jobstatus"));
+		assertEquals(-1, reader.indexOf("Owner"));
+
+		final List<String> seen = new ArrayList<String>();
+		reader.read(stream(QUEUE), new ClassAdJsonReader.Handler() {
+			public void classAd(ClassAdJsonReader.Record record) {
+				seen.add(record.getLong(0, -1) + "." + record.getInt(1, -1) + " " + record.getInt(2, -1) +
+						" " + record.getString(3) + " " + record.getDouble(4, -1) + " " + record.getBoolean(5) +
+						" " + record.isDefined(3));
+			}
+		});
+		assertEquals(2, seen.size());
+		assertEquals("800.0 5 Error from slot1@node: \"disk\" full \u00e9\ud83d\ude00 15.0 false true", seen.get(0));
+		assertEquals("800.1 4 null -1.0 true false", seen.get(1));
+	}
+
+	/**
+	 * Test that ClassAds that aren't in an array, and empty output, are read.
+	 */
+	@Test
+	public void bareObjectsTest() throws IOException {
+		ClassAdJsonReader reader = new ClassAdJsonReader("ProcId");
+		final List<Long> procs = new ArrayList<Long>();
+		ClassAdJsonReader.Handler handler = new ClassAdJsonReader.Handler() {
+			public void classAd(ClassAdJsonReader.Record record) {
+				procs.add(record.getLong(0, -1));
+			}
+		};
+		reader.read(stream("{\"ProcId\": 3}\n{\"ProcId\": -4}\n{}"), handler);
+		reader.read(stream(""), handler);
+		assertEquals(3, procs.size());
+		assertEquals(3L, procs.get(0).longValue());
+		assertEquals(-4L, procs.get(1).longValue());
+		assertEquals(-1L, procs.get(2).longValue());
+	}
+
+	/**
+	 * Test that output that was cut short, or isn't JSON, is reported.
+	 */
+	@Test
+	public void malformedTest() {
+		String[] malformed = {"[{\"ProcId\": 3", "[{\"ProcId\": tru}]", "[{ProcId: 3}]", "[{\"ProcId\": \"open"};
+		for (String text : malformed) {
+			try {
+				new ClassAdJsonReader("ProcId").read(stream(text), new ClassAdJsonReader.Handler() {
+					public void classAd(ClassAdJsonReader.Record record) {
+					}
+				});
+				fail("Should not have read " + text);
+			} catch (IOException ioe) {
+				assertTrue(ioe.getMessage().contains("ClassAd JSON"));
+			}
+		}
+	}
+
+	/**
+	 * Test that reading a large queue allocates next to nothing per job when
+	 * no string attributes are requested.
+	 */
+	@Test
+	public void allocationTest() throws Exception {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+		allocations.setThreadAllocatedMemoryEnabled(true);
+
+		final int jobs = 50000;
+		final byte[] classAd = ("{\"ClusterId\": 801, \"ProcId\": 7, \"JobStatus\": 2, \"Owner\": \"someone\", " +
+				"\"Env\": {\"HOME\": \"/home/someone\"}, \"ExitBySignal\": false},\n").getBytes(StandardCharsets.US_ASCII);
+		ClassAdJsonReader reader = new ClassAdJsonReader("ClusterId", "ProcId", "JobStatus", "ExitBySignal");
+		final long[] sum = new long[1];
+		ClassAdJsonReader.Handler handler = new ClassAdJsonReader.Handler() {
+			public void classAd(ClassAdJsonReader.Record record) {
+				sum[0] += record.getLong(1, 0);
+			}
+		};
+		// Warm up.
+		for (int round = 0; round < 3; round++) {
+			reader.read(new RepeatingStream(classAd, jobs), handler);
+		}
+		sum[0] = 0;
+		InputStream input = new RepeatingStream(classAd, jobs);
+		long threadId = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(threadId);
+		reader.read(input, handler);
+		long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+		assertEquals(7L * jobs, sum[0]);
+		assertTrue("Allocated " + allocated + " bytes for " + jobs + " jobs", allocated / jobs < 8);
+	}
+
+	private static InputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/*
+	 * Streams the same bytes over and over, without holding the whole output.
+	 */
+	private static class RepeatingStream extends InputStream {
+		private final byte[] bytes;
+		private int remaining;
+		private int position = 0;
+
+		RepeatingStream(byte[] bytes, int times) {
+			this.bytes = bytes;
+			this.remaining = times;
+		}
+
+		@Override
+		public int read() {
+			byte[] one = new byte[1];
+			return (read(one, 0, 1) < 0) ? -1 : one[0];
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) {
+			if (remaining == 0) {
+				return -1;
+			}
+			int count = Math.min(length, bytes.length - position);
+			System.arraycopy(bytes, position, buffer, offset, count);
+			position += count;
+			if (position == bytes.length) {
+				position = 0;
+				remaining--;
+			}
+			return count;
+		}
+	}
+}
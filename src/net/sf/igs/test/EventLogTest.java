@@ -0,0 +1,274 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.sf.igs.ClusterSet;
+import net.sf.igs.EventLog;
+import net.sf.igs.JobEvent;
+import net.sf.igs.JobEventType;
+import net.sf.igs.JobStateListener;
+import net.sf.igs.Util;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the {@link EventLog} class. These tests write a fake event log into the
+ * temporary directory, so Condor is not needed to run them.
+ */
+public class EventLogTest {
+
+	private static final String SUBMITTED =
+		"000 (%s.000.000) 08/24 18:17:56 Job submitted from host: <134.192.146.203:35732>\n...\n";
+	private static final String TERMINATED =
+		"005 (%s.000.000) 08/24 18:19:59 Job terminated.\n\t(1) Normal termination (return value 7)\n...\n";
+
+	private final File log = new File(Util.TMP, "condor_drmaa_event_test.log");
+	private final File offsetFile = new File(Util.TMP, "condor_drmaa_event_test.offset");
+	private final File rotatedLog = new File(Util.TMP, "condor_drmaa_event_test.log.old");
+
+	@After
+	public void deleteFiles() {
+		log.delete();
+		offsetFile.delete();
+		rotatedLog.delete();
+	}
+
+	/**
+	 * Test the primitive set of cluster IDs.
+	 */
+	@Test
+	public void clusterSetTest() {
+		ClusterSet set = new ClusterSet();
+		assertTrue(set.isEmpty());
+		for (int cluster = 0; cluster < 100000; cluster += 3) {
+			assertTrue(set.add(cluster));
+		}
+		assertFalse(set.add(99));
+		assertEquals(33334, set.size());
+		assertTrue(set.contains(0));
+		assertTrue(set.contains(99999));
+		assertFalse(set.contains(100));
+		assertFalse(set.contains(-1));
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(0));
+	}
+
+	/**
+	 * Test that reading starts at the end of the log and only the events of
+	 * the followed clusters are handed on.
+	 */
+	@Test
+	public void filterTest() throws IOException {
+		append(String.format(SUBMITTED, "990100"));
+		EventLog eventLog = new EventLog(log, null);
+		List<JobEvent> events = listen(eventLog);
+		eventLog.addCluster(990100);
+		assertTrue(eventLog.isFollowed(990100));
+		assertFalse(eventLog.isFollowed(990101));
+		assertTrue(eventLog.read().isEmpty());
+
+		append(String.format(SUBMITTED, "990101") + String.format(TERMINATED, "990100") +
+				String.format(TERMINATED, "990101"));
+		assertEquals(Collections.singletonList("990100.0"), eventLog.read());
+		assertEquals(1, events.size());
+		assertEquals(JobEventType.JOB_TERMINATED, events.get(0).getType());
+		assertEquals(1, eventLog.getJobCount());
+		assertNull(eventLog.getJobInfo("990101.0"));
+	}
+
+	/**
+	 * Test that the events of a cluster that were read before the cluster was
+	 * followed are handed on, in order, once it is.
+	 */
+	@Test
+	public void catchUpTest() throws Exception {
+		log.createNewFile();
+		EventLog eventLog = new EventLog(log, null);
+		List<JobEvent> events = listen(eventLog);
+		append(String.format(SUBMITTED, "990102") + String.format(SUBMITTED, "990103"));
+		assertTrue(eventLog.read().isEmpty());
+
+		eventLog.addCluster(990102);
+		append(String.format(TERMINATED, "990102"));
+		assertEquals(Collections.singletonList("990102.0"), eventLog.read());
+		assertEquals(2, events.size());
+		assertEquals(JobEventType.SUBMIT, events.get(0).getType());
+		assertEquals(JobEventType.JOB_TERMINATED, events.get(1).getType());
+		assertEquals(7, eventLog.getJobInfo("990102.0").getExitStatus());
+
+		// Only skipped events are read again.
+		eventLog.addCluster(990103);
+		assertEquals(Collections.singletonList("990103.0"), eventLog.read());
+		assertEquals(3, events.size());
+	}
+
+	/**
+	 * Test that the events of a cluster are still handed on once it is
+	 * followed, even if so many other clusters came along after it that its
+	 * first event is no longer remembered, as long as it is followed with the
+	 * checkpoint taken before it was submitted.
+	 */
+	@Test
+	public void overflowTest() throws Exception {
+		append(String.format(SUBMITTED, "990120"));
+		EventLog eventLog = new EventLog(log, null);
+		List<JobEvent> events = listen(eventLog);
+		long checkpoint = eventLog.checkpoint();
+		StringBuilder others = new StringBuilder();
+		for (int cluster = 991000; cluster < 991300; cluster++) {
+			others.append(String.format(SUBMITTED, cluster));
+		}
+		append(String.format(SUBMITTED, "990121") + String.format(SUBMITTED, "990122") + others);
+		assertTrue(eventLog.read().isEmpty());
+
+		// Without the checkpoint, the first event of the cluster is lost.
+		eventLog.addCluster(990122);
+		assertTrue(eventLog.read().isEmpty());
+
+		eventLog.addCluster(990121, checkpoint);
+		append(String.format(TERMINATED, "990121"));
+		assertEquals(Collections.singletonList("990121.0"), eventLog.read());
+		assertEquals(2, events.size());
+		assertEquals(JobEventType.SUBMIT, events.get(0).getType());
+		assertEquals(JobEventType.JOB_TERMINATED, events.get(1).getType());
+
+		// A cluster that is still remembered is read again from its own first event.
+		long later = eventLog.checkpoint();
+		append(String.format(SUBMITTED, "990123"));
+		assertTrue(eventLog.read().isEmpty());
+		eventLog.addCluster(990123, later);
+		assertEquals(Collections.singletonList("990123.0"), eventLog.read());
+		assertEquals(3, events.size());
+	}
+
+	/**
+	 * Test that a new reader carries on from the saved offset, and that reading
+	 * starts over when the log is rotated.
+	 */
+	@Test
+	public void offsetTest() throws IOException {
+		append(String.format(SUBMITTED, "990104"));
+		EventLog first = new EventLog(log, offsetFile);
+		first.addCluster(990104);
+		append(String.format(SUBMITTED, "990105"));
+		first.read();
+		assertTrue(offsetFile.exists());
+
+		append(String.format(TERMINATED, "990104"));
+		EventLog second = new EventLog(log, offsetFile);
+		List<JobEvent> events = listen(second);
+		second.addCluster(990104);
+		assertEquals(Collections.singletonList("990104.0"), second.read());
+		assertEquals(1, events.size());
+
+		// The full log is removed and a new one started. There is nothing
+		// left of the old one to read.
+		assertTrue(log.delete());
+		append(String.format(TERMINATED, "990106"));
+		second.addCluster(990106);
+		assertEquals(Arrays.asList("990106.0"), second.read());
+		// The state of the jobs carries over.
+		assertEquals(2, second.getJobCount());
+	}
+
+	/**
+	 * Test that the events appended to a log after it was last read, and before
+	 * Condor rotated it, are read from the rotated log before the new one.
+	 */
+	@Test
+	public void rotationTest() throws Exception {
+		log.createNewFile();
+		EventLog eventLog = new EventLog(log, null);
+		List<JobEvent> events = listen(eventLog);
+		eventLog.addCluster(990107);
+		eventLog.addCluster(990108);
+		append(String.format(SUBMITTED, "990107"));
+		assertEquals(Collections.singletonList("990107.0"), eventLog.read());
+
+		append(String.format(TERMINATED, "990107"));
+		assertTrue(log.renameTo(rotatedLog));
+		append(String.format(SUBMITTED, "990108"));
+		assertEquals(Arrays.asList("990107.0", "990108.0"), eventLog.read());
+		assertEquals(3, events.size());
+		assertEquals(JobEventType.JOB_TERMINATED, events.get(1).getType());
+		assertEquals(7, eventLog.getJobInfo("990107.0").getExitStatus());
+
+		// The new log is read from its start, once.
+		append(String.format(TERMINATED, "990108"));
+		assertEquals(Collections.singletonList("990108.0"), eventLog.read());
+		assertEquals(4, events.size());
+	}
+
+	/**
+	 * Test that a reader that starts after the log was rotated reads the rest
+	 * of the old log, from the saved offset, before the new one.
+	 */
+	@Test
+	public void rotatedOffsetTest() throws Exception {
+		append(String.format(SUBMITTED, "990109"));
+		EventLog first = new EventLog(log, offsetFile);
+		first.addCluster(990109);
+		append(String.format(SUBMITTED, "990110"));
+		first.read();
+
+		append(String.format(TERMINATED, "990109"));
+		assertTrue(log.renameTo(rotatedLog));
+		append(String.format(TERMINATED, "990110"));
+		EventLog second = new EventLog(log, offsetFile);
+		List<JobEvent> events = listen(second);
+		second.addCluster(990109);
+		second.addCluster(990110);
+		assertEquals(Arrays.asList("990109.0", "990110.0"), second.read());
+		assertEquals(2, events.size());
+		assertEquals("990109.0", events.get(0).getJobId());
+		assertEquals(7, second.getJobInfo("990109.0").getExitStatus());
+	}
+
+	private List<JobEvent> listen(EventLog eventLog) {
+		final List<JobEvent> events = new CopyOnWriteArrayList<JobEvent>();
+		eventLog.setJobStateListener(new JobStateListener() {
+			public void jobStateChanged(JobEvent event) {
+				events.add(event);
+			}
+		});
+		return events;
+	}
+
+	private void append(String text) throws IOException {
+		FileWriter writer = new FileWriter(log, true);
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.igs.ExecutorStrategy;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the {@link ExecutorStrategy} class.
+ */
+public class ExecutorStrategyTest {
+
+	@After
+	public void clearProperties() {
+		System.clearProperty(ExecutorStrategy.CONDOR_JDRMAA_EXECUTOR);
+		System.clearProperty(ExecutorStrategy.CONDOR_JDRMAA_EXECUTOR_THREADS);
+	}
+
+	/**
+	 * Test that the strategy follows the system property, and that asking for
+	 * virtual threads where there are none falls back to platform threads.
+	 */
+	@Test
+	public void selectionTest() {
+		System.setProperty(ExecutorStrategy.CONDOR_JDRMAA_EXECUTOR, "platform");
+		assertEquals(ExecutorStrategy.PLATFORM, ExecutorStrategy.fromSystemProperties());
+
+		System.setProperty(ExecutorStrategy.CONDOR_JDRMAA_EXECUTOR, "virtual");
+		ExecutorStrategy expected = ExecutorStrategy.isVirtualAvailable() ?
+				ExecutorStrategy.VIRTUAL : ExecutorStrategy.PLATFORM;
+		assertEquals(expected, ExecutorStrategy.fromSystemProperties());
+
+		System.clearProperty(ExecutorStrategy.CONDOR_JDRMAA_EXECUTOR);
+		assertEquals(expected, ExecutorStrategy.fromSystemProperties());
+	}
+
+	/**
+	 * Test that platform executors run tasks on named daemon threads.
+	 */
+	@Test
+	public void platformExecutorTest() throws Exception {
+		System.setProperty(ExecutorStrategy.CONDOR_JDRMAA_EXECUTOR_THREADS, "2");
+		ExecutorService executor = ExecutorStrategy.PLATFORM.newExecutor("strategy-test");
+		try {
+			Thread thread = executor.submit(new Callable<Thread>() {
+				public Thread call() {
+					return Thread.currentThread();
+				}
+			}).get(10, TimeUnit.SECONDS);
+			assertTrue(thread.isDaemon());
+			assertTrue(thread.getName().startsWith("strategy-test-"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import net.sf.igs.JobEvent;
+import net.sf.igs.JobEventDecoder;
+import net.sf.igs.JobEventType;
+import net.sf.igs.JobLogParser;
+import net.sf.igs.JobStateListener;
+
+import org.ggf.drmaa.JobInfo;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the {@link JobEventDecoder} class against the sample logs in the test
+ * data directory.
+ */
+public class JobEventDecoderTest {
+
+	private static File testDir;
+
+	/**
+	 * Checks whether the "test.data.dir" system property has been properly set.
+	 *
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void setup() throws Exception {
+		String testDataDir = System.getProperty("test.data.dir");
+		if (testDataDir == null) {
+			throw new Exception("Please define the test.data.dir system property.");
+		}
+		testDir = new File(testDataDir);
+	}
+
+	/**
+	 * Test that every code maps to its type and back.
+	 */
+	@Test
+	public void codeTest() {
+		for (int code = 0; code <= 40; code++) {
+			JobEventType type = JobEventType.forCode(code);
+			assertFalse(type == JobEventType.UNKNOWN);
+			assertEquals(code, type.getCode());
+		}
+		assertEquals(JobEventType.UNKNOWN, JobEventType.forCode(41));
+		assertEquals(JobEventType.UNKNOWN, JobEventType.forCode(-1));
+	}
+
+	/**
+	 * Test that lines that aren't event headers aren't mistaken for events.
+	 */
+	@Test
+	public void malformedHeaderTest() {
+		JobEventDecoder decoder = new JobEventDecoder();
+		assertNull(decoder.decode(new String[0]));
+		assertNull(decoder.decode(new String[] { "" }));
+		assertNull(decoder.decode(new String[] { "Job terminated." }));
+		assertNull(decoder.decode(new String[] { "005 357.000.000 08/24 18:17:59 Job terminated." }));
+		assertNull(decoder.decode(new String[] { "005 (357.x.000) 08/24 18:17:59 Job terminated." }));
+		assertNull(decoder.decode(new String[] { "005 (357.000.000)" }));
+
+		JobEvent event = decoder.decode(new String[] { "099 (357.002.000) 08/24 18:17:59 Something new" });
+		assertEquals(JobEventType.UNKNOWN, event.getType());
+		assertEquals("357.2", event.getJobId());
+		assertEquals("Something new", event.getDescription());
+	}
+
+	/**
+	 * Test the events of the log that came with the original parser.
+	 */
+	@Test
+	public void test1LogTest() throws Exception {
+		List<JobEvent> events = new ArrayList<JobEvent>();
+		JobInfo info = parse("test1.log", events);
+		assertEquals(3, events.size());
+
+		JobEvent.Submit submit = (JobEvent.Submit) events.get(0);
+		assertEquals(357, submit.getCluster());
+		assertEquals(0, submit.getProc());
+		assertEquals(0, submit.getSubproc());
+		assertEquals("<134.192.146.203:35732>", submit.getSubmitHost());
+
+		JobEvent.Execute execute = (JobEvent.Execute) events.get(1);
+		assertEquals("<134.192.146.203:52538>", execute.getExecuteHost());
+
+		JobEvent.Terminated terminated = (JobEvent.Terminated) events.get(2);
+		assertTrue(terminated.isNormal());
+		assertEquals(1, terminated.getReturnValue());
+		assertEquals(-1, terminated.getSignal());
+		assertEquals(0, terminated.getRunBytesSent());
+		assertEquals(0, terminated.getRunBytesReceived());
+		assertEquals(9, terminated.getBody().size());
+
+		assertTrue(info.hasExited());
+		assertFalse(info.hasSignaled());
+		assertEquals(1, info.getExitStatus());
+	}
+
+	/**
+	 * Test every kind of event in a log with most of the standard events.
+	 */
+	@Test
+	public void eventsLogTest() throws Exception {
+		List<JobEvent> events = new ArrayList<JobEvent>();
+		JobInfo info = parse("events.log", events);
+
+		JobEventType[] expected = {
+				JobEventType.SUBMIT, JobEventType.EXECUTE, JobEventType.IMAGE_SIZE,
+				JobEventType.JOB_SUSPENDED, JobEventType.JOB_UNSUSPENDED, JobEventType.CHECKPOINTED,
+				JobEventType.JOB_EVICTED, JobEventType.JOB_HELD, JobEventType.JOB_RELEASED,
+				JobEventType.JOB_DISCONNECTED, JobEventType.JOB_RECONNECTED, JobEventType.SHADOW_EXCEPTION,
+				JobEventType.REMOTE_ERROR, JobEventType.EXECUTABLE_ERROR, JobEventType.GENERIC,
+				JobEventType.JOB_AD_INFORMATION, JobEventType.FILE_TRANSFER, JobEventType.JOB_TERMINATED };
+		assertEquals(expected.length, events.size());
+		for (int index = 0; index < expected.length; index++) {
+			assertEquals(expected[index], events.get(index).getType());
+			assertEquals("358.0", events.get(index).getJobId());
+			assertNotNull(events.get(index).getTime());
+		}
+
+		JobEvent.ImageSize imageSize = (JobEvent.ImageSize) events.get(2);
+		assertEquals(7308, imageSize.getImageSize());
+		assertEquals(3, imageSize.getMemoryUsage());
+		assertEquals(2508, imageSize.getResidentSetSize());
+
+		assertEquals(1, ((JobEvent.Suspended) events.get(3)).getProcesses());
+
+		JobEvent.Evicted evicted = (JobEvent.Evicted) events.get(6);
+		assertTrue(evicted.isCheckpointed());
+		assertEquals(1024, evicted.getRunBytesSent());
+		assertEquals(2048, evicted.getRunBytesReceived());
+
+		JobEvent.Held held = (JobEvent.Held) events.get(7);
+		assertEquals("via condor_hold (by user drmaa)", held.getReason());
+		assertEquals(1, held.getCode());
+		assertEquals(0, held.getSubcode());
+
+		JobEvent.Reasoned released = (JobEvent.Reasoned) events.get(8);
+		assertEquals("via condor_release (by user drmaa)", released.getReason());
+
+		assertEquals("Job disconnected, attempting to reconnect", events.get(9).getDescription());
+		assertEquals(2, events.get(9).getBody().size());
+		assertEquals("(22) Job file not executable.", events.get(13).getDescription());
+
+		JobEvent.Terminated terminated = (JobEvent.Terminated) events.get(17);
+		assertFalse(terminated.isNormal());
+		assertEquals(-1, terminated.getReturnValue());
+		assertEquals(11, terminated.getSignal());
+		assertEquals("/tmp/core.358.0", terminated.getCoreFile());
+		assertEquals(512, terminated.getRunBytesSent());
+		assertEquals(256, terminated.getRunBytesReceived());
+
+		// The signal used to be lost to a pattern without a group.
+		assertTrue(info.hasExited());
+		assertTrue(info.hasSignaled());
+		assertTrue(info.hasCoreDump());
+		assertEquals("SIGSEGV", info.getTerminatingSignal());
+		assertEquals("512", info.getResourceUsage().get("run_bytes_sent"));
+	}
+
+	/**
+	 * Test the ISO 8601 times of newer Condor versions, aborted jobs and the
+	 * nodes of parallel jobs.
+	 */
+	@Test
+	public void isoLogTest() throws Exception {
+		List<JobEvent> events = new ArrayList<JobEvent>();
+		JobInfo info = parse("events_iso.log", events);
+		assertEquals(3, events.size());
+
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(events.get(0).getTime());
+		assertEquals(2024, calendar.get(Calendar.YEAR));
+		assertEquals(Calendar.AUGUST, calendar.get(Calendar.MONTH));
+		assertEquals(18, calendar.get(Calendar.HOUR_OF_DAY));
+		assertEquals("359.1", events.get(0).getJobId());
+
+		JobEvent.Reasoned aborted = (JobEvent.Reasoned) events.get(1);
+		assertEquals(JobEventType.JOB_ABORTED, aborted.getType());
+		assertEquals("Job was aborted.", aborted.getDescription());
+		assertEquals("via condor_rm (by user drmaa)", aborted.getReason());
+		assertEquals(124 * 1000, aborted.getTime().getTime() - events.get(0).getTime().getTime());
+
+		JobEvent.Terminated node = (JobEvent.Terminated) events.get(2);
+		assertEquals(JobEventType.NODE_TERMINATED, node.getType());
+		assertEquals(1, node.getSubproc());
+		assertEquals(0, node.getReturnValue());
+
+		// An aborted job is over, but it didn't exit.
+		assertTrue(info.wasAborted());
+		assertFalse(info.hasExited());
+	}
+
+	/*
+	 * Parse a sample log, collecting its events.
+	 */
+	private static JobInfo parse(String name, final List<JobEvent> events) throws Exception {
+		JobLogParser parser = new JobLogParser(new File(testDir, name));
+		parser.setJobStateListener(new JobStateListener() {
+			public void jobStateChanged(JobEvent event) {
+				events.add(event);
+			}
+		});
+		return parser.parse();
+	}
+}
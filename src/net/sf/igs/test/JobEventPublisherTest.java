@@ -0,0 +1,163 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.igs.JobEvent;
+import net.sf.igs.JobEventPublisher;
+import net.sf.igs.JobEventType;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link JobEventPublisher} class.
+ */
+public class JobEventPublisherTest {
+
+	/**
+	 * Test that subscribers only get the events they asked for, in order, and
+	 * are told when the stream completes.
+	 */
+	@Test
+	public void demandTest() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		JobEventPublisher publisher = new JobEventPublisher(executor, 16, 1000);
+		try {
+			RecordingSubscriber subscriber = new RecordingSubscriber(1);
+			publisher.subscribe(subscriber);
+			assertTrue(subscriber.subscribed.await(10, TimeUnit.SECONDS));
+
+			for (int proc = 0; proc < 5; proc++) {
+				publisher.jobStateChanged(new JobEvent(JobEventType.EXECUTE, 42, proc, 0, null, "Job executing"));
+			}
+			Thread.sleep(200);
+			assertEquals(1, subscriber.events.size());
+
+			subscriber.subscription.request(4);
+			publisher.close();
+			assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+			assertEquals(5, subscriber.events.size());
+			for (int proc = 0; proc < 5; proc++) {
+				assertEquals("42." + proc, subscriber.events.get(proc).getJobId());
+			}
+			assertEquals(0, publisher.getDroppedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Test that a subscriber that doesn't request anything can't make the
+	 * publisher buffer more than its buffer size.
+	 */
+	@Test
+	public void boundedBufferTest() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		JobEventPublisher publisher = new JobEventPublisher(executor, 2, 0);
+		try {
+			RecordingSubscriber subscriber = new RecordingSubscriber(0);
+			publisher.subscribe(subscriber);
+			assertTrue(subscriber.subscribed.await(10, TimeUnit.SECONDS));
+			assertEquals(1, publisher.getSubscriberCount());
+
+			for (int proc = 0; proc < 10; proc++) {
+				publisher.jobStateChanged(new JobEvent(JobEventType.JOB_TERMINATED, 43, proc, 0, null, "Job terminated."));
+			}
+			assertEquals(8, publisher.getDroppedCount());
+
+			subscriber.subscription.request(Long.MAX_VALUE);
+			publisher.close();
+			assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+			assertEquals(2, subscriber.events.size());
+			assertEquals("43.0", subscriber.events.get(0).getJobId());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Test that by default a stalled subscriber doesn't hold up the thread that
+	 * publishes the events, which is the one that reads the job logs.
+	 */
+	@Test
+	public void nonBlockingDefaultTest() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		JobEventPublisher publisher = JobEventPublisher.fromSystemProperties(executor);
+		try {
+			RecordingSubscriber subscriber = new RecordingSubscriber(0);
+			publisher.subscribe(subscriber);
+			assertTrue(subscriber.subscribed.await(10, TimeUnit.SECONDS));
+
+			int count = Flow.defaultBufferSize() + 100;
+			long start = System.nanoTime();
+			for (int proc = 0; proc < count; proc++) {
+				publisher.jobStateChanged(new JobEvent(JobEventType.SUBMIT, 44, proc, 0, null, "Job submitted."));
+			}
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+			assertTrue(publisher.getDroppedCount() >= 100);
+		} finally {
+			publisher.close();
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * Records what it is sent, after requesting a number of events up front.
+	 */
+	private static class RecordingSubscriber implements Flow.Subscriber<JobEvent> {
+		private final long initialRequest;
+		private final List<JobEvent> events = new CopyOnWriteArrayList<JobEvent>();
+		private final CountDownLatch subscribed = new CountDownLatch(1);
+		private final CountDownLatch completed = new CountDownLatch(1);
+		private volatile Flow.Subscription subscription;
+
+		RecordingSubscriber(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (initialRequest > 0) {
+				subscription.request(initialRequest);
+			}
+			subscribed.countDown();
+		}
+
+		public void onNext(JobEvent event) {
+			events.add(event);
+		}
+
+		public void onError(Throwable throwable) {
+			throwable.printStackTrace();
+			completed.countDown();
+		}
+
+		public void onComplete() {
+			completed.countDown();
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.igs.JobIdRange;
+import net.sf.igs.JobIdRangeFile;
+import net.sf.igs.JobIdRangeList;
+import net.sf.igs.Util;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link JobIdRange}, {@link JobIdRangeList} and {@link JobIdRangeFile} classes.
+ */
+public class JobIdRangeTest {
+
+	/**
+	 * Test parsing the output of 'condor_submit -terse'.
+	 */
+	@Test
+	public void parseTest() {
+		JobIdRange range = JobIdRange.parse("357.0 - 357.9999");
+		assertNotNull(range);
+		assertEquals(357, range.getCluster());
+		assertEquals(0, range.getFirstProc());
+		assertEquals(9999, range.getLastProc());
+		assertEquals(10000, range.size());
+		assertEquals("357.0 - 357.9999", range.toString());
+
+		range = JobIdRange.parse("12.5 - 12.5");
+		assertNotNull(range);
+		assertEquals(1, range.size());
+		assertEquals("12.5", range.getJobId(0));
+
+		// Things that aren't ranges.
+		assertNull(JobIdRange.parse("1 job(s) submitted to cluster 357."));
+		assertNull(JobIdRange.parse("357.0 - 358.2"));
+		assertNull(JobIdRange.parse(""));
+	}
+
+	/**
+	 * Test retrieving job IDs from a range.
+	 */
+	@Test
+	public void jobIdTest() {
+		JobIdRange range = new JobIdRange(357, 3, 7);
+		assertEquals("357.3", range.getJobId(0));
+		assertEquals("357.7", range.getJobId(4));
+		assertTrue(range.contains(357, 5));
+		assertFalse(range.contains(357, 2));
+		assertFalse(range.contains(358, 5));
+	}
+
+	/**
+	 * Test the list view of one or more ranges.
+	 */
+	@Test
+	public void listTest() {
+		List<String> single = new JobIdRangeList(new JobIdRange(357, 0, 99999));
+		assertEquals(100000, single.size());
+		assertEquals("357.0", single.get(0));
+		assertEquals("357.99999", single.get(99999));
+		assertTrue(single.contains("357.500"));
+		assertEquals(500, single.indexOf("357.500"));
+		assertEquals(500, single.lastIndexOf("357.500"));
+		assertFalse(single.contains("357.100000"));
+		assertFalse(single.contains("358.5"));
+		assertFalse(single.contains("357"));
+		assertFalse(single.contains("357.5x"));
+		assertFalse(single.contains(Integer.valueOf(357)));
+
+		List<JobIdRange> ranges = new ArrayList<JobIdRange>();
+		ranges.add(new JobIdRange(10, 0, 2));
+		ranges.add(new JobIdRange(11, 5, 5));
+		ranges.add(new JobIdRange(12, 0, 1));
+		List<String> multiple = new JobIdRangeList(ranges);
+		assertEquals(Arrays.asList("10.0", "10.1", "10.2", "11.5", "12.0", "12.1"), multiple);
+		assertEquals(3, multiple.indexOf("11.5"));
+		assertEquals(5, multiple.indexOf("12.1"));
+		assertEquals(-1, multiple.indexOf("11.4"));
+	}
+
+	/**
+	 * Test that the list can't be modified.
+	 */
+	@Test(expected=UnsupportedOperationException.class)
+	public void immutableListTest() {
+		new JobIdRangeList(new JobIdRange(357, 0, 9)).add("357.10");
+	}
+
+	/**
+	 * Test the packing of job IDs into primitive keys.
+	 */
+	@Test
+	public void jobKeyTest() {
+		long key = Util.getJobKey("357.12");
+		assertEquals(357, Util.getKeyCluster(key));
+		assertEquals(12, Util.getKeyProc(key));
+		assertEquals(key, Util.getJobKey(357, 12));
+		assertEquals(-1, Util.getJobKey("357"));
+		assertEquals(-1, Util.getJobKey(".12"));
+		assertEquals(-1, Util.getJobKey("357."));
+		assertEquals(-1, Util.getJobKey("357.1.2"));
+		assertEquals(-1, Util.getJobKey("99999999999.0"));
+	}
+
+	/**
+	 * Test that a job outside the range can't be retrieved.
+	 */
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void outOfBoundsTest() {
+		new JobIdRange(357, 0, 9).getJobId(10);
+	}
+
+	/**
+	 * Test that session files store ranges rather than individual jobs, and
+	 * that appended submissions are kept.
+	 */
+	@Test
+	public void rangeFileTest() throws IOException {
+		File file = File.createTempFile("jobidrange", null);
+		file.deleteOnExit();
+		file.delete();
+
+		JobIdRangeFile.append(file, new JobIdRangeList(new JobIdRange(357, 0, 999999)));
+		JobIdRangeFile.append(file, Arrays.asList("358.0", "358.1", "358.2", "360.4"));
+		// A million jobs take a handful of lines.
+		assertTrue(file.length() < 100);
+
+		List<JobIdRange> ranges = JobIdRangeFile.read(file);
+		assertEquals(3, ranges.size());
+		assertEquals(new JobIdRange(357, 0, 999999), ranges.get(0));
+		assertEquals(new JobIdRange(358, 0, 2), ranges.get(1));
+		assertEquals(new JobIdRange(360, 4, 4), ranges.get(2));
+
+		List<String> jobs = new JobIdRangeList(ranges);
+		assertEquals(1000004, jobs.size());
+		assertTrue(jobs.contains("357.500000"));
+		assertEquals("360.4", jobs.get(1000003));
+		file.delete();
+	}
+
+	/**
+	 * Test that session files with one job ID per line can still be read.
+	 */
+	@Test
+	public void legacyFileTest() throws IOException {
+		File file = File.createTempFile("jobidrange", null);
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write("42.0\n42.1\n43.0\n");
+		writer.close();
+
+		List<JobIdRange> ranges = JobIdRangeFile.read(file);
+		assertEquals(2, ranges.size());
+		assertEquals(new JobIdRange(42, 0, 1), ranges.get(0));
+		assertEquals(new JobIdRange(43, 0, 0), ranges.get(1));
+		file.delete();
+
+		// An empty file holds no jobs.
+		file = File.createTempFile("jobidrange", null);
+		file.deleteOnExit();
+		assertTrue(JobIdRangeFile.read(file).isEmpty());
+		file.delete();
+	}
+}
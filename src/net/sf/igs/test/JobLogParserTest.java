@@ -23,6 +23,8 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 
 import net.sf.igs.JobInfoImpl;
 import net.sf.igs.JobLogParser;
@@ -121,6 +123,42 @@ public class JobLogParserTest {
 		assertTrue(j3.hasSignaled());
 	}
 	
+	/**
+	 * Test that the signal that killed a job is reported by its symbolic name,
+	 * and that jobs that weren't killed by a signal have none.
+	 */
+	@Test
+	public void signalTest() throws Exception {
+		File log = File.createTempFile("condor_drmaa_signal", ".log");
+		try {
+			FileWriter writer = new FileWriter(log);
+			try {
+				writer.write("000 (360.000.000) 01/01 00:00:00 Job submitted from host: <10.0.0.1:9618>\n...\n" +
+						"001 (360.000.000) 01/01 00:01:00 Job executing on host: <10.0.0.2:9618>\n...\n" +
+						"005 (360.000.000) 01/01 00:05:00 Job terminated.\n" +
+						"\t(0) Abnormal termination (signal 9)\n" +
+						"\t(0) No core file\n...\n");
+			} finally {
+				writer.close();
+			}
+			JobInfo info = new JobLogParser(log).parse();
+			assertTrue(info.hasSignaled());
+			assertFalse(info.hasCoreDump());
+			assertEquals("SIGKILL", info.getTerminatingSignal());
+
+			writer = new FileWriter(log);
+			try {
+				writer.write("005 (360.000.000) 01/01 00:05:00 Job terminated.\n" +
+						"\t(0) Abnormal termination (signal 10)\n...\n");
+			} finally {
+				writer.close();
+			}
+			assertEquals("unknown signal", new JobLogParser(log).parse().getTerminatingSignal());
+		} finally {
+			log.delete();
+		}
+	}
+	
 	/**
 	 * Test the method of setting the exit value when using {@link JobLogParser}.
 	 * The exit value is encoded with a bit vector.
@@ -134,4 +172,92 @@ public class JobLogParserTest {
 		assertNotNull(j);
 		assertEquals(exitValue, j.getExitStatus());
 	}
+	
+	/**
+	 * Test that repeated parsing of a growing log only reads the bytes appended
+	 * since the previous parse, no matter how large the log has become.
+	 */
+	@Test
+	public void incrementalParseTest() {
+		try {
+			File log = File.createTempFile("condor_drmaa_test", ".log");
+			log.deleteOnExit();
+			
+			String submitted = "000 (357.000.000) 08/24 18:17:56 Job submitted from host: <134.192.146.203:35732>\n...\n";
+			appendToLog(log, submitted);
+			JobLogParser parser = new JobLogParser(log);
+			JobInfo info = parser.parse();
+			assertFalse(info.hasExited());
+			assertEquals(submitted.length(), parser.getLastReadBytes());
+			
+			String imageSize = "006 (357.000.000) 08/24 18:18:04 Image size of job updated: 7308\n...\n";
+			StringBuffer poll = new StringBuffer();
+			for (int eventIndex = 0; eventIndex < 50; eventIndex++) {
+				poll.append(imageSize);
+			}
+			
+			// Each poll should cost the same amount of I/O even though the log keeps growing.
+			for (int pollIndex = 0; pollIndex < 20; pollIndex++) {
+				appendToLog(log, poll.toString());
+				info = parser.parse();
+				assertFalse(info.hasExited());
+				assertEquals(poll.length(), parser.getLastReadBytes());
+				assertEquals(log.length(), parser.getPosition());
+			}
+			
+			// Nothing new, nothing read.
+			parser.parse();
+			assertEquals(0, parser.getLastReadBytes());
+			
+			appendToLog(log, "005 (357.000.000) 08/24 18:19:59 Job terminated.\n" +
+					"\t(1) Normal termination (return value 3)\n...\n");
+			info = parser.parse();
+			assertTrue(info.hasExited());
+			assertEquals(3, info.getExitStatus());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Test that an event that has only been partially written to the log is not
+	 * consumed until its "..." separator shows up.
+	 */
+	@Test
+	public void partialEventTest() {
+		try {
+			File log = File.createTempFile("condor_drmaa_test", ".log");
+			log.deleteOnExit();
+			
+			appendToLog(log, "000 (357.000.000) 08/24 18:17:56 Job submitted from host: <134.192.146.203:35732>\n...\n");
+			JobLogParser parser = new JobLogParser(log);
+			parser.parse();
+			long boundary = parser.getPosition();
+			assertEquals(log.length(), boundary);
+			
+			appendToLog(log, "005 (357.000.000) 08/24 18:19:59 Job terminated.\n");
+			JobInfo info = parser.parse();
+			assertFalse(info.hasExited());
+			assertEquals(boundary, parser.getPosition());
+			
+			appendToLog(log, "\t(1) Normal termination (return value 0)\n...\n");
+			info = parser.parse();
+			assertTrue(info.hasExited());
+			assertEquals(0, info.getExitStatus());
+			assertEquals(log.length(), parser.getPosition());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+	
+	/*
+	 * Append some text to a log file.
+	 */
+	private static void appendToLog(File log, String text) throws IOException {
+		FileWriter writer = new FileWriter(log, true);
+		writer.write(text);
+		writer.close();
+	}
 }
@@ -0,0 +1,178 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import net.sf.igs.JobLogParser;
+import net.sf.igs.JobLogScanner;
+
+import org.ggf.drmaa.JobInfo;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the {@link JobLogScanner} class.
+ */
+public class JobLogScannerTest {
+
+	private static final byte[] RUN_BYTES_SENT = JobLogScanner.bytes("  -  Run Bytes Sent By Job");
+	private static final byte[] SIGNAL = JobLogScanner.bytes("(signal ");
+
+	private static File testDir;
+
+	/**
+	 * Checks whether the "test.data.dir" system property has been properly set.
+	 *
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void setup() throws Exception {
+		String testDataDir = System.getProperty("test.data.dir");
+		if (testDataDir == null) {
+			throw new Exception("Please define the test.data.dir system property.");
+		}
+		testDir = new File(testDataDir);
+	}
+
+	/**
+	 * Test that the headers and fields of the sample log are read in place.
+	 */
+	@Test
+	public void scanTest() throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(new File(testDir, "events.log").toPath()));
+		JobLogScanner scanner = new JobLogScanner();
+		scanner.reset(buffer);
+
+		assertTrue(scanner.next());
+		assertTrue(scanner.isValid());
+		assertEquals(0, scanner.getCode());
+		assertEquals(358, scanner.getCluster());
+		assertEquals(0, scanner.getProc());
+		assertEquals(0, scanner.getSubproc());
+		assertEquals(-1, scanner.getYear());
+		assertEquals(12, scanner.getMonth());
+		assertEquals(31, scanner.getDay());
+		assertEquals(23, scanner.getHour());
+		assertEquals(58, scanner.getMinute());
+		assertEquals(10, scanner.getSecond());
+		assertEquals("Job submitted from host: <134.192.146.203:35732>", scanner.getDescription());
+
+		int events = 1;
+		while (scanner.next()) {
+			events++;
+			if (scanner.getCode() == 5) {
+				assertEquals(512, scanner.numberBefore(RUN_BYTES_SENT));
+				assertEquals(11, scanner.numberAfter(SIGNAL));
+				assertEquals(1, scanner.getMonth());
+				assertEquals(11, scanner.getLines().length);
+			}
+		}
+		assertEquals(18, events);
+		assertEquals(buffer.limit(), scanner.getConsumed());
+	}
+
+	/**
+	 * Test ISO 8601 times, and that an event without its separator is left alone.
+	 */
+	@Test
+	public void isoAndPartialTest() throws Exception {
+		byte[] log = Files.readAllBytes(new File(testDir, "events_iso.log").toPath());
+		// Drop the last separator.
+		ByteBuffer buffer = ByteBuffer.wrap(log, 0, log.length - 4);
+		JobLogScanner scanner = new JobLogScanner();
+		scanner.reset(buffer);
+
+		assertTrue(scanner.next());
+		assertEquals(2024, scanner.getYear());
+		assertEquals(8, scanner.getMonth());
+		assertEquals(24, scanner.getDay());
+		assertEquals(18, scanner.getHour());
+		assertTrue(scanner.next());
+		assertEquals(9, scanner.getCode());
+		assertEquals(359, scanner.getCluster());
+		assertEquals(1, scanner.getProc());
+		assertEquals(20, scanner.getMinute());
+		assertEquals("Job was aborted.", scanner.getDescription());
+		int consumed = scanner.getConsumed();
+		assertFalse(scanner.next());
+		assertEquals(consumed, scanner.getConsumed());
+
+		buffer = ByteBuffer.wrap(JobLogScanner.bytes("not a header\n...\n"));
+		scanner.reset(buffer);
+		assertTrue(scanner.next());
+		assertFalse(scanner.isValid());
+		assertArrayEquals(new String[] { "not a header" }, scanner.getLines());
+	}
+
+	/**
+	 * Test that parsing a log full of events that the parser doesn't keep allocates
+	 * next to nothing for each event. This takes the place of a JMH benchmark with
+	 * the allocation profiler.
+	 */
+	@Test
+	public void allocationTest() throws Exception {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+		allocations.setThreadAllocatedMemoryEnabled(true);
+
+		int events = 20000;
+		File log = File.createTempFile("condor_drmaa_scanner", ".log");
+		log.deleteOnExit();
+		FileWriter writer = new FileWriter(log);
+		try {
+			writer.write("000 (357.000.000) 08/24 18:17:56 Job submitted from host: <134.192.146.203:35732>\n...\n");
+			for (int event = 0; event < events; event++) {
+				writer.write("006 (357.000.000) 08/24 18:18:04 Image size of job updated: 7308\n" +
+						"\t3  -  MemoryUsage of job (MB)\n\t2508  -  ResidentSetSize of job (KB)\n...\n");
+			}
+			writer.write("005 (357.000.000) 08/24 18:19:59 Job terminated.\n" +
+					"\t(1) Normal termination (return value 0)\n...\n");
+		} finally {
+			writer.close();
+		}
+
+		JobLogParser parser = new JobLogParser(log);
+		// Warm up.
+		for (int round = 0; round < 5; round++) {
+			parser.reset();
+			parser.parse();
+		}
+		parser.reset();
+		long threadId = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(threadId);
+		JobInfo info = parser.parse();
+		long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+		assertTrue(info.hasExited());
+		assertEquals(0, info.getExitStatus());
+		long perEvent = allocated / events;
+		assertTrue("Allocated " + allocated + " bytes for " + events + " events", perEvent < 8);
+	}
+}
@@ -0,0 +1,494 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.igs.CondorExecException;
+import net.sf.igs.JobEvent;
+import net.sf.igs.JobEventPublisher;
+import net.sf.igs.JobEventType;
+import net.sf.igs.JobMonitor;
+import net.sf.igs.JobRegistry;
+import net.sf.igs.JobStateListener;
+import net.sf.igs.JobStatusCache;
+import net.sf.igs.JobStatusMap;
+import net.sf.igs.LogWatcher;
+import net.sf.igs.SharedJobLog;
+import net.sf.igs.Util;
+
+import org.ggf.drmaa.InvalidJobException;
+import org.ggf.drmaa.JobInfo;
+import org.ggf.drmaa.Session;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Test the {@link JobMonitor} class. These tests write fake job logs into the
+ * temporary directory, so Condor is not needed to run them.
+ */
+public class JobMonitorTest {
+
+	private static final String SUBMITTED =
+		"000 (%s.000.000) 08/24 18:17:56 Job submitted from host: <134.192.146.203:35732>\n...\n";
+	private static final String TERMINATED =
+		"005 (%s.000.000) 08/24 18:19:59 Job terminated.\n\t(1) Normal termination (return value 7)\n...\n";
+	private static final String HELD_AND_RELEASED =
+		"001 (%1$s.000.000) 08/24 18:18:01 Job executing on host: <134.192.146.203:52538>\n...\n" +
+		"004 (%1$s.000.000) 08/24 18:18:30 Job was evicted.\n\t(0) Job was not checkpointed.\n...\n" +
+		"012 (%1$s.000.000) 08/24 18:18:31 Job was held.\n\tvia condor_hold (by user drmaa)\n...\n" +
+		"013 (%1$s.000.000) 08/24 18:19:00 Job was released.\n\tvia condor_release (by user drmaa)\n...\n";
+
+	/**
+	 * Test that many waiters on the same job share a single tracked entry and
+	 * are all released when the job finishes.
+	 */
+	@Test
+	public void sharedWaitTest() {
+		String cluster = "990001";
+		String jobId = cluster + ".0";
+		JobMonitor monitor = new JobMonitor(50);
+		monitor.start();
+		try {
+			File log = createLog(jobId, String.format(SUBMITTED, cluster));
+
+			CompletableFuture<JobInfo> first = monitor.track(jobId);
+			for (int waiter = 0; waiter < 100; waiter++) {
+				assertSame(first, monitor.track(jobId));
+			}
+			assertEquals(1, monitor.getTrackedCount());
+			assertFalse(first.isDone());
+
+			appendToLog(log, String.format(TERMINATED, cluster));
+			JobInfo info = first.get(10, TimeUnit.SECONDS);
+			assertTrue(info.hasExited());
+			assertEquals(7, info.getExitStatus());
+
+			// Finished jobs are no longer polled.
+			assertEquals(0, monitor.getTrackedCount());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			monitor.shutdown();
+			new File(Util.getLogFromId(jobId)).delete();
+		}
+	}
+
+	/**
+	 * Test that a job that has already finished is complete as soon as it is
+	 * tracked, without waiting for the monitor's period to elapse.
+	 */
+	@Test
+	public void finishedJobTest() {
+		String cluster = "990002";
+		String jobId = cluster + ".0";
+		JobMonitor monitor = new JobMonitor(60 * 60 * 1000);
+		monitor.start();
+		try {
+			createLog(jobId, String.format(SUBMITTED, cluster) + String.format(TERMINATED, cluster));
+			CompletableFuture<JobInfo> completion = monitor.track(jobId);
+			assertTrue(completion.isDone());
+			assertEquals(7, completion.get().getExitStatus());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			monitor.shutdown();
+			new File(Util.getLogFromId(jobId)).delete();
+		}
+	}
+
+	/**
+	 * Test that a group of jobs is watched at once, and that the group only
+	 * completes once the last of them has finished.
+	 */
+	@Test
+	public void trackAllTest() {
+		List<String> jobIds = new ArrayList<String>();
+		for (int job = 0; job < 5; job++) {
+			jobIds.add("99001" + job + ".0");
+		}
+		JobMonitor monitor = new JobMonitor(50);
+		monitor.start();
+		try {
+			List<File> logs = new ArrayList<File>();
+			for (String jobId : jobIds) {
+				logs.add(createLog(jobId, String.format(SUBMITTED, Util.getClusterId(jobId))));
+			}
+			CompletableFuture<Void> all = monitor.trackAll(jobIds);
+			assertFalse(all.isDone());
+
+			for (int job = 0; job < 4; job++) {
+				appendToLog(logs.get(job), String.format(TERMINATED, Util.getClusterId(jobIds.get(job))));
+			}
+			Thread.sleep(500);
+			assertFalse(all.isDone());
+			assertEquals(1, monitor.getTrackedCount());
+
+			appendToLog(logs.get(4), String.format(TERMINATED, Util.getClusterId(jobIds.get(4))));
+			all.get(10, TimeUnit.SECONDS);
+			assertEquals(0, monitor.getTrackedCount());
+
+			// An empty group is complete right away.
+			assertTrue(monitor.trackAll(new ArrayList<String>()).isDone());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			monitor.shutdown();
+			for (String jobId : jobIds) {
+				new File(Util.getLogFromId(jobId)).delete();
+			}
+		}
+	}
+
+	/**
+	 * Test that listeners are told about every event of a tracked job, in order,
+	 * and that a failing listener doesn't keep the others from hearing about them.
+	 */
+	@Test
+	public void listenerTest() {
+		String cluster = "990005";
+		String jobId = cluster + ".0";
+		JobMonitor monitor = new JobMonitor(60 * 60 * 1000);
+		final List<JobEvent> events = new CopyOnWriteArrayList<JobEvent>();
+		monitor.addJobStateListener(new JobStateListener() {
+			public void jobStateChanged(JobEvent event) {
+				throw new RuntimeException("Expected failure from a faulty listener.");
+			}
+		});
+		monitor.addJobStateListener(new JobStateListener() {
+			public void jobStateChanged(JobEvent event) {
+				events.add(event);
+			}
+		});
+		try {
+			File log = createLog(jobId, String.format(SUBMITTED, cluster));
+			CompletableFuture<JobInfo> completion = monitor.track(jobId);
+			assertEquals(1, events.size());
+			assertEquals(JobEventType.SUBMIT, events.get(0).getType());
+			assertEquals(jobId, events.get(0).getJobId());
+			assertEquals("Job submitted from host: <134.192.146.203:35732>", events.get(0).getDescription());
+
+			appendToLog(log, String.format(HELD_AND_RELEASED, cluster) + String.format(TERMINATED, cluster));
+			monitor.pollAll();
+			completion.get(10, TimeUnit.SECONDS);
+
+			JobEventType[] expected = { JobEventType.SUBMIT, JobEventType.EXECUTE, JobEventType.JOB_EVICTED,
+					JobEventType.JOB_HELD, JobEventType.JOB_RELEASED, JobEventType.JOB_TERMINATED };
+			assertEquals(expected.length, events.size());
+			for (int index = 0; index < expected.length; index++) {
+				assertEquals(expected[index], events.get(index).getType());
+				assertEquals(990005, events.get(index).getCluster());
+			}
+			assertTrue(events.get(5).getType().isTerminal());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			monitor.shutdown();
+			new File(Util.getLogFromId(jobId)).delete();
+		}
+	}
+
+	/**
+	 * Test that the jobs of a {@link SharedJobLog} are told apart by their event
+	 * headers, and that a job with a log of its own is still followed through it.
+	 */
+	@Test
+	public void sharedLogTest() {
+		File shared = new File(Util.TMP, "condor_drmaa_shared_test.log");
+		String ownJobId = "990022.0";
+		SharedJobLog sharedLog = new SharedJobLog(shared);
+		JobMonitor monitor = new JobMonitor(60 * 60 * 1000, null, sharedLog);
+		final List<JobEvent> events = new CopyOnWriteArrayList<JobEvent>();
+		monitor.addJobStateListener(new JobStateListener() {
+			public void jobStateChanged(JobEvent event) {
+				events.add(event);
+			}
+		});
+		try {
+			shared.delete();
+			// Nothing has been written yet.
+			assertTrue(sharedLog.read().isEmpty());
+			appendToLog(shared, String.format(SUBMITTED, "990020") +
+					String.format(SUBMITTED, "990020").replace(".000.000)", ".001.000)") +
+					String.format(SUBMITTED, "990021"));
+			File ownLog = createLog(ownJobId, String.format(SUBMITTED, "990022"));
+
+			CompletableFuture<JobInfo> first = monitor.track("990020.0");
+			CompletableFuture<JobInfo> second = monitor.track("990020.1", false);
+			CompletableFuture<JobInfo> third = monitor.track("990021.0", false);
+			CompletableFuture<JobInfo> own = monitor.track(ownJobId);
+			assertEquals(3, sharedLog.getJobCount());
+			assertEquals(4, events.size());
+			assertTrue(sharedLog.contains("990020.1"));
+			assertNull(sharedLog.getJobInfo("990022.0"));
+
+			appendToLog(shared, String.format(TERMINATED, "990020").replace(".000.000)", ".001.000)") +
+					String.format(TERMINATED, "990021").replace("return value 7", "return value 3"));
+			monitor.pollAll();
+			assertEquals(7, second.get(10, TimeUnit.SECONDS).getExitStatus());
+			assertEquals(3, third.get(10, TimeUnit.SECONDS).getExitStatus());
+			assertFalse(first.isDone());
+			// The shared log forgets the jobs whose end has been handed on.
+			assertEquals(1, sharedLog.getJobCount());
+			assertFalse(sharedLog.contains("990020.1"));
+
+			// Jobs whose events were read before they were tracked are noticed too.
+			appendToLog(shared, String.format(TERMINATED, "990020"));
+			sharedLog.read();
+			monitor.untrack("990020.0");
+			assertTrue(monitor.track("990020.0", false).isDone());
+
+			appendToLog(ownLog, String.format(TERMINATED, "990022"));
+			monitor.pollAll();
+			assertTrue(own.get(10, TimeUnit.SECONDS).hasExited());
+			assertEquals(0, sharedLog.getJobCount());
+			assertEquals(8, events.size());
+
+			// Each read reports the jobs that had events, once.
+			SharedJobLog reader = new SharedJobLog(shared);
+			assertEquals(Arrays.asList("990020.0", "990020.1", "990021.0"), reader.read());
+			assertTrue(reader.read().isEmpty());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			monitor.shutdown();
+			shared.delete();
+			new File(Util.getLogFromId(ownJobId)).delete();
+		}
+	}
+
+	/**
+	 * Test that a {@link LogWatcher} gets a finished job noticed long before the
+	 * monitor would have polled its log.
+	 */
+	@Test
+	public void watcherTest() {
+		String cluster = "990004";
+		String jobId = cluster + ".0";
+		assertEquals(jobId, Util.getIdFromLogName(new File(Util.getLogFromId(jobId)).getName()));
+
+		JobMonitor monitor = new JobMonitor(60 * 60 * 1000);
+		monitor.start();
+		LogWatcher watcher = new LogWatcher(new File(Util.TMP), monitor);
+		try {
+			watcher.start();
+			File log = createLog(jobId, String.format(SUBMITTED, cluster));
+			CompletableFuture<JobInfo> completion = monitor.track(jobId);
+			assertFalse(completion.isDone());
+
+			appendToLog(log, String.format(TERMINATED, cluster));
+			JobInfo info = completion.get(30, TimeUnit.SECONDS);
+			assertTrue(info.hasExited());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			watcher.shutdown();
+			monitor.shutdown();
+			new File(Util.getLogFromId(jobId)).delete();
+		}
+	}
+
+	/**
+	 * Test that tracking a job without a log fails.
+	 */
+	@Test(expected=InvalidJobException.class)
+	public void missingLogTest() throws Exception {
+		JobMonitor monitor = new JobMonitor(50);
+		try {
+			monitor.track("990003.0");
+		} finally {
+			monitor.shutdown();
+		}
+	}
+
+	/**
+	 * Test that a job can be tracked before its log exists, as happens right
+	 * after a submission, and that the log is picked up once it appears. The
+	 * log of a job that nobody waits on is still only read from where the last
+	 * poll stopped, so each event is reported once and what was read before
+	 * isn't read again.
+	 */
+	@Test
+	public void lateLogTest() {
+		String cluster = "990006";
+		String jobId = cluster + ".0";
+		JobMonitor monitor = new JobMonitor(60 * 60 * 1000);
+		final List<JobEvent> events = new CopyOnWriteArrayList<JobEvent>();
+		monitor.addJobStateListener(new JobStateListener() {
+			public void jobStateChanged(JobEvent event) {
+				events.add(event);
+			}
+		});
+		try {
+			new File(Util.getLogFromId(jobId)).delete();
+			CompletableFuture<JobInfo> completion = monitor.track(jobId, false);
+			monitor.pollAll();
+			assertFalse(completion.isDone());
+			assertEquals(1, monitor.getTrackedCount());
+
+			File log = createLog(jobId, String.format(SUBMITTED, cluster));
+			monitor.pollAll();
+			assertEquals(1, events.size());
+			monitor.pollAll();
+			assertEquals(1, events.size());
+
+			// Blank out the event that has been read. Reading the log from the
+			// start again would lose the submission time.
+			String submitted = String.format(SUBMITTED, cluster);
+			RandomAccessFile file = new RandomAccessFile(log, "rw");
+			try {
+				file.write(submitted.substring(0, submitted.indexOf('\n')).replaceAll(".", " ").getBytes("ISO-8859-1"));
+			} finally {
+				file.close();
+			}
+			appendToLog(log, String.format(HELD_AND_RELEASED, cluster) + String.format(TERMINATED, cluster));
+			monitor.pollAll();
+			JobInfo info = completion.get(10, TimeUnit.SECONDS);
+			assertTrue(info.hasExited());
+			assertTrue(info.getResourceUsage().containsKey("submission_time"));
+			assertEquals(6, events.size());
+			assertEquals(JobEventType.SUBMIT, events.get(0).getType());
+			assertEquals(JobEventType.JOB_TERMINATED, events.get(5).getType());
+			assertEquals(0, monitor.getTrackedCount());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			monitor.shutdown();
+			new File(Util.getLogFromId(jobId)).delete();
+		}
+	}
+
+	/**
+	 * Test that a monitor with the listeners that a session always has, the
+	 * registry, the status cache and a publisher without subscribers, allocates
+	 * next to nothing for each event it reads, since nobody needs the events to
+	 * be decoded. The registry still follows the job through its holds.
+	 */
+	@Test
+	public void sessionAllocationTest() throws Exception {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+		allocations.setThreadAllocatedMemoryEnabled(true);
+
+		int firstCluster = 990040;
+		int rounds = 6;
+		int events = 20000;
+		JobMonitor monitor = new JobMonitor(60 * 60 * 1000);
+		JobRegistry registry = new JobRegistry();
+		JobStatusCache cache = new JobStatusCache(60 * 1000, new JobStatusCache.Query() {
+			public JobStatusMap query(Collection<String> clusterIds) throws CondorExecException {
+				throw new CondorExecException("No schedd here.");
+			}
+		});
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		JobEventPublisher publisher = new JobEventPublisher(executor, 16, 0);
+		monitor.addScannedEventListener(registry);
+		monitor.addScannedEventListener(cache);
+		monitor.addJobStateListener(publisher);
+		String[] jobIds = new String[rounds];
+		try {
+			for (int round = 0; round < rounds; round++) {
+				String cluster = Integer.toString(firstCluster + round);
+				jobIds[round] = cluster + ".0";
+				registry.register(1, Arrays.asList(jobIds[round]), Session.QUEUED_ACTIVE);
+				StringBuilder text = new StringBuilder(String.format(SUBMITTED, cluster));
+				for (int event = 0; event < events; event += 2) {
+					text.append("012 (" + cluster + ".000.000) 08/24 18:18:31 Job was held.\n" +
+							"\tvia condor_hold (by user drmaa)\n\tCode 1 Subcode 0\n...\n");
+					text.append("013 (" + cluster + ".000.000) 08/24 18:19:00 Job was released.\n" +
+							"\tvia condor_release (by user drmaa)\n...\n");
+				}
+				text.append("012 (" + cluster + ".000.000) 08/24 18:19:30 Job was held.\n" +
+						"\tThe system macro SYSTEM_PERIODIC_HOLD expression evaluated to true\n" +
+						"\tCode 26 Subcode 0\n...\n");
+				createLog(jobIds[round], text.toString());
+			}
+			// Warm up on all the logs but the last.
+			for (int round = 0; round < rounds - 1; round++) {
+				monitor.track(jobIds[round]);
+			}
+
+			long threadId = Thread.currentThread().getId();
+			long before = allocations.getThreadAllocatedBytes(threadId);
+			monitor.track(jobIds[rounds - 1]);
+			long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+			assertEquals(Session.SYSTEM_ON_HOLD, registry.getState(jobIds[rounds - 1]));
+			assertEquals(0, publisher.getDroppedCount());
+			long perEvent = allocated / events;
+			assertTrue("Allocated " + allocated + " bytes for " + events + " events", perEvent < 8);
+		} finally {
+			monitor.shutdown();
+			publisher.close();
+			executor.shutdownNow();
+			for (String jobId : jobIds) {
+				if (jobId != null) {
+					new File(Util.getLogFromId(jobId)).delete();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Create the log for a job where the session would expect to find it.
+	 */
+	private static File createLog(String jobId, String text) throws IOException {
+		File log = new File(Util.getLogFromId(jobId));
+		log.delete();
+		log.deleteOnExit();
+		appendToLog(log, text);
+		return log;
+	}
+
+	/*
+	 * Append some text to a log file.
+	 */
+	private static void appendToLog(File log, String text) throws IOException {
+		FileWriter writer = new FileWriter(log, true);
+		writer.write(text);
+		writer.close();
+	}
+}
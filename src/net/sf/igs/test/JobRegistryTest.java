@@ -0,0 +1,350 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.igs.JobEvent;
+import net.sf.igs.JobEventType;
+import net.sf.igs.JobIdRange;
+import net.sf.igs.JobIdRangeFile;
+import net.sf.igs.JobIdRangeList;
+import net.sf.igs.JobInfoImpl;
+import net.sf.igs.JobLogScanner;
+import net.sf.igs.JobRegistry;
+import net.sf.igs.Util;
+
+import org.ggf.drmaa.JobInfo;
+import org.ggf.drmaa.Session;
+import org.junit.Test;
+
+/**
+ * Test the {@link JobRegistry} class.
+ */
+public class JobRegistryTest {
+
+	/**
+	 * Test that registered jobs can be looked up by ID.
+	 */
+	@Test
+	public void registerTest() {
+		JobRegistry registry = new JobRegistry();
+		assertTrue(registry.isEmpty());
+
+		registry.register(1, new JobIdRangeList(new JobIdRange(357, 0, 999999)), Session.QUEUED_ACTIVE);
+		registry.register(2, Collections.singleton("358.0"), Session.USER_ON_HOLD);
+
+		assertFalse(registry.isEmpty());
+		assertTrue(registry.contains("357.123456"));
+		assertFalse(registry.contains("357.1000000"));
+		assertFalse(registry.contains("359.0"));
+		assertEquals(1, registry.getTemplateId("357.5"));
+		assertEquals(2, registry.getTemplateId("358.0"));
+		assertEquals(-1, registry.getTemplateId("359.0"));
+		assertEquals(Session.QUEUED_ACTIVE, registry.getState("357.5"));
+		assertEquals(Session.USER_ON_HOLD, registry.getState("358.0"));
+		assertEquals(Session.UNDETERMINED, registry.getState("359.0"));
+
+		registry.setState("357.5", Session.RUNNING);
+		assertEquals(Session.RUNNING, registry.getState("357.5"));
+		assertEquals(Session.QUEUED_ACTIVE, registry.getState("357.6"));
+
+		assertEquals(1000001, registry.getJobIds().size());
+		assertEquals(Arrays.asList("357", "358"), registry.getClusterIds());
+	}
+
+	/**
+	 * Test that the jobs of a batch submission, which share a cluster but are
+	 * registered one at a time and possibly from different templates, all end
+	 * up in the registry with their own templates and keep what was recorded
+	 * about the ones registered earlier.
+	 */
+	@Test
+	public void batchRegisterTest() {
+		JobRegistry registry = new JobRegistry();
+		registry.register(1, Collections.singleton("360.1"), Session.QUEUED_ACTIVE);
+		registry.register(2, Collections.singleton("360.3"), Session.USER_ON_HOLD);
+		JobInfo done = new JobInfoImpl("360.1", JobInfoImpl.EXITED_BIT, null, null);
+		registry.finish("360.1", done);
+		registry.setState("360.3", Session.RUNNING);
+
+		registry.register(1, Collections.singleton("360.0"), Session.QUEUED_ACTIVE);
+		for (int proc = 4; proc < 1000; proc++) {
+			registry.register(3, Collections.singleton("360." + proc), Session.QUEUED_ACTIVE);
+		}
+		registry.register(2, Collections.singleton("360.2"), Session.QUEUED_ACTIVE);
+
+		assertEquals(1, registry.getTemplateId("360.0"));
+		assertEquals(1, registry.getTemplateId("360.1"));
+		assertEquals(2, registry.getTemplateId("360.2"));
+		assertEquals(2, registry.getTemplateId("360.3"));
+		assertEquals(3, registry.getTemplateId("360.999"));
+		assertEquals(-1, registry.getTemplateId("360.1000"));
+		assertEquals(Session.DONE, registry.getState("360.1"));
+		assertSame(done, registry.getJobInfo("360.1"));
+		assertEquals(Session.RUNNING, registry.getState("360.3"));
+		assertEquals(1000, registry.getJobIds().size());
+		assertEquals("360.0", registry.getJobIds().get(0));
+
+		// Registering a job again doesn't reset it.
+		registry.register(1, Collections.singleton("360.3"), Session.QUEUED_ACTIVE);
+		assertEquals(Session.RUNNING, registry.getState("360.3"));
+		assertEquals(2, registry.getTemplateId("360.3"));
+
+		// A cluster whose jobs have all been reaped starts over.
+		for (String jobId : registry.getJobIds()) {
+			registry.reap(jobId);
+		}
+		assertTrue(registry.isEmpty());
+		registry.register(4, Collections.singleton("360.5"), Session.QUEUED_ACTIVE);
+		assertEquals(4, registry.getTemplateId("360.5"));
+		assertEquals(Arrays.asList("360.5"), registry.getJobIds());
+	}
+
+	/**
+	 * Test that finished jobs keep their {@link JobInfo} until they are reaped.
+	 */
+	@Test
+	public void finishAndReapTest() {
+		JobRegistry registry = new JobRegistry();
+		registry.register(1, new JobIdRangeList(new JobIdRange(42, 0, 4)), Session.QUEUED_ACTIVE);
+
+		JobInfo done = new JobInfoImpl("42.1", JobInfoImpl.EXITED_BIT, null, null);
+		JobInfo failed = new JobInfoImpl("42.2", JobInfoImpl.NEVERRAN_BIT, null, null);
+		registry.finish("42.1", done);
+		registry.finish("42.2", failed);
+		assertEquals(Session.DONE, registry.getState("42.1"));
+		assertEquals(Session.FAILED, registry.getState("42.2"));
+		assertSame(done, registry.getJobInfo("42.1"));
+		assertNull(registry.getJobInfo("42.0"));
+
+		// A cluster whose jobs have all finished has left the queue.
+		registry.register(1, Collections.singleton("43.0"), Session.QUEUED_ACTIVE);
+		assertEquals(Arrays.asList("42", "43"), registry.getUnfinishedClusterIds());
+		registry.finish("43.0", new JobInfoImpl("43.0", JobInfoImpl.EXITED_BIT, null, null));
+		assertEquals(Arrays.asList("42"), registry.getUnfinishedClusterIds());
+		assertEquals(Arrays.asList("42", "43"), registry.getClusterIds());
+		assertTrue(registry.reap("43.0"));
+
+		assertTrue(registry.reap("42.1"));
+		assertFalse(registry.reap("42.1"));
+		assertFalse(registry.contains("42.1"));
+		assertNull(registry.getJobInfo("42.1"));
+
+		// Finishing a reaped job doesn't bring it back.
+		registry.finish("42.1", done);
+		assertFalse(registry.contains("42.1"));
+
+		List<String> jobIds = registry.getJobIds();
+		assertEquals(Arrays.asList("42.0", "42.2", "42.3", "42.4"), jobIds);
+
+		for (String jobId : jobIds) {
+			registry.reap(jobId);
+		}
+		assertTrue(registry.isEmpty());
+		assertTrue(registry.getClusterIds().isEmpty());
+	}
+
+	/**
+	 * Test that finished jobs are handed out in the order they finished, once
+	 * each, skipping any that were reaped in the meantime.
+	 */
+	@Test
+	public void finishedQueueTest() throws InterruptedException {
+		JobRegistry registry = new JobRegistry();
+		registry.register(1, new JobIdRangeList(new JobIdRange(77, 0, 3)), Session.QUEUED_ACTIVE);
+		assertNull(registry.pollFinished(0, TimeUnit.SECONDS));
+
+		registry.finish("77.3", new JobInfoImpl("77.3", JobInfoImpl.EXITED_BIT, null, null));
+		registry.finish("77.1", new JobInfoImpl("77.1", JobInfoImpl.EXITED_BIT, null, null));
+		registry.finish("77.2", new JobInfoImpl("77.2", JobInfoImpl.EXITED_BIT, null, null));
+		// A second report of the same job is ignored.
+		registry.finish("77.3", new JobInfoImpl("77.3", JobInfoImpl.EXITED_BIT, null, null));
+		registry.reap("77.1");
+
+		assertEquals("77.3", registry.pollFinished(0, TimeUnit.SECONDS));
+		registry.reap("77.3");
+		assertEquals("77.2", registry.pollFinished(0, TimeUnit.SECONDS));
+		registry.reap("77.2");
+		assertNull(registry.pollFinished(100, TimeUnit.MILLISECONDS));
+		assertFalse(registry.isEmpty());
+	}
+
+	/**
+	 * Test that asynchronous waiters are handed finished jobs, ahead of the
+	 * queue, and are released when the registry is closed.
+	 */
+	@Test
+	public void nextFinishedTest() throws Exception {
+		JobRegistry registry = new JobRegistry();
+		registry.register(1, new JobIdRangeList(new JobIdRange(88, 0, 3)), Session.QUEUED_ACTIVE);
+
+		// A job that had already finished is handed out right away.
+		registry.finish("88.0", new JobInfoImpl("88.0", JobInfoImpl.EXITED_BIT, null, null));
+		CompletableFuture<String> first = registry.nextFinished();
+		assertTrue(first.isDone());
+		assertEquals("88.0", first.get());
+
+		// Otherwise the waiters are served in order as jobs finish.
+		CompletableFuture<String> second = registry.nextFinished();
+		CompletableFuture<String> third = registry.nextFinished();
+		assertFalse(second.isDone());
+		registry.finish("88.2", new JobInfoImpl("88.2", JobInfoImpl.EXITED_BIT, null, null));
+		registry.finish("88.1", new JobInfoImpl("88.1", JobInfoImpl.EXITED_BIT, null, null));
+		assertEquals("88.2", second.get(0, TimeUnit.SECONDS));
+		assertEquals("88.1", third.get(0, TimeUnit.SECONDS));
+		// Jobs handed to waiters aren't queued as well.
+		assertNull(registry.pollFinished(0, TimeUnit.SECONDS));
+
+		// A waiter that was cancelled is skipped, and a job that is put back
+		// goes ahead of those that finished after it.
+		CompletableFuture<String> cancelled = registry.nextFinished();
+		cancelled.cancel(false);
+		registry.finish("88.3", new JobInfoImpl("88.3", JobInfoImpl.EXITED_BIT, null, null));
+		registry.putBack("88.2");
+		assertEquals("88.2", registry.pollFinished(0, TimeUnit.SECONDS));
+		assertEquals("88.3", registry.pollFinished(0, TimeUnit.SECONDS));
+		registry.reap("88.1");
+		registry.putBack("88.1");
+		assertNull(registry.pollFinished(0, TimeUnit.SECONDS));
+
+		CompletableFuture<String> fourth = registry.nextFinished();
+		registry.close();
+		try {
+			fourth.get(0, TimeUnit.SECONDS);
+			fail("The waiter should have been released.");
+		} catch (ExecutionException ee) {
+			assertTrue(ee.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	/**
+	 * Test that job events move the jobs through the DRMAA states, and that
+	 * finished jobs stay finished.
+	 */
+	@Test
+	public void stateMachineTest() {
+		JobRegistry registry = new JobRegistry();
+		registry.register(1, new JobIdRangeList(new JobIdRange(66, 0, 1)), Session.QUEUED_ACTIVE);
+		registry.register(2, Collections.singleton("67.0"), Session.USER_ON_HOLD);
+
+		registry.update(event(JobEventType.SUBMIT, 66, 0));
+		assertEquals(Session.QUEUED_ACTIVE, registry.getState("66.0"));
+		registry.update(event(JobEventType.EXECUTE, 66, 0));
+		assertEquals(Session.RUNNING, registry.getState("66.0"));
+		assertEquals(Session.QUEUED_ACTIVE, registry.getState("66.1"));
+		registry.update(event(JobEventType.IMAGE_SIZE, 66, 0));
+		assertEquals(Session.RUNNING, registry.getState("66.0"));
+		registry.update(event(JobEventType.JOB_SUSPENDED, 66, 0));
+		assertEquals(Session.SYSTEM_SUSPENDED, registry.getState("66.0"));
+		registry.update(event(JobEventType.JOB_UNSUSPENDED, 66, 0));
+		assertEquals(Session.RUNNING, registry.getState("66.0"));
+		registry.update(event(JobEventType.JOB_EVICTED, 66, 0));
+		assertEquals(Session.QUEUED_ACTIVE, registry.getState("66.0"));
+
+		// Held by the user, or by Condor.
+		JobEvent held = event(JobEventType.JOB_HELD, 66, 1);
+		registry.update(new JobEvent.Held(held, "via condor_hold (by user condor)", 1, 0));
+		assertEquals(Session.USER_ON_HOLD, registry.getState("66.1"));
+		registry.update(event(JobEventType.JOB_RELEASED, 66, 1));
+		assertEquals(Session.QUEUED_ACTIVE, registry.getState("66.1"));
+		registry.update(new JobEvent.Held(held, "Error from starter", 12, 2));
+		assertEquals(Session.SYSTEM_ON_HOLD, registry.getState("66.1"));
+		registry.update(new JobEvent.Held(held, "via condor_hold (by user condor)", -1, -1));
+		assertEquals(Session.USER_ON_HOLD, registry.getState("66.1"));
+
+		// A job submitted on hold stays on hold until it is released.
+		registry.update(event(JobEventType.SUBMIT, 67, 0));
+		assertEquals(Session.USER_ON_HOLD, registry.getState("67.0"));
+
+		registry.finish("66.0", new JobInfoImpl("66.0", JobInfoImpl.EXITED_BIT, null, null));
+		registry.update(event(JobEventType.EXECUTE, 66, 0));
+		assertEquals(Session.DONE, registry.getState("66.0"));
+
+		// Events for jobs that aren't in the registry are ignored.
+		registry.update(event(JobEventType.EXECUTE, 68, 0));
+		assertFalse(registry.contains("68.0"));
+	}
+
+	/**
+	 * Test that events are applied the same way when they are handed over by
+	 * a scanner, without being decoded, as when they are decoded.
+	 */
+	@Test
+	public void scannedEventTest() {
+		JobRegistry registry = new JobRegistry();
+		registry.register(1, new JobIdRangeList(new JobIdRange(69, 0, 0)), Session.QUEUED_ACTIVE);
+		String[] events = {
+			"001 (069.000.000) 08/24 18:18:01 Job executing on host: <134.192.146.203:52538>\n...\n",
+			"012 (069.000.000) 08/24 18:18:31 Job was held.\n\tvia condor_hold (by user condor)\n\tCode 1 Subcode 0\n...\n",
+			"013 (069.000.000) 08/24 18:19:00 Job was released.\n\tvia condor_release (by user condor)\n...\n",
+			"012 (069.000.000) 08/24 18:19:31 Job was held.\n\tError from starter\n\tCode 12 Subcode 2\n...\n",
+			"012 (069.000.000) 08/24 18:19:32 Job was held.\n\tvia condor_hold (by user condor)\n...\n",
+			"012 (069.000.000) 08/24 18:19:33 Job was held.\n\tThe job exceeded its memory limit\n...\n",
+			"012 (069.000.000) 08/24 18:19:34 Job was held.\n...\n",
+		};
+		int[] states = { Session.RUNNING, Session.USER_ON_HOLD, Session.QUEUED_ACTIVE, Session.SYSTEM_ON_HOLD,
+				Session.USER_ON_HOLD, Session.SYSTEM_ON_HOLD, Session.USER_ON_HOLD };
+		JobLogScanner scanner = new JobLogScanner();
+		for (int index = 0; index < events.length; index++) {
+			scanner.reset(ByteBuffer.wrap(JobLogScanner.bytes(events[index])));
+			assertTrue(scanner.next());
+			registry.eventScanned(scanner);
+			assertEquals(events[index], states[index], registry.getState("69.0"));
+		}
+	}
+
+	private static JobEvent event(JobEventType type, int cluster, int proc) {
+		return new JobEvent(type, cluster, proc, 0, new Date(), type.name());
+	}
+
+	/**
+	 * Test that submissions are written to the session directory.
+	 */
+	@Test
+	public void persistenceTest() throws IOException {
+		File sessionDir = new File(Util.TMP, "condor-jdrmaa-registry-test");
+		sessionDir.mkdirs();
+		try {
+			JobRegistry registry = new JobRegistry(sessionDir);
+			registry.register(3, new JobIdRangeList(new JobIdRange(500, 0, 9)), Session.QUEUED_ACTIVE);
+			registry.register(3, Collections.singleton("501.0"), Session.QUEUED_ACTIVE);
+			registry.close();
+
+			List<JobIdRange> ranges = JobIdRangeFile.read(new File(sessionDir, "3"));
+			assertEquals(Arrays.asList(new JobIdRange(500, 0, 9), new JobIdRange(501, 0, 0)), ranges);
+		} finally {
+			Util.deleteDir(sessionDir);
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.igs.CondorExecException;
+import net.sf.igs.JobEvent;
+import net.sf.igs.JobEventType;
+import net.sf.igs.JobStatusCache;
+import net.sf.igs.JobStatusMap;
+
+import org.ggf.drmaa.Session;
+import org.junit.Test;
+
+/**
+ * Test the {@link JobStatusCache} class, with a fake schedd.
+ */
+public class JobStatusCacheTest {
+
+	/*
+	 * Says every job of the clusters it is asked about, procs 0 to 9, is running.
+	 */
+	private static class FakeQuery implements JobStatusCache.Query {
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch entered = new CountDownLatch(1);
+		volatile CountDownLatch release = null;
+		volatile boolean fail = false;
+
+		public JobStatusMap query(Collection<String> clusterIds) throws CondorExecException {
+			calls.incrementAndGet();
+			entered.countDown();
+			try {
+				if (release != null && ! release.await(10, TimeUnit.SECONDS)) {
+					throw new CondorExecException("Not released.");
+				}
+			} catch (InterruptedException ie) {
+				throw new CondorExecException("Interrupted", ie);
+			}
+			if (fail) {
+				throw new CondorExecException("The schedd is down.");
+			}
+			JobStatusMap statuses = new JobStatusMap();
+			for (String clusterId : clusterIds) {
+				for (int proc = 0; proc < 10; proc++) {
+					statuses.put(Integer.parseInt(clusterId), proc, Session.RUNNING);
+				}
+			}
+			return statuses;
+		}
+	}
+
+	/**
+	 * Test that threads asking at the same time share a single query.
+	 */
+	@Test
+	public void singleFlightTest() throws Exception {
+		final FakeQuery query = new FakeQuery();
+		query.release = new CountDownLatch(1);
+		final JobStatusCache cache = new JobStatusCache(0, query);
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		try {
+			final AtomicInteger started = new AtomicInteger();
+			Callable<Integer> ask = new Callable<Integer>() {
+				public Integer call() throws Exception {
+					String jobId = "700." + started.getAndIncrement();
+					return cache.getStatus(jobId);
+				}
+			};
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			futures.add(threads.submit(ask));
+			assertTrue(query.entered.await(10, TimeUnit.SECONDS));
+			for (int count = 0; count < 7; count++) {
+				futures.add(threads.submit(ask));
+			}
+			// Give the others time to start waiting for the query under way.
+			while (started.get() < 8) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(100);
+			query.release.countDown();
+
+			for (Future<Integer> future : futures) {
+				assertEquals(Session.RUNNING, future.get(10, TimeUnit.SECONDS).intValue());
+			}
+			assertEquals(1, query.calls.get());
+
+			// With no time to live, the next thread asks again.
+			assertEquals(Session.RUNNING, cache.getStatus("700.3"));
+			assertEquals(2, cache.getQueryCount());
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	/**
+	 * Test that answers are kept for their time to live, unless an event for
+	 * the cluster comes along, and that finished jobs are never asked about.
+	 */
+	@Test
+	public void ttlAndEventTest() throws Exception {
+		FakeQuery query = new FakeQuery();
+		JobStatusCache cache = new JobStatusCache(60 * 1000, query);
+		JobStatusMap statuses = cache.getStatuses(Arrays.asList("710.0", "710.5", "711.0", "710.99"));
+		assertEquals(3, statuses.size());
+		assertEquals(JobStatusMap.ABSENT, statuses.get("710.99"));
+		assertEquals(Session.RUNNING, cache.getStatus("711.0"));
+		assertEquals(1, query.calls.get());
+
+		// Only the missing cluster is asked about.
+		cache.getStatuses(Arrays.asList("710.1", "712.0"));
+		assertEquals(2, query.calls.get());
+
+		cache.jobStateChanged(new JobEvent(JobEventType.JOB_HELD, 710, 1, 0, new Date(), "held"));
+		cache.getStatus("710.1");
+		assertEquals(3, query.calls.get());
+
+		JobEvent terminated = new JobEvent(JobEventType.JOB_TERMINATED, 713, 0, 0, new Date(), "done");
+		cache.jobStateChanged(new JobEvent.Terminated(terminated, true, 0, -1, null, 0, 0));
+		cache.jobStateChanged(new JobEvent(JobEventType.JOB_ABORTED, 713, 1, 0, new Date(), "removed"));
+		assertEquals(Session.DONE, cache.getStatus("713.0"));
+		assertEquals(Session.FAILED, cache.getStatus("713.1"));
+		assertEquals(3, query.calls.get());
+	}
+
+	/**
+	 * Test that only a bounded number of finished jobs is remembered, the most
+	 * recent ones, and that the others are asked about again.
+	 */
+	@Test
+	public void finishedLimitTest() throws Exception {
+		FakeQuery query = new FakeQuery();
+		JobStatusCache cache = new JobStatusCache(0, 4, query);
+		for (int cluster = 730; cluster < 740; cluster++) {
+			cache.jobStateChanged(new JobEvent(JobEventType.JOB_ABORTED, cluster, 0, 0, new Date(), "removed"));
+		}
+		// The current generation and the full one before it are remembered.
+		for (int cluster = 734; cluster < 740; cluster++) {
+			assertEquals(Session.FAILED, cache.getStatus(cluster + ".0"));
+		}
+		assertEquals(0, query.calls.get());
+
+		// The ones before them are forgotten, so the schedd is asked again.
+		assertEquals(Session.RUNNING, cache.getStatus("733.0"));
+		assertEquals(1, query.calls.get());
+	}
+
+	/**
+	 * Test that failed queries are reported and not cached.
+	 */
+	@Test
+	public void failureTest() throws Exception {
+		FakeQuery query = new FakeQuery();
+		JobStatusCache cache = new JobStatusCache(60 * 1000, query);
+		query.fail = true;
+		try {
+			cache.getStatus("720.0");
+			fail("The query should have failed.");
+		} catch (CondorExecException cee) {
+			assertEquals("The schedd is down.", cee.getMessage());
+		}
+		query.fail = false;
+		assertEquals(Session.RUNNING, cache.getStatus("720.0"));
+		assertEquals(2, query.calls.get());
+	}
+}
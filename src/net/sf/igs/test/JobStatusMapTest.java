@@ -0,0 +1,94 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.sf.igs.CondorExec;
+import net.sf.igs.JobStatusMap;
+import net.sf.igs.Util;
+
+import org.ggf.drmaa.Session;
+import org.junit.Test;
+
+/**
+ * Test the {@link JobStatusMap} class, and the reading of condor_q output into it.
+ */
+public class JobStatusMapTest {
+
+	/**
+	 * Test that states are stored and found by job.
+	 */
+	@Test
+	public void mapTest() {
+		JobStatusMap map = new JobStatusMap();
+		for (int proc = 0; proc < 10000; proc++) {
+			map.put(555, proc, Session.RUNNING);
+		}
+		map.put(556, 0, Session.USER_ON_HOLD);
+		map.put(555, 7, Session.DONE);
+		assertEquals(10001, map.size());
+		assertEquals(Session.DONE, map.get("555.7"));
+		assertEquals(Session.RUNNING, map.get(555, 9999));
+		assertEquals(Session.USER_ON_HOLD, map.get(Util.getJobKey("556.0")));
+		assertEquals(JobStatusMap.ABSENT, map.get("555.10000"));
+		assertEquals(JobStatusMap.ABSENT, map.get("not a job"));
+		assertFalse(map.contains("557.0"));
+
+		long[] keys = map.getKeys();
+		Arrays.sort(keys);
+		assertEquals(10001, keys.length);
+		assertEquals(Util.getJobKey("556.0"), keys[10000]);
+	}
+
+	/**
+	 * Test that the output of 'condor_q -json' and 'condor_history -json' is read.
+	 */
+	@Test
+	public void readJobStatusTest() throws IOException {
+		String output =
+			"[\n" +
+			"{\"ClusterId\": 600, \"ProcId\": 0, \"JobStatus\": 1},\n" +
+			"{\"ClusterId\": 600, \"ProcId\": 1, \"JobStatus\": 2},\n" +
+			"{\"ClusterId\": 600, \"ProcId\": 2, \"JobStatus\": 5, \"HoldReasonCode\": 1},\n" +
+			"{\"ClusterId\": 600, \"ProcId\": 3, \"JobStatus\": 5, \"HoldReasonCode\": 12},\r\n" +
+			"{\"ClusterId\": 601, \"ProcId\": 0, \"JobStatus\": 7},\n" +
+			"{\"Garbage\": \"ClassAd\"},\n" +
+			"{\"ClusterId\": 601, \"ProcId\": 1, \"JobStatus\": 6},\n" +
+			"{\"ClusterId\": 601, \"ProcId\": 2, \"JobStatus\": 4, \"ExitBySignal\": false},\n" +
+			"{\"ClusterId\": 601, \"ProcId\": 3, \"JobStatus\": 4, \"ExitBySignal\": true}\n" +
+			"]\n";
+		JobStatusMap map = new JobStatusMap();
+		CondorExec.readJobStatus(new ByteArrayInputStream(output.getBytes("US-ASCII")), map);
+		assertEquals(8, map.size());
+		assertEquals(Session.QUEUED_ACTIVE, map.get("600.0"));
+		assertEquals(Session.RUNNING, map.get("600.1"));
+		assertEquals(Session.USER_ON_HOLD, map.get("600.2"));
+		assertEquals(Session.SYSTEM_ON_HOLD, map.get("600.3"));
+		assertEquals(Session.SYSTEM_SUSPENDED, map.get("601.0"));
+		assertEquals(Session.RUNNING, map.get("601.1"));
+		assertEquals(Session.DONE, map.get("601.2"));
+		assertEquals(Session.FAILED, map.get("601.3"));
+		assertTrue(map.contains("601.2"));
+	}
+}
@@ -0,0 +1,136 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import net.sf.igs.JobLogParser;
+import net.sf.igs.LogTimestampDecoder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the {@link LogTimestampDecoder} class.
+ */
+public class LogTimestampDecoderTest {
+
+	private static final ZoneId UTC = ZoneOffset.UTC;
+	// 2026-10-17 12:00:00 UTC
+	private static final long REFERENCE = millis(UTC, 2026, 10, 17, 12, 0, 0);
+	private static File testDir;
+
+	/**
+	 * Checks whether the "test.data.dir" system property has been properly set.
+	 *
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void setup() throws Exception {
+		String testDataDir = System.getProperty("test.data.dir");
+		if (testDataDir == null) {
+			throw new Exception("Please define the test.data.dir system property.");
+		}
+		testDir = new File(testDataDir);
+	}
+
+	/**
+	 * Test that "MM/dd" times are put in the right year, including across New Year.
+	 */
+	@Test
+	public void yearInferenceTest() {
+		LogTimestampDecoder decoder = new LogTimestampDecoder(UTC, REFERENCE);
+		assertEquals(millis(UTC, 2026, 8, 24, 18, 17, 56), decoder.parse("08/24 18:17:56"));
+
+		// A day that hasn't come yet this year must be from last year.
+		decoder = new LogTimestampDecoder(UTC, REFERENCE);
+		assertEquals(millis(UTC, 2025, 12, 31, 23, 58, 10), decoder.parse("12/31 23:58:10"));
+		assertEquals(millis(UTC, 2026, 1, 1, 0, 0, 5), decoder.parse("01/01 00:00:05"));
+		assertEquals(millis(UTC, 2026, 1, 1, 0, 5, 0), decoder.parse("01/01 00:05:00"));
+
+		// Starting over forgets the year.
+		decoder.reset();
+		assertEquals(millis(UTC, 2026, 10, 17, 11, 59, 59), decoder.parse("10/17 11:59:59"));
+		decoder.reset();
+		assertEquals(millis(UTC, 2025, 10, 17, 12, 0, 1), decoder.parse("10/17 12:00:01"));
+
+		// A year in the log sets the year for the times without one.
+		decoder.reset();
+		assertEquals(millis(UTC, 2019, 12, 30, 8, 0, 0), decoder.parse("2019-12-30T08:00:00"));
+		assertEquals(millis(UTC, 2020, 1, 2, 9, 0, 0), decoder.parse("01/02 09:00:00"));
+	}
+
+	/**
+	 * Test that both forms of time agree with java.time in a zone with daylight
+	 * saving, on ordinary days and on the days of the transitions.
+	 */
+	@Test
+	public void zoneTest() {
+		ZoneId berlin = ZoneId.of("Europe/Berlin");
+		LogTimestampDecoder decoder = new LogTimestampDecoder(berlin, REFERENCE);
+		assertEquals(millis(berlin, 2024, 3, 31, 1, 30, 0), decoder.parse("2024-03-31 01:30:00"));
+		assertEquals(millis(berlin, 2024, 3, 31, 3, 30, 0), decoder.parse("2024-03-31T03:30:00"));
+		assertEquals(millis(berlin, 2024, 10, 27, 1, 30, 0), decoder.parse("10/27 01:30:00"));
+		assertEquals(millis(berlin, 2024, 10, 27, 4, 0, 0), decoder.parse("10/27 04:00:00"));
+
+		ZoneId newYork = ZoneId.of("America/New_York");
+		decoder = new LogTimestampDecoder(newYork, REFERENCE);
+		Random random = new Random(17);
+		for (int sample = 0; sample < 10000; sample++) {
+			LocalDateTime time = LocalDateTime.of(2020, 1, 1, 0, 0).plusSeconds(random.nextInt(5 * 365 * 24 * 3600));
+			String text = String.format("%04d-%02d-%02d %02d:%02d:%02d", time.getYear(), time.getMonthValue(),
+					time.getDayOfMonth(), time.getHour(), time.getMinute(), time.getSecond());
+			assertEquals(text, time.atZone(newYork).toInstant().toEpochMilli(), decoder.parse(text));
+		}
+	}
+
+	/**
+	 * Test that things that aren't times are rejected.
+	 */
+	@Test
+	public void invalidTest() {
+		LogTimestampDecoder decoder = new LogTimestampDecoder(UTC, REFERENCE);
+		assertEquals(LogTimestampDecoder.NO_TIME, decoder.parse(""));
+		assertEquals(LogTimestampDecoder.NO_TIME, decoder.parse("Job terminated."));
+		assertEquals(LogTimestampDecoder.NO_TIME, decoder.parse("13/01 00:00:00"));
+		assertEquals(LogTimestampDecoder.NO_TIME, decoder.parse("08/24 25:00:00"));
+		assertEquals(LogTimestampDecoder.NO_TIME, decoder.parse("2023-02-29 00:00:00"));
+		assertEquals(LogTimestampDecoder.NO_TIME, decoder.parse("2024-0x-01 00:00:00"));
+		assertEquals(millis(UTC, 2024, 2, 29, 0, 0, 0), decoder.parse("2024-02-29 00:00:00"));
+	}
+
+	/**
+	 * Test that a parsed log that runs over New Year has its times in order.
+	 */
+	@Test
+	public void newYearLogTest() throws Exception {
+		JobLogParser parser = new JobLogParser(new File(testDir, "events.log"));
+		parser.parse();
+		long elapsed = parser.getEndTime().getTime() - parser.getSubmitTime().getTime();
+		assertEquals((6 * 60 + 50) * 1000L, elapsed);
+	}
+
+	private static long millis(ZoneId zone, int year, int month, int day, int hour, int minute, int second) {
+		return LocalDateTime.of(year, month, day, hour, minute, second).atZone(zone).toInstant().toEpochMilli();
+	}
+}
@@ -0,0 +1,194 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.igs.JobIdRange;
+import net.sf.igs.SubmitBatcher;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link SubmitBatcher} class with a fake {@link SubmitBatcher.Submitter},
+ * so Condor is not needed to run these tests.
+ */
+public class SubmitBatcherTest {
+
+	/**
+	 * Test that submissions arriving together go out as one batch and that
+	 * every caller gets the ID of its own job.
+	 */
+	@Test
+	public void coalesceTest() {
+		final List<List<String>> batches = new ArrayList<List<String>>();
+		final AtomicInteger clusters = new AtomicInteger(500);
+		SubmitBatcher batcher = new SubmitBatcher(new SubmitBatcher.Submitter() {
+			public List<JobIdRange> submitBatch(List<String> descriptions) {
+				synchronized (batches) {
+					batches.add(descriptions);
+				}
+				JobIdRange range = new JobIdRange(clusters.getAndIncrement(), 0, descriptions.size() - 1);
+				return Collections.singletonList(range);
+			}
+		}, 500, 10);
+		batcher.start();
+		try {
+			Map<String, CompletableFuture<String>> submissions = new HashMap<String, CompletableFuture<String>>();
+			for (int job = 0; job < 25; job++) {
+				String description = "Executable=/bin/job" + job + "\n";
+				submissions.put(description, batcher.submit(description));
+			}
+
+			for (String description : submissions.keySet()) {
+				String jobId = submissions.get(description).get(10, TimeUnit.SECONDS);
+				String cluster = jobId.substring(0, jobId.indexOf('.'));
+				int proc = Integer.parseInt(jobId.substring(jobId.indexOf('.') + 1));
+
+				// The job ID must point at this caller's description in the batch.
+				List<String> batch = batches.get(Integer.parseInt(cluster) - 500);
+				assertEquals(description, batch.get(proc));
+			}
+
+			// The maximum batch size was respected.
+			assertEquals(3, batches.size());
+			assertEquals(10, batches.get(0).size());
+			assertEquals(10, batches.get(1).size());
+			assertEquals(5, batches.get(2).size());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			batcher.shutdown();
+		}
+	}
+
+	/**
+	 * Test that a failed submission is reported to every caller in the batch.
+	 */
+	@Test
+	public void failureTest() {
+		SubmitBatcher batcher = new SubmitBatcher(new SubmitBatcher.Submitter() {
+			public List<JobIdRange> submitBatch(List<String> descriptions) throws Exception {
+				throw new Exception("condor_submit failed.");
+			}
+		}, 100, 10);
+		batcher.start();
+		try {
+			List<CompletableFuture<String>> jobIds = new ArrayList<CompletableFuture<String>>();
+			jobIds.add(batcher.submit("Executable=/bin/true\n"));
+			jobIds.add(batcher.submit("Executable=/bin/false\n"));
+			for (CompletableFuture<String> jobId : jobIds) {
+				try {
+					jobId.get(10, TimeUnit.SECONDS);
+					fail("The submission should have failed.");
+				} catch (ExecutionException ee) {
+					assertTrue(ee.getCause().getMessage().contains("condor_submit"));
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			batcher.shutdown();
+		}
+	}
+
+	/**
+	 * Test that submissions made after the batcher has been shut down fail
+	 * right away instead of waiting for a batch that will never be formed.
+	 */
+	@Test
+	public void shutdownTest() throws Exception {
+		SubmitBatcher batcher = new SubmitBatcher(new SubmitBatcher.Submitter() {
+			public List<JobIdRange> submitBatch(List<String> descriptions) {
+				return Collections.singletonList(new JobIdRange(600, 0, descriptions.size() - 1));
+			}
+		}, 100, 10);
+		batcher.start();
+		batcher.shutdown();
+
+		CompletableFuture<String> jobId = batcher.submit("Executable=/bin/true\n");
+		assertTrue(jobId.isCompletedExceptionally());
+		try {
+			jobId.get(10, TimeUnit.SECONDS);
+			fail("The submission should have failed.");
+		} catch (ExecutionException ee) {
+			assertTrue(ee.getCause() instanceof IllegalStateException);
+		}
+
+		// Starting it again doesn't bring it back.
+		batcher.start();
+		assertTrue(batcher.submit("Executable=/bin/true\n").isCompletedExceptionally());
+	}
+
+	/**
+	 * Test that shutting down a batcher whose submitter is interrupted stops
+	 * its thread, rather than the interrupt being swallowed with the failure.
+	 */
+	@Test
+	public void interruptTest() throws Exception {
+		final CountDownLatch entered = new CountDownLatch(1);
+		SubmitBatcher batcher = new SubmitBatcher(new SubmitBatcher.Submitter() {
+			public List<JobIdRange> submitBatch(List<String> descriptions) throws Exception {
+				entered.countDown();
+				Thread.sleep(60 * 1000);
+				return Collections.emptyList();
+			}
+		}, 10, 10);
+		batcher.start();
+		CompletableFuture<String> jobId = batcher.submit("Executable=/bin/true\n");
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+		batcher.shutdown();
+		try {
+			jobId.get(10, TimeUnit.SECONDS);
+			fail("The submission should have failed.");
+		} catch (ExecutionException ee) {
+			assertTrue(ee.getCause() instanceof InterruptedException);
+		}
+
+		// The batching thread has gone.
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (threadNamed("condor-jdrmaa-submitter") && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertFalse(threadNamed("condor-jdrmaa-submitter"));
+	}
+
+	private static boolean threadNamed(String name) {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals(name) && thread.isAlive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,94 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.igs.LogTimestampDecoder;
+
+/**
+ * Compares the {@link LogTimestampDecoder} with the way job log times used to be
+ * parsed, with a new {@link SimpleDateFormat} for each time. Run it with the
+ * number of times to parse, a million by default:
+ *
+ * <pre>
+ * java net.sf.igs.test.TimestampBenchmark 1000000
+ * </pre>
+ */
+public class TimestampBenchmark {
+
+	private static final Pattern pattern = Pattern.compile("\\d{2}/\\d{2} \\d{2}:\\d{2}:\\d{2}");
+
+	/**
+	 * Run the benchmark.
+	 *
+	 * @param args the number of times to parse, optionally
+	 */
+	public static void main(String[] args) {
+		int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+		String[] lines = new String[1440];
+		for (int minute = 0; minute < lines.length; minute++) {
+			lines[minute] = String.format("006 (357.000.000) 08/24 %02d:%02d:17 Image size of job updated: 7308",
+					minute / 60, minute % 60);
+		}
+
+		for (int round = 0; round < 3; round++) {
+			long checksum = 0;
+			long start = System.nanoTime();
+			for (int index = 0; index < count; index++) {
+				checksum += oldParseDate(lines[index % lines.length]).getTime();
+			}
+			long oldNanos = System.nanoTime() - start;
+
+			LogTimestampDecoder decoder = new LogTimestampDecoder();
+			start = System.nanoTime();
+			for (int index = 0; index < count; index++) {
+				String line = lines[index % lines.length];
+				checksum -= decoder.parse(line.subSequence(18, 32));
+			}
+			long newNanos = System.nanoTime() - start;
+
+			System.out.println("Round " + round + ": SimpleDateFormat " + (oldNanos / count) + " ns/time, " +
+					"LogTimestampDecoder " + (newNanos / count) + " ns/time (checksum " + checksum + ")");
+		}
+	}
+
+	/*
+	 * The old JobLogParser.parseDate().
+	 */
+	private static Date oldParseDate(String condorLogLine) {
+		Date date = null;
+		Matcher matcher = pattern.matcher(condorLogLine);
+		if (matcher.find()) {
+			String dateSpec = matcher.group();
+			int year = Calendar.getInstance().get(Calendar.YEAR);
+			String dateSpecWithYear = year + "/" + dateSpec;
+			SimpleDateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+			try {
+				date = sdf.parse(dateSpecWithYear);
+			} catch (ParseException e) {
+				e.printStackTrace();
+			}
+		}
+		return date;
+	}
+}
@@ -0,0 +1,139 @@
+package net.sf.igs.test;
+
+/*
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.igs.ExecutorStrategy;
+import net.sf.igs.JobMonitor;
+import net.sf.igs.Util;
+
+/**
+ * Blocks a large number of threads on job waits at the same time and reports how
+ * many threads that took. Fake job logs are written to the temporary directory,
+ * so Condor is not needed. Run it with the number of waits, 10000 by default,
+ * and choose the threads with the {@link ExecutorStrategy#CONDOR_JDRMAA_EXECUTOR}
+ * system property:
+ *
+ * <pre>
+ * java -Dcondor.jdrmaa.executor=virtual net.sf.igs.test.WaitBenchmark 10000
+ * </pre>
+ *
+ * <p>With virtual threads, every wait is blocked at once and the number of
+ * carrier threads stays at about the number of processors. With platform
+ * threads, the waits are spread over the fixed pool and take turns.</p>
+ */
+public class WaitBenchmark {
+
+	private static final int FIRST_CLUSTER = 8800000;
+	private static final String SUBMITTED =
+		"000 (%d.000.000) 08/24 18:17:56 Job submitted from host: <134.192.146.203:35732>\n...\n";
+	private static final String TERMINATED =
+		"005 (%d.000.000) 08/24 18:19:59 Job terminated.\n\t(1) Normal termination (return value 0)\n...\n";
+
+	/**
+	 * Run the benchmark.
+	 *
+	 * @param args the number of waits, optionally
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int waits = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+		ExecutorStrategy strategy = ExecutorStrategy.fromSystemProperties();
+		System.out.println("Strategy: " + strategy + " (virtual threads available: " +
+				ExecutorStrategy.isVirtualAvailable() + ")");
+
+		for (int job = 0; job < waits; job++) {
+			write(FIRST_CLUSTER + job, String.format(SUBMITTED, FIRST_CLUSTER + job), false);
+		}
+
+		// The waiters and the log parsing get separate executors so that blocked
+		// waiters can never starve the monitor.
+		ExecutorService waiters = strategy.newExecutor("benchmark-waiter");
+		ExecutorService parsers = strategy.newExecutor("benchmark-parser");
+		JobMonitor monitor = new JobMonitor(100, parsers);
+		monitor.start();
+
+		final CountDownLatch done = new CountDownLatch(waits);
+		final Set<String> carriers = ConcurrentHashMap.newKeySet();
+		final JobMonitor jobMonitor = monitor;
+		long start = System.nanoTime();
+		try {
+			for (int job = 0; job < waits; job++) {
+				final String jobId = (FIRST_CLUSTER + job) + ".0";
+				waiters.execute(new Runnable() {
+					public void run() {
+						try {
+							jobMonitor.track(jobId).get();
+							carriers.add(carrierOf(Thread.currentThread()));
+						} catch (Exception e) {
+							e.printStackTrace();
+						} finally {
+							done.countDown();
+						}
+					}
+				});
+			}
+			for (int job = 0; job < waits; job++) {
+				write(FIRST_CLUSTER + job, String.format(TERMINATED, FIRST_CLUSTER + job), true);
+			}
+			if (! done.await(10, TimeUnit.MINUTES)) {
+				System.out.println("Gave up with " + done.getCount() + " waits outstanding.");
+			}
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			System.out.println("Waits:            " + waits);
+			System.out.println("Elapsed:          " + elapsed + " ms");
+			System.out.println("Carrier threads:  " + carriers.size());
+			System.out.println("Peak OS threads:  " + ManagementFactory.getThreadMXBean().getPeakThreadCount());
+		} finally {
+			monitor.shutdown();
+			waiters.shutdownNow();
+			parsers.shutdownNow();
+			for (int job = 0; job < waits; job++) {
+				new File(Util.getLogFromId((FIRST_CLUSTER + job) + ".0")).delete();
+			}
+		}
+	}
+
+	/*
+	 * The platform thread a task ran on. A virtual thread's toString() names its
+	 * carrier after an '@', as in "VirtualThread[#21]/runnable@ForkJoinPool-1-worker-1".
+	 */
+	private static String carrierOf(Thread thread) {
+		String description = thread.toString();
+		int at = description.lastIndexOf('@');
+		return (at >= 0) ? description.substring(at + 1) : thread.getName();
+	}
+
+	private static void write(int cluster, String text, boolean append) throws IOException {
+		FileWriter writer = new FileWriter(Util.getLogFromId(cluster + ".0"), append);
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
+}